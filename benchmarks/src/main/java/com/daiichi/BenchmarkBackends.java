@@ -0,0 +1,81 @@
+package com.daiichi;
+
+import com.arangodb.ArangoDB;
+import com.orientechnologies.orient.core.db.ODatabasePool;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import com.orientechnologies.orient.core.db.OrientDB;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tinkerpop.gremlin.driver.Client;
+import org.neo4j.driver.Driver;
+
+/**
+ * Builds DBWrappers without a Spring context, wired the same way DbConfig wires them for the application.
+ * OrientDB runs embedded in memory, ArangoDB, Gremlin and Neo4j use the docker-compose containers on localhost.
+ */
+public final class BenchmarkBackends implements AutoCloseable {
+    private final BenchmarkProperties properties;
+    private final DbConfig dbConfig = new DbConfig();
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics = new BenchmarkMetrics(new SimpleMeterRegistry());
+    private AutoCloseable resource = () -> { };
+
+    public BenchmarkBackends(BenchmarkProperties properties) {
+        this.properties = properties;
+        this.transitions = new StatusTransitions(properties);
+        this.optimisticRetry = new OptimisticRetry(properties);
+    }
+
+    /**
+     * Properties with an in-memory embedded OrientDB, everything else at the application defaults.
+     */
+    public static BenchmarkProperties defaultProperties() {
+        BenchmarkProperties properties = new BenchmarkProperties();
+        properties.getOrient().setUrl("embedded:");
+        properties.getOrient().setDatabaseType(ODatabaseType.MEMORY);
+        return properties;
+    }
+
+    public DBWrapper open(DBWrapper.DB db) {
+        switch (db) {
+            case IN_MEMORY -> {
+                return new InMemoryGraphWrapper(transitions);
+            }
+            case ORIENT -> {
+                String url = properties.getOrient().getUrl();
+                OrientDB orientDB = dbConfig.openOrientDB(url, properties);
+                dbConfig.provisionOrient(orientDB, url, properties);
+                ODatabasePool orientPool = dbConfig.openOrientPool(orientDB, properties);
+                resource = () -> {
+                    orientPool.close();
+                    orientDB.close();
+                };
+                return new OrientDBWrapper(orientPool, properties, transitions, optimisticRetry, metrics);
+            }
+            case ARGANO -> {
+                ArangoDB arangoDB = dbConfig.openArangoDB(properties.getArango().getEndpoint(), properties);
+                resource = arangoDB::shutdown;
+                dbConfig.provisionArango(arangoDB, properties);
+                return new ArangoDBWrapper(arangoDB, dbConfig.arangoDatabase(arangoDB), properties, transitions, optimisticRetry, metrics);
+            }
+            case NEPTUNE -> {
+                Client client = dbConfig.openGremlinClient(properties.getGremlin().getEndpoint(), properties);
+                resource = () -> client.getCluster().close();
+                dbConfig.provisionGremlin(client, properties);
+                return new NeptuneBWrapper(client, dbConfig.neptuneTraversal(client), properties, transitions, optimisticRetry, metrics);
+            }
+            case NEO4J -> {
+                Driver driver = dbConfig.openNeo4jDriver(properties.getNeo4j().getUri(), properties);
+                resource = driver::close;
+                dbConfig.provisionNeo4j(driver, properties);
+                return new Neo4jWrapper(driver, properties, transitions, optimisticRetry, metrics);
+            }
+        }
+        throw new RuntimeException("DB isn't supported");
+    }
+
+    @Override
+    public void close() throws Exception {
+        resource.close();
+    }
+}
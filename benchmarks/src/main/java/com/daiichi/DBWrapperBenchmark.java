@@ -0,0 +1,102 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.workload.WorkloadGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * createTree and fetchAndUpdate per backend. The plans are loaded once per trial, every iteration starts from
+ * Pending again through the createTree reset path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DBWrapperBenchmark {
+
+    @Param({"IN_MEMORY", "ORIENT"})
+    private DBWrapper.DB backend;
+
+    @Param({"CLIENT", "SERVER"})
+    private DBWrapper.UpdateMode updateMode;
+
+    @Param({"100"})
+    private int planCount;
+
+    private BenchmarkBackends backends;
+    private DBWrapper dbWrapper;
+    private WorkloadGenerator workloadGenerator;
+    private List<ExecutionPlan> plans;
+    private final AtomicLong createdPlans = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void loadPlans() {
+        BenchmarkProperties properties = BenchmarkBackends.defaultProperties();
+        backends = new BenchmarkBackends(properties);
+        dbWrapper = backends.open(backend);
+        workloadGenerator = new WorkloadGenerator(properties);
+        plans = workloadGenerator.plans("JMH ", planCount).toList();
+        dbWrapper.createTrees(plans);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPlans() {
+        dbWrapper.createTrees(plans);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        backends.close();
+    }
+
+    /**
+     * A new plan per invocation, so the insert path is measured rather than the reset of an existing plan. Plan
+     * generation is part of the measurement, WorkloadBenchmark measures it on its own.
+     */
+    @Benchmark
+    public void createTree() {
+        ExecutionPlan plan = workloadGenerator.plans("JMH Create %d ".formatted(createdPlans.getAndIncrement()), 1)
+            .findFirst()
+            .orElseThrow();
+        dbWrapper.createTree(plan);
+    }
+
+    /**
+     * A plan whose nodes are all Completed is reset before it is updated again, once every few hundred calls.
+     */
+    @Benchmark
+    public Optional<Node> fetchAndUpdate(ThreadState thread) {
+        ExecutionPlan plan = plans.get(thread.random.nextInt(plans.size()));
+        Optional<Node> node = dbWrapper.fetchAndUpdate(plan.getId(), updateMode);
+        if (node.isEmpty()) {
+            dbWrapper.createTree(plan);
+        }
+        return node;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final SplittableRandom random = new SplittableRandom(42);
+    }
+}
@@ -0,0 +1,138 @@
+package com.daiichi;
+
+import com.daiichi.pojo.Constants;
+import com.daiichi.pojo.Node;
+import com.orientechnologies.orient.core.db.ODatabasePool;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.record.OElement;
+import com.orientechnologies.orient.core.record.OVertex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.util.empty.EmptyGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side mapping between Node and the driver representations, and the per vertex Gremlin traversal built by
+ * the PER_ELEMENT ingest mode. Nothing is sent to a database, run with -prof gc to see the allocation per call.
+ * {@link SerdeBenchmark} adds the serialization of the mapped values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    private final DbConfig dbConfig = new DbConfig();
+    private ArangoDBWrapper arangoDBWrapper;
+    private OrientDBWrapper orientDBWrapper;
+    private NeptuneBWrapper neptuneBWrapper;
+
+    private OrientDB orientDB;
+    private ODatabasePool orientPool;
+    private ODatabaseSession orientSession;
+
+    private Node node;
+    private ArangoDBWrapper.NodeDocument document;
+    private OElement element;
+    private Map<Object, Object> elementMap;
+
+    @Setup
+    public void setUp() {
+        BenchmarkProperties properties = BenchmarkBackends.defaultProperties();
+        StatusTransitions transitions = new StatusTransitions(properties);
+        OptimisticRetry optimisticRetry = new OptimisticRetry(properties);
+        BenchmarkMetrics metrics = new BenchmarkMetrics(new SimpleMeterRegistry());
+        orientDB = dbConfig.openOrientDB(properties.getOrient().getUrl(), properties);
+        dbConfig.provisionOrient(orientDB, properties.getOrient().getUrl(), properties);
+        orientPool = dbConfig.openOrientPool(orientDB, properties);
+        orientSession = orientPool.acquire();
+
+        // Only the mapping methods are called, so the wrappers need no connection
+        arangoDBWrapper = new ArangoDBWrapper(null, null, properties, transitions, optimisticRetry, metrics);
+        orientDBWrapper = new OrientDBWrapper(orientPool, properties, transitions, optimisticRetry, metrics);
+        neptuneBWrapper = new NeptuneBWrapper(null, EmptyGraph.instance().traversal(), properties, transitions, optimisticRetry, metrics);
+
+        node = Node.builder()
+            .id(UUID.randomUUID().toString())
+            .planId("JMH Plan 0")
+            .data("Node 7 of JMH Plan 0")
+            .parentId(UUID.randomUUID().toString())
+            .build();
+        ArangoDBWrapper.NodeDocument written = arangoDBWrapper.mapToDocument(node);
+        document = new ArangoDBWrapper.NodeDocument(written.key(), "_hK3w4ey---", written.data(), written.planId(), written.status(),
+            written.parentId(), null, null, written.planKey());
+        element = orientDBWrapper.mapToOVertex(orientSession, node);
+        element.setProperty("status", node.getStatus().toString());
+
+        elementMap = new HashMap<>();
+        elementMap.put(T.id, 42L);
+        elementMap.put(T.label, Constants.EXECUTION_PLAN_NODE_CLASS);
+        elementMap.put("id", node.getId());
+        elementMap.put("planId", node.getPlanId());
+        elementMap.put("data", node.getData());
+        elementMap.put("status", node.getStatus().toString());
+        elementMap.put("parentId", node.getParentId());
+    }
+
+    @TearDown
+    public void tearDown() {
+        orientSession.close();
+        orientPool.close();
+        orientDB.close();
+    }
+
+    @Benchmark
+    public ArangoDBWrapper.NodeDocument arangoMapToDocument() {
+        return arangoDBWrapper.mapToDocument(node);
+    }
+
+    @Benchmark
+    public Node arangoMapToNode() {
+        return arangoDBWrapper.mapToNode(document);
+    }
+
+    @Benchmark
+    public OVertex orientMapToOVertex() {
+        return orientDBWrapper.mapToOVertex(orientSession, node);
+    }
+
+    @Benchmark
+    public Node orientMapToNode() {
+        return orientDBWrapper.mapToNode(element);
+    }
+
+    @Benchmark
+    public GraphTraversal<Vertex, Object> gremlinMapToVertex() {
+        return neptuneBWrapper.mapToVertex(node);
+    }
+
+    @Benchmark
+    public Map<String, Object> gremlinMapToBinding() {
+        return neptuneBWrapper.mapToBinding(node);
+    }
+
+    @Benchmark
+    public Node gremlinMapToNode() {
+        return neptuneBWrapper.mapToNode(elementMap);
+    }
+}
@@ -0,0 +1,225 @@
+package com.daiichi;
+
+import com.daiichi.pojo.CompactNode;
+import com.daiichi.pojo.Constants;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.workload.WorkloadGenerator;
+import com.orientechnologies.orient.core.db.ODatabasePool;
+import com.orientechnologies.orient.core.db.ODatabaseSession;
+import com.orientechnologies.orient.core.db.OrientDB;
+import com.orientechnologies.orient.core.record.OElement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.util.empty.EmptyGraph;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.Values;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * {@link Node} against {@link CompactNode}: the mapping of each backend's result into either model, and the
+ * status transition of a node the client holds, as a Node copied through its builder the way the frontier cache
+ * used to hand nodes out, or as the in-place byte write of a CompactNode. Run with -prof gc for the bytes
+ * allocated per operation. At the end of its trial the benchmark loads planCount plans of planSize nodes once per
+ * model and prints the retained heap per plan, measured as used heap after a full GC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class NodeModelBenchmark {
+
+    @Param({"1093"})
+    public int planSize;
+
+    @Param({"200"})
+    public int planCount;
+
+    private final DbConfig dbConfig = new DbConfig();
+    private BenchmarkProperties properties;
+    private StatusTransitions transitions;
+    private ArangoDBWrapper arangoDBWrapper;
+    private OrientDBWrapper orientDBWrapper;
+    private NeptuneBWrapper neptuneBWrapper;
+    private Neo4jWrapper neo4jWrapper;
+
+    private OrientDB orientDB;
+    private ODatabasePool orientPool;
+    private ODatabaseSession orientSession;
+
+    private Node node;
+    private CompactNode compactNode;
+    private ArangoDBWrapper.NodeDocument document;
+    private OElement element;
+    private Map<Object, Object> elementMap;
+    private Value record;
+
+    @Setup
+    public void setUp() {
+        properties = BenchmarkBackends.defaultProperties();
+        transitions = new StatusTransitions(properties);
+        OptimisticRetry optimisticRetry = new OptimisticRetry(properties);
+        BenchmarkMetrics metrics = new BenchmarkMetrics(new SimpleMeterRegistry());
+        orientDB = dbConfig.openOrientDB(properties.getOrient().getUrl(), properties);
+        dbConfig.provisionOrient(orientDB, properties.getOrient().getUrl(), properties);
+        orientPool = dbConfig.openOrientPool(orientDB, properties);
+        orientSession = orientPool.acquire();
+
+        // Only the mapping methods are called, so the wrappers need no connection
+        arangoDBWrapper = new ArangoDBWrapper(null, null, properties, transitions, optimisticRetry, metrics);
+        orientDBWrapper = new OrientDBWrapper(orientPool, properties, transitions, optimisticRetry, metrics);
+        neptuneBWrapper = new NeptuneBWrapper(null, EmptyGraph.instance().traversal(), properties, transitions, optimisticRetry, metrics);
+        neo4jWrapper = new Neo4jWrapper(null, properties, transitions, optimisticRetry, metrics);
+
+        node = Node.builder()
+            .id(UUID.randomUUID().toString())
+            .planId("JMH Plan 0")
+            .data("Node 7 of JMH Plan 0")
+            .parentId(UUID.randomUUID().toString())
+            .build();
+        compactNode = CompactNode.of(node);
+        ArangoDBWrapper.NodeDocument written = arangoDBWrapper.mapToDocument(node);
+        document = new ArangoDBWrapper.NodeDocument(written.key(), "_hK3w4ey---", written.data(), written.planId(), written.status(),
+            written.parentId(), null, null, written.planKey());
+        element = orientDBWrapper.mapToOVertex(orientSession, node);
+        element.setProperty("status", node.getStatus().toString());
+
+        elementMap = new HashMap<>();
+        elementMap.put(T.id, 42L);
+        elementMap.put(T.label, Constants.EXECUTION_PLAN_NODE_CLASS);
+        elementMap.put("id", node.getId());
+        elementMap.put("planId", node.getPlanId());
+        elementMap.put("data", node.getData());
+        elementMap.put("status", node.getStatus().toString());
+        elementMap.put("parentId", node.getParentId());
+        record = Values.value(neo4jWrapper.mapToParameters(node));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WorkloadGenerator generator = new WorkloadGenerator(properties);
+        BenchmarkProperties.Workload workload = new BenchmarkProperties.Workload();
+        workload.setPlanSize(planSize);
+        List<ExecutionPlan> plans = generator.plans("JMH Heap ", planCount, workload).toList();
+        System.out.printf("%nRetained heap per plan of %d nodes: Node %d bytes, CompactNode %d bytes, in-memory graph %d bytes%n",
+            planSize, retainedPerPlan(plans, NodeModelBenchmark::readBack), retainedPerPlan(plans, planNode -> CompactNode.of(readBack(planNode))),
+            inMemoryPerPlan(plans));
+        orientSession.close();
+        orientPool.close();
+        orientDB.close();
+    }
+
+    @Benchmark
+    public Node nodeTransition() {
+        Node copy = node.toBuilder().build();
+        copy.progressStatus(transitions.nextCompletes(copy.getPlanId()));
+        return copy;
+    }
+
+    @Benchmark
+    public CompactNode compactTransition() {
+        compactNode.progressStatus(transitions.nextCompletes(compactNode.getPlanId()));
+        return compactNode;
+    }
+
+    @Benchmark
+    public Node arangoMapToNode() {
+        return arangoDBWrapper.mapToNode(document);
+    }
+
+    @Benchmark
+    public CompactNode arangoMapToCompactNode() {
+        return arangoDBWrapper.mapToCompactNode(document);
+    }
+
+    @Benchmark
+    public Node orientMapToNode() {
+        return orientDBWrapper.mapToNode(element);
+    }
+
+    @Benchmark
+    public CompactNode orientMapToCompactNode() {
+        return orientDBWrapper.mapToCompactNode(element);
+    }
+
+    @Benchmark
+    public Node gremlinMapToNode() {
+        return neptuneBWrapper.mapToNode(elementMap);
+    }
+
+    @Benchmark
+    public CompactNode gremlinMapToCompactNode() {
+        return neptuneBWrapper.mapToCompactNode(elementMap);
+    }
+
+    @Benchmark
+    public Node neo4jMapToNode() {
+        return neo4jWrapper.mapToNode(record);
+    }
+
+    @Benchmark
+    public CompactNode neo4jMapToCompactNode() {
+        return neo4jWrapper.mapToCompactNode(record);
+    }
+
+    /**
+     * A node as a driver hands it back, every string decoded on its own rather than shared with the other nodes.
+     */
+    private static Node readBack(Node generated) {
+        return generated.toBuilder()
+            .planId(new String(generated.getPlanId()))
+            .build();
+    }
+
+    private static long retainedPerPlan(List<ExecutionPlan> plans, Function<Node, Object> model) {
+        long before = usedHeapAfterGc();
+        List<List<Object>> held = plans.stream().map(plan -> plan.nodes().map(model).toList()).toList();
+        long retained = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(held);
+        return retained / plans.size();
+    }
+
+    private long inMemoryPerPlan(List<ExecutionPlan> plans) {
+        long before = usedHeapAfterGc();
+        InMemoryGraphWrapper graph = new InMemoryGraphWrapper(transitions);
+        graph.createTrees(plans);
+        long retained = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(graph);
+        return retained / plans.size();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,284 @@
+package com.daiichi;
+
+import com.arangodb.ArangoDB;
+import com.arangodb.Protocol;
+import com.arangodb.entity.BaseDocument;
+import com.arangodb.internal.serde.InternalSerde;
+import com.daiichi.pojo.Node;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.apache.tinkerpop.gremlin.driver.Result;
+import org.apache.tinkerpop.gremlin.driver.Tokens;
+import org.apache.tinkerpop.gremlin.driver.message.RequestMessage;
+import org.apache.tinkerpop.gremlin.driver.message.ResponseMessage;
+import org.apache.tinkerpop.gremlin.driver.message.ResponseStatusCode;
+import org.apache.tinkerpop.gremlin.driver.ser.GraphBinaryMessageSerializerV1;
+import org.apache.tinkerpop.gremlin.driver.ser.SerializationException;
+import org.apache.tinkerpop.gremlin.structure.T;
+import org.apache.tinkerpop.gremlin.structure.util.empty.EmptyGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.daiichi.pojo.Constants.*;
+
+/**
+ * Writing and reading one node through the driver serializers, on the paths the wrappers used before the typed
+ * serde ({@code legacy*}) and on the current ones ({@code typed*} for ArangoDB, {@code bytecode}/{@code elementMap}
+ * for Gremlin). Run with -prof gc for the allocation rate and bytes allocated per operation. The bytes each shape
+ * puts on the wire don't vary between calls, so every state prints them once at the end of its trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerdeBenchmark {
+
+    static Node node() {
+        return Node.builder()
+            .id(UUID.randomUUID().toString())
+            .planId("JMH Plan 0")
+            .data("Node 7 of JMH Plan 0")
+            .parentId(UUID.randomUUID().toString())
+            .build();
+    }
+
+    static WrapperParts wrappers() {
+        BenchmarkProperties properties = BenchmarkBackends.defaultProperties();
+        StatusTransitions transitions = new StatusTransitions(properties);
+        OptimisticRetry optimisticRetry = new OptimisticRetry(properties);
+        BenchmarkMetrics metrics = new BenchmarkMetrics(new SimpleMeterRegistry());
+        // Only the mappers are called, so the wrappers need no connection
+        return new WrapperParts(
+            new ArangoDBWrapper(null, null, properties, transitions, optimisticRetry, metrics),
+            new NeptuneBWrapper(null, EmptyGraph.instance().traversal(), properties, transitions, optimisticRetry, metrics));
+    }
+
+    record WrapperParts(ArangoDBWrapper arango, NeptuneBWrapper neptune) {
+    }
+
+    @State(Scope.Benchmark)
+    public static class ArangoState {
+        @Param({"HTTP2_JSON", "HTTP2_VPACK"})
+        public Protocol protocol;
+
+        private ArangoDB arangoDB;
+        private InternalSerde serde;
+        private ArangoDBWrapper wrapper;
+        private Node node;
+        private byte[] legacyBytes;
+        private byte[] typedBytes;
+
+        @Setup
+        public void setUp() {
+            // Building the client opens no connection, only its serde is used
+            arangoDB = new ArangoDB.Builder().host("localhost", 8529).protocol(protocol).build();
+            serde = arangoDB.getSerde();
+            wrapper = wrappers().arango();
+            node = node();
+            BaseDocument stored = legacyMapToDocument(node);
+            stored.setRevision("_hK3w4ey---");
+            stored.addAttribute("status", node.getStatus().toString());
+            legacyBytes = serde.serializeUserData(stored);
+            ArangoDBWrapper.NodeDocument written = wrapper.mapToDocument(node);
+            typedBytes = serde.serializeUserData(new ArangoDBWrapper.NodeDocument(written.key(), "_hK3w4ey---",
+                written.data(), written.planId(), written.status(), written.parentId(), null, null, written.planKey()));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.out.printf("%nArangoDB %s bytes per node: legacy insert %d, typed insert %d, legacy read %d, typed read %d%n",
+                protocol, serde.serializeUserData(legacyMapToDocument(node)).length,
+                serde.serializeUserData(wrapper.mapToDocument(node)).length, legacyBytes.length, typedBytes.length);
+            arangoDB.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class GremlinState {
+        private final GraphBinaryMessageSerializerV1 serializer = new GraphBinaryMessageSerializerV1();
+        private NeptuneBWrapper wrapper;
+        private Node node;
+        private byte[] valueMapResponse;
+        private byte[] elementMapResponse;
+
+        @Setup
+        public void setUp() throws SerializationException {
+            wrapper = wrappers().neptune();
+            node = node();
+
+            // Shape of valueMap(true), every property a list
+            Map<Object, Object> valueMap = new HashMap<>();
+            valueMap.put(T.id, 42L);
+            valueMap.put(T.label, EXECUTION_PLAN_NODE_CLASS);
+            valueMap.put("id", List.of(node.getId()));
+            valueMap.put("planId", List.of(node.getPlanId()));
+            valueMap.put("data", List.of(node.getData()));
+            valueMap.put("status", List.of(node.getStatus().toString()));
+            valueMap.put("parentId", List.of(node.getParentId()));
+            valueMapResponse = bytes(serializer.serializeResponseAsBinary(response(valueMap), ByteBufAllocator.DEFAULT));
+
+            Map<Object, Object> elementMap = new HashMap<>();
+            elementMap.put(T.id, 42L);
+            elementMap.put(T.label, EXECUTION_PLAN_NODE_CLASS);
+            elementMap.put("id", node.getId());
+            elementMap.put("planId", node.getPlanId());
+            elementMap.put("data", node.getData());
+            elementMap.put("status", node.getStatus().toString());
+            elementMap.put("parentId", node.getParentId());
+            elementMapResponse = bytes(serializer.serializeResponseAsBinary(response(elementMap), ByteBufAllocator.DEFAULT));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SerializationException {
+            System.out.printf("%nGremlin GraphBinary bytes per node: script addV request %d, bytecode addV request %d, valueMap(true) result %d, elementMap result %d%n",
+                bytes(serializer.serializeRequestAsBinary(scriptRequest(node), ByteBufAllocator.DEFAULT)).length,
+                bytes(serializer.serializeRequestAsBinary(bytecodeRequest(wrapper, node), ByteBufAllocator.DEFAULT)).length,
+                valueMapResponse.length, elementMapResponse.length);
+        }
+
+        private static ResponseMessage response(Map<Object, Object> result) {
+            return ResponseMessage.build(UUID.randomUUID()).code(ResponseStatusCode.SUCCESS).result(List.of(result)).create();
+        }
+
+        private static byte[] bytes(ByteBuf buffer) {
+            try {
+                return ByteBufUtil.getBytes(buffer);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Benchmark
+    public byte[] arangoLegacyWrite(ArangoState state) {
+        return state.serde.serializeUserData(legacyMapToDocument(state.node));
+    }
+
+    @Benchmark
+    public byte[] arangoTypedWrite(ArangoState state) {
+        return state.serde.serializeUserData(state.wrapper.mapToDocument(state.node));
+    }
+
+    @Benchmark
+    public Node arangoLegacyRead(ArangoState state) {
+        return legacyMapToNode(state.serde.deserializeUserData(state.legacyBytes, BaseDocument.class));
+    }
+
+    @Benchmark
+    public Node arangoTypedRead(ArangoState state) {
+        // The driver reads cursor results through the user serde, outside of a request only that part can be called
+        return state.wrapper.mapToNode(state.serde.getUserSerde().deserialize(state.typedBytes, ArangoDBWrapper.NodeDocument.class));
+    }
+
+    @Benchmark
+    public int gremlinScriptWrite(GremlinState state) throws SerializationException {
+        return written(state.serializer.serializeRequestAsBinary(scriptRequest(state.node), ByteBufAllocator.DEFAULT));
+    }
+
+    @Benchmark
+    public int gremlinBytecodeWrite(GremlinState state) throws SerializationException {
+        return written(state.serializer.serializeRequestAsBinary(bytecodeRequest(state.wrapper, state.node), ByteBufAllocator.DEFAULT));
+    }
+
+    @Benchmark
+    public Node gremlinValueMapRead(GremlinState state) throws SerializationException {
+        ResponseMessage response = state.serializer.deserializeResponse(Unpooled.wrappedBuffer(state.valueMapResponse));
+        return legacyMapToNode(new Result(((List<?>) response.getResult().getData()).get(0)));
+    }
+
+    @Benchmark
+    public Node gremlinElementMapRead(GremlinState state) throws SerializationException {
+        ResponseMessage response = state.serializer.deserializeResponse(Unpooled.wrappedBuffer(state.elementMapResponse));
+        //noinspection unchecked
+        return state.wrapper.mapToNode((Map<Object, Object>) ((List<?>) response.getResult().getData()).get(0));
+    }
+
+    private static int written(ByteBuf buffer) {
+        try {
+            return buffer.readableBytes();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static RequestMessage scriptRequest(Node node) {
+        return RequestMessage.build(Tokens.OPS_EVAL)
+            .addArg(Tokens.ARGS_GREMLIN, legacyMapToVertex(node))
+            .addArg(Tokens.ARGS_LANGUAGE, "gremlin-groovy")
+            .create();
+    }
+
+    private static RequestMessage bytecodeRequest(NeptuneBWrapper wrapper, Node node) {
+        return RequestMessage.build(Tokens.OPS_BYTECODE)
+            .processor("traversal")
+            .addArg(Tokens.ARGS_GREMLIN, wrapper.mapToVertex(node).asAdmin().getBytecode())
+            .addArg(Tokens.ARGS_ALIASES, Map.of("g", "g"))
+            .create();
+    }
+
+    // The mappers below are the ones the wrappers used before the typed serde, kept as the baseline
+
+    private static BaseDocument legacyMapToDocument(Node node) {
+        BaseDocument document = new BaseDocument(node.getId());
+        document.setId(node.getId());
+        document.addAttribute("data", node.getData());
+        document.addAttribute("planId", node.getPlanId());
+        document.addAttribute("status", node.getStatus());
+        document.addAttribute("parentId", node.getParentId());
+        return document;
+    }
+
+    private static Node legacyMapToNode(BaseDocument document) {
+        return Node.builder()
+            .id(document.getKey())
+            .data((String) document.getAttribute("data"))
+            .planId((String) document.getAttribute("planId"))
+            .status(Node.Status.valueOf((String) document.getAttribute("status")))
+            .parentId((String) document.getAttribute("parentId"))
+            .build();
+    }
+
+    private static String legacyMapToVertex(Node node) {
+        return """
+                g.addV('%s')
+                .property('id', '%s')
+                .property('planId', '%s')
+                .property('data', '%s')
+                .property('status', '%s')
+                .property('parentId', '%s')
+            """.formatted(EXECUTION_PLAN_NODE_CLASS, node.getId(), node.getPlanId(), node.getData(), node.getStatus(), node.getParentId());
+    }
+
+    private static Node legacyMapToNode(Result result) {
+        //noinspection unchecked
+        HashMap<String, List<String>> nodeMap = result.get(HashMap.class);
+        return Node.builder()
+            .id(nodeMap.get("id").get(0))
+            .planId(nodeMap.get("planId").get(0))
+            .data(nodeMap.get("data").get(0))
+            .status(Node.Status.valueOf(nodeMap.get("status").get(0)))
+            .parentId(nodeMap.get("parentId").get(0).equals("null") ? null : nodeMap.get("parentId").get(0))
+            .build();
+    }
+}
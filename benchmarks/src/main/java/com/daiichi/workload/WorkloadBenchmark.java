@@ -0,0 +1,52 @@
+package com.daiichi.workload;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.pojo.ExecutionPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of generating one plan and streaming all of its nodes, the client side share of every createTree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkloadBenchmark {
+
+    @Param({"TREE", "CHAIN", "DIAMOND_DAG"})
+    private PlanShape shape;
+
+    @Param({"121", "9841"})
+    private int planSize;
+
+    private WorkloadGenerator workloadGenerator;
+
+    @Setup
+    public void setUp() {
+        BenchmarkProperties properties = new BenchmarkProperties();
+        properties.getWorkload().setShape(shape);
+        properties.getWorkload().setPlanSize(planSize);
+        workloadGenerator = new WorkloadGenerator(properties);
+    }
+
+    @Benchmark
+    public void generatePlan(Blackhole blackhole) {
+        ExecutionPlan plan = workloadGenerator.plans("JMH ", 1).findFirst().orElseThrow();
+        plan.nodes().forEach(blackhole::consume);
+    }
+}
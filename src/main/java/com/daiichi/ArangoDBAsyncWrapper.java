@@ -0,0 +1,176 @@
+package com.daiichi;
+
+import com.arangodb.ArangoCursorAsync;
+import com.arangodb.ArangoDBException;
+import com.arangodb.ArangoDatabaseAsync;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.daiichi.pojo.Constants.*;
+
+/**
+ * ArangoDB through the driver's async API, which multiplexes concurrent requests over the HTTP/2 connections of
+ * the shared ArangoDB instance. Queries and mappers are the ones of {@link ArangoDBWrapper}.
+ */
+@Slf4j
+@Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.ARGANO)
+@RequiredArgsConstructor
+public class ArangoDBAsyncWrapper implements AsyncDBWrapper {
+
+    private final ArangoDatabaseAsync arangoDatabase;
+    private final ArangoDBWrapper arangoDBWrapper;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
+
+    /**
+     * Documents are built as they are sent, one request per document in PER_DOCUMENT mode and batches of batchSize
+     * documents otherwise, through insertDocuments or an AQL INSERT as the ingest mode says. At most
+     * inFlightPerConnection requests per connection are in flight, vertices go first and edges after them. The
+     * plan's counters are written once all of them are stored.
+     */
+    @Override
+    public CompletableFuture<Void> createTree(ExecutionPlan plan) {
+        String nodeData = EXECUTION_PLAN_ROOT_NODE.formatted(plan.getId());
+        return query(ArangoDBWrapper.ROOT_QUERY, String.class, Map.of("data", nodeData))
+            .thenCompose(rootNode -> {
+                if (!rootNode.getResult().isEmpty()) {
+                    return query(ArangoDBWrapper.RESET_QUERY, Long.class, Map.of("planId", plan.getId(), "nodes", plan.nodeCount()))
+                        .thenAccept(cursor -> log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), cursor.getResult().get(0)));
+                }
+                BenchmarkProperties.Arango arango = properties.getArango();
+                int batchSize = arango.getIngestMode() == BenchmarkProperties.IngestMode.PER_DOCUMENT ? 1 : arango.getBatchSize();
+                int window = connections() * properties.getAsync().getInFlightPerConnection();
+                LongAdder vertices = new LongAdder();
+                LongAdder edges = new LongAdder();
+                LongAdder failed = new LongAdder();
+                Iterator<List<ArangoDBWrapper.NodeDocument>> vertexBatches = WindowedWrites.chunks(
+                    plan.nodes().map(arangoDBWrapper::mapToDocument).iterator(), batchSize);
+                Iterator<List<ArangoDBWrapper.DependsEdge>> edgeBatches = WindowedWrites.chunks(
+                    plan.nodes().flatMap(node -> node.parentIds().map(parentId -> arangoDBWrapper.mapToEdge(parentId, node))).iterator(), batchSize);
+                return WindowedWrites.send(vertexBatches, window, batch -> {
+                        vertices.add(batch.size());
+                        return insert(EXECUTION_PLAN_NODE_CLASS, batch).thenAccept(failed::add);
+                    })
+                    .thenCompose(ignored -> WindowedWrites.send(edgeBatches, window, batch -> {
+                        edges.add(batch.size());
+                        return insert(EXECUTION_PLAN_DEPENDS_CLASS, batch).thenAccept(failed::add);
+                    }))
+                    .thenCompose(written -> query(ArangoDBWrapper.CREATE_PROGRESS_QUERY, Void.class, ArangoDBWrapper.progressBindVars(List.of(plan))))
+                    .thenRun(() -> log.info("Stored graph {} in ArangoDB using {} inserts, with {} vertices and {} edges, {} failed",
+                        plan.getId(), arango.getIngestMode(), vertices.sum(), edges.sum(), failed.sum()));
+            })
+            .exceptionally(e -> {
+                log.error("Error storing graph {} in ArangoDB", plan.getId(), e);
+                return null;
+            });
+    }
+
+    /**
+     * @return number of documents of the batch the server rejected, each one is logged with its key and error
+     */
+    private CompletableFuture<Integer> insert(String collection, List<? extends ArangoDBWrapper.ArangoDocument> batch) {
+        return switch (properties.getArango().getIngestMode()) {
+            case PER_DOCUMENT -> metrics.roundTripAsync(DBWrapper.DB.ARGANO, "insert",
+                () -> arangoDatabase.collection(collection).insertDocument(batch.get(0), arangoDBWrapper.createOptions())).thenApply(created -> 0);
+            case MULTI_DOCUMENT -> insertMany(collection, batch);
+            // The query returns one result, the keys it stored and the documents it rejected, see ArangoDBWrapper.insertQuery
+            case AQL -> metrics.roundTripAsync(DBWrapper.DB.ARGANO, "query", () -> arangoDatabase.query(arangoDBWrapper.insertQuery(collection),
+                    ArangoDBWrapper.AqlInsert.class, Map.of("docs", batch), null))
+                .thenApply(cursor -> ArangoDBWrapper.logRejected(collection, batch, cursor.getResult().get(0)));
+        };
+    }
+
+    private CompletableFuture<Integer> insertMany(String collection, List<? extends ArangoDBWrapper.ArangoDocument> batch) {
+        return metrics.roundTripAsync(DBWrapper.DB.ARGANO, "insertMany",
+                () -> arangoDatabase.collection(collection).insertDocuments(batch, arangoDBWrapper.createOptions()))
+            .thenApply(result -> ArangoDBWrapper.logRejected(collection, batch, result));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdate(String planId) {
+        Map<String, Object> bindVars = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId, "limit", 1);
+        boolean completes = transitions.nextCompletes(planId);
+        return optimisticRetry.runAsync(DBWrapper.DB.ARGANO.name(), () -> query(ArangoDBWrapper.ELIGIBLE_QUERY, ArangoDBWrapper.NodeDocument.class, bindVars)
+            .thenCompose(cursor -> {
+                if (cursor.getResult().isEmpty()) {
+                    return CompletableFuture.completedFuture(Optional.<Node>empty());
+                }
+                // Written back only if nobody wrote the node since the query
+                ArangoDBWrapper.NodeDocument nodeToUpdate = cursor.getResult().get(0);
+                Node node = arangoDBWrapper.mapToNode(nodeToUpdate);
+                node.progressStatus(completes);
+                return metrics.roundTripAsync(DBWrapper.DB.ARGANO, "update", () -> arangoDatabase.query(ArangoDBWrapper.CLIENT_UPDATE_QUERY,
+                        Void.class, ArangoDBWrapper.clientUpdateBindVars(nodeToUpdate, node)))
+                    .handle((updated, error) -> {
+                        rethrowAsConflict(error, "Node " + node.getId(), 2);
+                        log.info("Updated node {} in ArangoDB to status {}", node.getId(), node.getStatus());
+                        return Optional.of(node);
+                    });
+            }))
+            .exceptionally(e -> {
+                log.error("Error during ArangoDB fetch and update", e);
+                return Optional.empty();
+            });
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        Map<String, Object> bindVars = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId,
+            "completes", transitions.nextCompletes(planId));
+        return optimisticRetry.runAsync(DBWrapper.DB.ARGANO.name(), () -> query(ArangoDBWrapper.SERVER_UPDATE_QUERY, ArangoDBWrapper.NodeDocument.class, bindVars)
+                .handle((cursor, error) -> {
+                    rethrowAsConflict(error, "Plan " + planId, 1);
+                    return cursor.getResult().stream().findFirst().map(arangoDBWrapper::mapToNode);
+                }))
+            .thenApply(updated -> {
+                updated.ifPresent(node -> log.info("Updated node {} in ArangoDB to status {}", node.getId(), node.getStatus()));
+                return updated;
+            })
+            .exceptionally(e -> {
+                log.error("Error during ArangoDB server side fetch and update", e);
+                return Optional.empty();
+            });
+    }
+
+    @Override
+    public int connections() {
+        return properties.getArango().getMaxConnections();
+    }
+
+    /**
+     * Turns the write conflict of a query, which includes a stale _rev and a concurrent write of the plan's counters,
+     * into the conflict that {@link OptimisticRetry} retries, and rethrows any other failure.
+     */
+    private static void rethrowAsConflict(Throwable error, String target, int roundTrips) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof ArangoDBException e) {
+            throw ArangoDBWrapper.conflictOr(e, target, roundTrips);
+        }
+        if (cause != null) {
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * Every query here returns less than one batch, so the first response holds the whole result.
+     */
+    private <T> CompletableFuture<ArangoCursorAsync<T>> query(String query, Class<T> type, Map<String, Object> bindVars) {
+        return metrics.roundTripAsync(DBWrapper.DB.ARGANO, "query", () -> arangoDatabase.query(query, type, bindVars));
+    }
+}
@@ -1,106 +1,512 @@
 package com.daiichi;
 
+import com.arangodb.ArangoCollection;
 import com.arangodb.ArangoCursor;
 import com.arangodb.ArangoDB;
+import com.arangodb.ArangoDBException;
 import com.arangodb.ArangoDatabase;
 import com.arangodb.ArangoIterator;
-import com.arangodb.entity.BaseDocument;
+import com.arangodb.entity.ErrorEntity;
+import com.arangodb.entity.MultiDocumentEntity;
+import com.arangodb.model.DocumentCreateOptions;
+import com.arangodb.model.OverwriteMode;
+import com.arangodb.serde.jackson.From;
+import com.arangodb.serde.jackson.Key;
+import com.arangodb.serde.jackson.Rev;
+import com.arangodb.serde.jackson.To;
+import com.daiichi.pojo.CompactNode;
 import com.daiichi.pojo.ExecutionPlan;
 import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.daiichi.pojo.Constants.*;
 
 @Slf4j
 @Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.ARGANO)
 @AllArgsConstructor
 public class ArangoDBWrapper implements DBWrapper {
+    // Error number of a query that wrote a document a concurrent transaction had written first, or whose _rev no longer matched
+    static final int WRITE_CONFLICT = 1200;
+
+    static final String ROOT_QUERY = "FOR node IN %s FILTER node.data == @data LIMIT 1 RETURN node._key".formatted(EXECUTION_PLAN_NODE_CLASS);
+    // Equality on planId and an IN list of the other statuses keep the reset on the (planId, status) index, a != on status
+    // would scan every node of the plan. The plan's counters are reset with it
+    static final String RESET_QUERY = """
+        LET reset = (FOR node IN %1$s FILTER node.planId == @planId AND node.status IN ['Running', 'Completed', 'Error'] UPDATE node WITH { status: 'Pending' } IN %1$s RETURN 1)
+        UPSERT { planId: @planId }
+          INSERT { planId: @planId, pending: @nodes, running: 0, completed: 0, error: 0 }
+          UPDATE { pending: @nodes, running: 0, completed: 0, error: 0 } IN %2$s
+        RETURN LENGTH(reset)""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_PROGRESS_CLASS);
+    // Counters of newly inserted plans, every node starts Pending
+    static final String CREATE_PROGRESS_QUERY = """
+        FOR plan IN @plans
+          UPSERT { planId: plan.planId }
+            INSERT { planId: plan.planId, pending: plan.nodes, running: 0, completed: 0, error: 0 }
+            UPDATE { pending: plan.nodes, running: 0, completed: 0, error: 0 } IN %s""".formatted(EXECUTION_PLAN_PROGRESS_CLASS);
+    // What every node write returns, so the counters can follow it
+    static final String MOVE = "RETURN { planId: NEW.planId, from: OLD.status, to: NEW.status, node: NEW }";
+    // Applies the moves of the node writes bound to moved to the counters of their plans. A query can't read a
+    // collection it wrote before, so the node writes come first in a subquery and the counters after them
+    static final String PROGRESS_UPDATE = """
+        LET progressed = (
+          FOR move IN moved
+            FILTER move.from != move.to
+            COLLECT planId = move.planId INTO moves = move
+            FOR progress IN %1$s FILTER progress.planId == planId
+              UPDATE progress WITH {
+                pending: progress.pending + COUNT(moves[* FILTER CURRENT.to == 'Pending']) - COUNT(moves[* FILTER CURRENT.from == 'Pending']),
+                running: progress.running + COUNT(moves[* FILTER CURRENT.to == 'Running']) - COUNT(moves[* FILTER CURRENT.from == 'Running']),
+                completed: progress.completed + COUNT(moves[* FILTER CURRENT.to == 'Completed']) - COUNT(moves[* FILTER CURRENT.from == 'Completed']),
+                error: progress.error + COUNT(moves[* FILTER CURRENT.to == 'Error']) - COUNT(moves[* FILTER CURRENT.from == 'Error'])
+              } IN %1$s
+              RETURN 1)""".formatted(EXECUTION_PLAN_PROGRESS_CLASS);
+    // Traverses the graph starting from the root node and finds the first eligible nodes
+    static final String ELIGIBLE_QUERY = """
+        FOR node IN %s FILTER node.data == @rootData LIMIT 1
+          FOR v, e IN 1..10 OUTBOUND
+            node._id %s
+            OPTIONS {bfs: true}
+            FILTER v.planId == @planId
+            FILTER v.status != 'Completed'
+            LIMIT @limit
+            RETURN v""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS);
+    // The traversal and the transition run in one AQL query, the server returns the node after the update
+    static final String SERVER_UPDATE_QUERY = withProgress("""
+        FOR node IN %1$s FILTER node.data == @rootData LIMIT 1
+          FOR v, e IN 1..10 OUTBOUND
+            node._id %2$s
+            OPTIONS {bfs: true}
+            FILTER v.planId == @planId
+            FILTER v.status != 'Completed'
+            LIMIT 1
+            UPDATE v WITH {
+              status: v.status == 'Pending' ? 'Running' : (v.status == 'Running' && !@completes ? 'Error' : 'Completed')
+            } IN %1$s
+            %3$s""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS, MOVE));
+    // The write back of a client side transition, ignoreRevs false fails it with a conflict once the node's _rev changed
+    static final String CLIENT_UPDATE_QUERY = withProgress("""
+        UPDATE { _key: @key, _rev: @rev } WITH { status: @status } IN %s OPTIONS { ignoreRevs: false }
+        %s""".formatted(EXECUTION_PLAN_NODE_CLASS, MOVE));
+    static final String STATUS_QUERY = withProgress("""
+        UPDATE @key WITH { status: @status } IN %s
+        %s""".formatted(EXECUTION_PLAN_NODE_CLASS, MOVE));
+
+    // The (planId, status) index finds the candidates, a node is ready once no inbound edge comes from an unfinished parent
+    static final String CLAIM_QUERY = withProgress("""
+        FOR node IN %1$s
+          FILTER node.planId IN @planIds AND node.status IN ['Pending', 'Error', 'Running']
+          FILTER node.status != 'Running' OR (node.leaseExpiresAt > 0 AND node.leaseExpiresAt < @now)
+          FILTER LENGTH(FOR parent IN 1..1 INBOUND node %2$s FILTER parent.status != 'Completed' LIMIT 1 RETURN 1) == 0
+          LIMIT @limit
+          UPDATE node WITH { status: 'Running', leaseOwner: @owner, leaseExpiresAt: @expiresAt } IN %1$s
+          %3$s""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS, MOVE));
+    // keepNull false removes the lease attributes instead of storing them as null
+    static final String REPORT_QUERY = withProgress("""
+        FOR row IN @nodes
+          LET node = DOCUMENT(%1$s, row.key)
+          FILTER node != null AND node.status == 'Running' AND node.leaseOwner == @owner
+          UPDATE node WITH { status: row.status, leaseOwner: null, leaseExpiresAt: null } IN %1$s OPTIONS { keepNull: false }
+          %2$s""".formatted(EXECUTION_PLAN_NODE_CLASS, MOVE));
+    static final String PROGRESS_QUERY = "FOR progress IN %s FILTER progress.planId IN @planIds RETURN progress".formatted(EXECUTION_PLAN_PROGRESS_CLASS);
+    static final String AGGREGATE_QUERY = """
+        FOR node IN %s FILTER node.planId IN @planIds
+          COLLECT planId = node.planId, status = node.status WITH COUNT INTO nodes
+          RETURN { planId, status, nodes }""".formatted(EXECUTION_PLAN_NODE_CLASS);
 
     private final ArangoDB arangoDB;
     private final ArangoDatabase arangoDatabase;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
 
     @Override
     public void createTree(ExecutionPlan plan) {
-        String nodeData = plan.getGraph().stream()
-            .filter(node -> node.getParentId() == null)
-            .findFirst()
-            .map(Node::getData)
-            .orElse(null);
-        String query = "FOR node IN %s FILTER node.data == '%s' LIMIT 1 RETURN node".formatted(EXECUTION_PLAN_NODE_CLASS, nodeData);
-        ArangoIterator<BaseDocument> rootNode = arangoDatabase.query(query, BaseDocument.class).iterator();
+        if (resetIfExists(plan)) {
+            return;
+        }
+        if (properties.getArango().getIngestMode() != BenchmarkProperties.IngestMode.PER_DOCUMENT) {
+            insertBulk(List.of(plan));
+            return;
+        }
+
+        ArangoCollection vertexCollection = arangoDatabase.collection(EXECUTION_PLAN_NODE_CLASS);
+        ArangoCollection edgeCollection = arangoDatabase.collection(EXECUTION_PLAN_DEPENDS_CLASS);
+        long vertexCount = 0;
+        long edgeCount = 0;
+        for (Iterator<Node> nodes = plan.nodes().iterator(); nodes.hasNext(); ) {
+            Node node = nodes.next();
+            NodeDocument vertex = mapToDocument(node);
+            metrics.roundTrip(DB.ARGANO, "insert", () -> vertexCollection.insertDocument(vertex, createOptions()));
+            vertexCount++;
+            for (Iterator<String> parentIds = node.parentIds().iterator(); parentIds.hasNext(); ) {
+                DependsEdge edge = mapToEdge(parentIds.next(), node);
+                metrics.roundTrip(DB.ARGANO, "insert", () -> edgeCollection.insertDocument(edge, createOptions()));
+                edgeCount++;
+            }
+        }
+        createProgress(List.of(plan));
+
+        log.info("Stored graph {} in ArangoDB, with {} vertices and {} edges", plan.getId(), vertexCount, edgeCount);
+    }
+
+    @Override
+    public void createTrees(List<ExecutionPlan> plans) {
+        if (properties.getArango().getIngestMode() == BenchmarkProperties.IngestMode.PER_DOCUMENT) {
+            plans.forEach(this::createTree);
+            return;
+        }
+        List<ExecutionPlan> newPlans = plans.stream()
+            .filter(plan -> !resetIfExists(plan))
+            .toList();
+        if (!newPlans.isEmpty()) {
+            insertBulk(newPlans);
+        }
+    }
+
+    private boolean resetIfExists(ExecutionPlan plan) {
+        String nodeData = EXECUTION_PLAN_ROOT_NODE.formatted(plan.getId());
+        ArangoIterator<String> rootNode = metrics.roundTrip(DB.ARGANO, "query",
+            () -> arangoDatabase.query(ROOT_QUERY, String.class, Map.of("data", nodeData), null)).iterator();
         if (rootNode.hasNext()) {
-            String resetQuery = "FOR node IN %s FILTER node.planId == @planId AND NOT node.status == 'Pending' UPDATE node WITH { status: 'Pending' } IN %s".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_NODE_CLASS);
-            Map<String, Object> bindVars = Map.of("planId", plan.getId());
-            ArangoCursor<BaseDocument> cursor = arangoDatabase
-                .query(resetQuery, BaseDocument.class, bindVars, null);
+            Map<String, Object> bindVars = Map.of("planId", plan.getId(), "nodes", plan.nodeCount());
+            ArangoCursor<Long> cursor = metrics.roundTrip(DB.ARGANO, "query",
+                () -> arangoDatabase.query(RESET_QUERY, Long.class, bindVars, null));
             if (cursor != null) {
-                log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), cursor.getStats().getWritesExecuted());
+                log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), cursor.next());
             }
-            return;
+            return true;
         }
+        return false;
+    }
 
-        Map<String, BaseDocument> vertexMap = plan.getGraph().stream()
-            .map(node -> {
-                BaseDocument document = mapToDocument(node);
-                arangoDatabase.collection(EXECUTION_PLAN_NODE_CLASS).insertDocument(document);
-                return document;
-            })
-            .collect(Collectors.toMap(BaseDocument::getId, Function.identity()));
+    /**
+     * Streams the plans' nodes into vertex and edge batches of batchSize, so only one batch per collection is
+     * held in memory at a time.
+     */
+    private void insertBulk(List<ExecutionPlan> plans) {
+        int batchSize = Math.max(1, properties.getArango().getBatchSize());
+        List<NodeDocument> vertices = new ArrayList<>(batchSize);
+        List<DependsEdge> edges = new ArrayList<>(batchSize);
+        long vertexCount = 0;
+        long edgeCount = 0;
+        int failed = 0;
+        for (ExecutionPlan plan : plans) {
+            for (Iterator<Node> nodes = plan.nodes().iterator(); nodes.hasNext(); ) {
+                Node node = nodes.next();
+                vertices.add(mapToDocument(node));
+                node.parentIds().forEach(parentId -> edges.add(mapToEdge(parentId, node)));
+                if (vertices.size() >= batchSize) {
+                    vertexCount += vertices.size();
+                    failed += insertBatch(EXECUTION_PLAN_NODE_CLASS, vertices);
+                    vertices.clear();
+                }
+                if (edges.size() >= batchSize) {
+                    edgeCount += edges.size();
+                    failed += insertBatch(EXECUTION_PLAN_DEPENDS_CLASS, edges);
+                    edges.clear();
+                }
+            }
+        }
+        if (!vertices.isEmpty()) {
+            vertexCount += vertices.size();
+            failed += insertBatch(EXECUTION_PLAN_NODE_CLASS, vertices);
+        }
+        if (!edges.isEmpty()) {
+            edgeCount += edges.size();
+            failed += insertBatch(EXECUTION_PLAN_DEPENDS_CLASS, edges);
+        }
+        createProgress(plans);
+        log.info("Stored {} graphs in ArangoDB using {} inserts, with {} vertices and {} edges, {} failed",
+            plans.size(), properties.getArango().getIngestMode(), vertexCount, edgeCount, failed);
+    }
+
+    private void createProgress(List<ExecutionPlan> plans) {
+        metrics.roundTrip(DB.ARGANO, "query", () -> arangoDatabase.query(CREATE_PROGRESS_QUERY, Void.class, progressBindVars(plans), null));
+    }
 
-        long edgeCount = plan.getGraph().stream()
-            .filter(node -> node.getParentId() != null)
-            .map(node -> {
-                BaseDocument edge = new BaseDocument();
-                edge.addAttribute("_from", EXECUTION_PLAN_NODE_CLASS + "/" + node.getParentId());
-                edge.addAttribute("_to", EXECUTION_PLAN_NODE_CLASS + "/" + node.getId());
-                arangoDatabase.collection(EXECUTION_PLAN_DEPENDS_CLASS).insertDocument(edge);
-                return edge;
-            }).count();
+    static Map<String, Object> progressBindVars(List<ExecutionPlan> plans) {
+        return Map.of("plans", plans.stream().map(plan -> Map.of("planId", plan.getId(), "nodes", plan.nodeCount())).toList());
+    }
+
+    /**
+     * @return number of documents the server rejected, each one is logged with its key and error
+     */
+    private int insertBatch(String collection, List<? extends ArangoDocument> batch) {
+        return properties.getArango().getIngestMode() == BenchmarkProperties.IngestMode.AQL
+            ? insertWithAql(collection, batch)
+            : insertMultiDocument(collection, batch);
+    }
 
-        log.info("Stored graph {} in OrientDB, with {} vertices and {} edges", plan.getId(), vertexMap.size(), edgeCount);
+    private int insertMultiDocument(String collection, List<? extends ArangoDocument> batch) {
+        return logRejected(collection, batch, metrics.roundTrip(DB.ARGANO, "insertMany",
+            () -> arangoDatabase.collection(collection).insertDocuments(batch, createOptions())));
+    }
+
+    /**
+     * @return number of documents of the batch that insertDocuments rejected, each one is logged with its key and error
+     */
+    static int logRejected(String collection, List<? extends ArangoDocument> batch, MultiDocumentEntity<?> result) {
+        if (result.getErrors().isEmpty()) {
+            return 0;
+        }
+        List<Object> documentsAndErrors = result.getDocumentsAndErrors();
+        for (int i = 0; i < documentsAndErrors.size(); i++) {
+            if (documentsAndErrors.get(i) instanceof ErrorEntity error) {
+                log.warn("Failed to insert {} into {}: {} (error {})", batch.get(i).key(), collection, error.getErrorMessage(), error.getErrorNum());
+            }
+        }
+        return result.getErrors().size();
+    }
+
+    /**
+     * ignoreErrors keeps one rejected document from aborting the whole batch, but AQL doesn't say why a document was
+     * skipped. The query checks each document for the errors it can foresee before the insert and returns them with
+     * the stored keys, in the same round trip, nothing is sent again.
+     */
+    private int insertWithAql(String collection, List<? extends ArangoDocument> batch) {
+        AqlInsert result = metrics.roundTrip(DB.ARGANO, "query",
+            () -> arangoDatabase.query(insertQuery(collection), AqlInsert.class, Map.of("docs", batch), null)).next();
+        return logRejected(collection, batch, result);
+    }
+
+    /**
+     * @return number of documents of the batch the AQL insert didn't store, each one is logged with its key and the
+     * error the query reported, or as skipped when the server dropped it for a reason the query didn't check
+     */
+    static int logRejected(String collection, List<? extends ArangoDocument> batch, AqlInsert result) {
+        if (result.inserted().size() == batch.size()) {
+            return 0;
+        }
+        Set<String> accounted = new HashSet<>(result.inserted());
+        for (AqlRejection rejection : result.rejected()) {
+            accounted.add(rejection.key());
+            log.warn("Failed to insert {} into {}: {} (error {})", rejection.key(), collection, rejection.errorMessage(), rejection.errorNum());
+        }
+        for (ArangoDocument document : batch) {
+            if (!accounted.contains(document.key())) {
+                log.warn("Failed to insert {} into {}: skipped by ignoreErrors without a reported error", document.key(), collection);
+            }
+        }
+        return batch.size() - result.inserted().size();
+    }
+
+    /**
+     * @return AQL insert of the documents bound to docs that returns the keys it stored and the documents it rejected.
+     * An illegal key is always rejected, an existing key only in conflict mode, the other modes overwrite or keep the
+     * stored document. The existing keys are read before the insert, a query can't read a collection it already wrote.
+     */
+    String insertQuery(String collection) {
+        BenchmarkProperties.Arango arango = properties.getArango();
+        String existing = arango.getOverwriteMode() == OverwriteMode.conflict
+            ? "DOCUMENT('%s', doc._key) != null ? { errorNum: 1210, errorMessage: 'unique constraint violated' } : ".formatted(collection)
+            : "";
+        // OPTIONS must be known when the query is parsed, so they are rendered into the query instead of bound
+        return """
+            LET checked = (FOR doc IN @docs RETURN { doc, error: !IS_KEY(doc._key) ? { errorNum: 1221, errorMessage: 'illegal document key' } : %snull })
+            LET inserted = (FOR candidate IN checked FILTER candidate.error == null
+                INSERT candidate.doc INTO %s OPTIONS { ignoreErrors: true, waitForSync: %s, overwriteMode: '%s' } RETURN NEW._key)
+            RETURN { inserted, rejected: checked[* FILTER CURRENT.error != null RETURN MERGE({ key: CURRENT.doc._key }, CURRENT.error)] }"""
+            .formatted(existing, collection, arango.isWaitForSync(), arango.getOverwriteMode().getValue());
+    }
+
+    DocumentCreateOptions createOptions() {
+        return new DocumentCreateOptions()
+            .waitForSync(properties.getArango().isWaitForSync())
+            .overwriteMode(properties.getArango().getOverwriteMode());
     }
 
     @Override
-    public void fetchAndUpdate(String planId) {
+    public Optional<Node> fetchAndUpdate(String planId) {
+        boolean completes = transitions.nextCompletes(planId);
         try {
-            // Query to traverse the graph starting from the root node and find the first eligible node
-            String query = """
-                FOR node IN %s FILTER node.data == @rootData LIMIT 1
-                  FOR v, e IN 1..10 OUTBOUND
-                    node._id %s
-                    OPTIONS {bfs: true}
-                    FILTER v.planId == @planId
-                    FILTER v.status != 'Completed'
-                    LIMIT 1
-                    RETURN v""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS);
-
-            Map<String, Object> bindVars = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId);
-
-            ArangoIterator<BaseDocument> nodeToUpdateItr = arangoDatabase.query(query, BaseDocument.class, bindVars, null).iterator();
-            if (nodeToUpdateItr.hasNext()) {
-                // Update node status in Java and save back to the database
-                BaseDocument nodeToUpdate = nodeToUpdateItr.next();
-                String nodeId = nodeToUpdate.getKey();
-                Node node = mapToNode(nodeToUpdate); // Utility method to map BaseDocument to Node
-                node.progressStatus();
-
-                nodeToUpdate.addAttribute("status", node.getStatus().toString());
-                arangoDatabase.collection(EXECUTION_PLAN_NODE_CLASS).updateDocument(nodeId, nodeToUpdate);
+            return optimisticRetry.run(DB.ARGANO.name(), () -> {
+                ArangoIterator<NodeDocument> nodeToUpdateItr = queryEligible(planId, 1).iterator();
+                if (!nodeToUpdateItr.hasNext()) {
+                    return Optional.empty();
+                }
+                // Update node status in Java and save back to the database, only if nobody wrote it since the query
+                NodeDocument nodeToUpdate = nodeToUpdateItr.next();
+                String nodeId = nodeToUpdate.key();
+                Node node = mapToNode(nodeToUpdate);
+                node.progressStatus(completes);
+
+                try {
+                    metrics.roundTrip(DB.ARGANO, "update", () -> arangoDatabase.query(CLIENT_UPDATE_QUERY, Void.class,
+                        clientUpdateBindVars(nodeToUpdate, node), null));
+                } catch (ArangoDBException e) {
+                    throw conflictOr(e, "Node " + nodeId, 2);
+                }
 
                 log.info("Updated node {} in ArangoDB to status {}", nodeId, node.getStatus());
-            }
+                return Optional.of(node);
+            });
         } catch (Exception e) {
             log.error("Error during ArangoDB fetch and update", e);
+            metrics.markFailed();
+        }
+        return Optional.empty();
+    }
+
+    static Map<String, Object> clientUpdateBindVars(NodeDocument nodeToUpdate, Node node) {
+        return Map.of("key", nodeToUpdate.key(), "rev", nodeToUpdate.revision(), "status", node.getStatus().toString());
+    }
+
+    /**
+     * Concurrent updates of one plan write the same counter document, the query that loses fails with a write
+     * conflict and is retried.
+     */
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        try {
+            Map<String, Object> bindVars = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId,
+                "completes", transitions.nextCompletes(planId));
+            Optional<Node> updated = optimisticRetry.run(DB.ARGANO.name(), () -> {
+                try {
+                    ArangoIterator<NodeDocument> documents = metrics.roundTrip(DB.ARGANO, "query",
+                        () -> arangoDatabase.query(SERVER_UPDATE_QUERY, NodeDocument.class, bindVars, null)).iterator();
+                    return documents.hasNext() ? Optional.of(mapToNode(documents.next())) : Optional.empty();
+                } catch (ArangoDBException e) {
+                    throw conflictOr(e, "Plan " + planId, 1);
+                }
+            });
+            updated.ifPresent(node -> log.info("Updated node {} in ArangoDB to status {}", node.getId(), node.getStatus()));
+            return updated;
+        } catch (Exception e) {
+            log.error("Error during ArangoDB server side fetch and update", e);
+            metrics.markFailed();
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        return queryEligible(planId, limit).stream().map(this::mapToNode).toList();
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return queryEligible(planId, limit).stream().map(this::mapToCompactNode).toList();
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        Map<String, Object> bindVars = Map.of("key", documentKey(node.getPlanId(), node.getId()), "status", node.getStatus().toString());
+        try {
+            optimisticRetry.run(DB.ARGANO.name(), () -> {
+                try {
+                    metrics.roundTrip(DB.ARGANO, "update", () -> arangoDatabase.query(STATUS_QUERY, Void.class, bindVars, null));
+                    return Optional.of(true);
+                } catch (ArangoDBException e) {
+                    throw conflictOr(e, "Node " + node.getId(), 1);
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            log.error("Error updating status of node {} in ArangoDB", node.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * The query runs as one transaction, a claim that loses a node to a concurrent claim fails with a write conflict
+     * and is retried as a whole.
+     */
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        long now = System.currentTimeMillis();
+        Map<String, Object> bindVars = Map.of("planIds", planIds, "limit", limit, "owner", owner, "now", now,
+            "expiresAt", now + lease.toMillis());
+        try {
+            return optimisticRetry.run(DB.ARGANO.name(), () -> {
+                try {
+                    List<NodeDocument> claimed = metrics.roundTrip(DB.ARGANO, "claim",
+                        () -> arangoDatabase.query(CLAIM_QUERY, NodeDocument.class, bindVars, null)).asListRemaining();
+                    return Optional.of(claimed.stream().map(this::mapToNode).toList());
+                } catch (ArangoDBException e) {
+                    throw conflictOr(e, "Claim over " + planIds.size() + " plans", 1);
+                }
+            }).orElse(List.of());
+        } catch (Exception e) {
+            log.error("Error claiming ready nodes in ArangoDB", e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        List<Map<String, String>> rows = nodes.stream()
+            .map(node -> Map.of("key", documentKey(node.getPlanId(), node.getId()), "status", node.getStatus().toString()))
+            .toList();
+        try {
+            return optimisticRetry.run(DB.ARGANO.name(), () -> {
+                try {
+                    List<NodeDocument> reported = metrics.roundTrip(DB.ARGANO, "report",
+                        () -> arangoDatabase.query(REPORT_QUERY, NodeDocument.class, Map.of("nodes", rows, "owner", owner), null)).asListRemaining();
+                    return Optional.of(reported.size());
+                } catch (ArangoDBException e) {
+                    throw conflictOr(e, "Report of " + nodes.size() + " nodes", 1);
+                }
+            }).orElse(0);
+        } catch (Exception e) {
+            log.error("Error reporting status of {} nodes in ArangoDB", nodes.size(), e);
+            return 0;
         }
     }
 
+    static RuntimeException conflictOr(ArangoDBException e, String target, int roundTrips) {
+        return Integer.valueOf(WRITE_CONFLICT).equals(e.getErrorNum()) ? new UpdateConflictException(target, roundTrips) : e;
+    }
+
+    /**
+     * @return the node writes, which return {@link #MOVE}, followed by the update of the counters, returning the
+     * written nodes
+     */
+    private static String withProgress(String nodeWrites) {
+        return "LET moved = (\n" + nodeWrites + ")\n" + PROGRESS_UPDATE + "\nFOR move IN moved RETURN move.node";
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        return metrics.roundTrip(DB.ARGANO, "query", () -> arangoDatabase.query(PROGRESS_QUERY, ProgressDocument.class, Map.of("planIds", planIds), null))
+            .stream()
+            .collect(Collectors.toMap(ProgressDocument::planId, ProgressDocument::toPlanProgress));
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        Map<String, long[]> counts = new HashMap<>();
+        metrics.roundTrip(DB.ARGANO, "query", () -> arangoDatabase.query(AGGREGATE_QUERY, StatusCount.class, Map.of("planIds", planIds), null))
+            .forEach(count -> counts.computeIfAbsent(count.planId(), planId -> new long[Node.Status.values().length])[count.status().ordinal()] = count.nodes());
+        return counts.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> PlanProgress.of(entry.getKey(), entry.getValue())));
+    }
+
+    private ArangoCursor<NodeDocument> queryEligible(String planId, int limit) {
+        Map<String, Object> bindVars = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId, "limit", limit);
+        return metrics.roundTrip(DB.ARGANO, "query", () -> arangoDatabase.query(ELIGIBLE_QUERY, NodeDocument.class, bindVars, null));
+    }
+
     @PreDestroy
     public void closeDatabase() {
         if (arangoDB != null) {
@@ -109,23 +515,86 @@ public class ArangoDBWrapper implements DBWrapper {
         }
     }
 
-    private BaseDocument mapToDocument(Node node) {
-        BaseDocument document = new BaseDocument(node.getId());
-        document.setId(node.getId());
-        document.addAttribute("data", node.getData());
-        document.addAttribute("planId", node.getPlanId());
-        document.addAttribute("status", node.getStatus());
-        document.addAttribute("parentId", node.getParentId());
-        return document;
+    /**
+     * SmartGraph keys start with the value of the smart attribute, so with smartGraph enabled the node id is
+     * prefixed with its planKey. Edge keys then take the form {@code <planKey>:<parentId>-<childId>:<planKey>}.
+     */
+    String documentKey(String planId, String nodeId) {
+        return properties.getArango().isSmartGraph() ? planKey(planId) + ":" + nodeId : nodeId;
+    }
+
+    /**
+     * Plan ids hold spaces, which a _key doesn't allow, so the smart attribute is the URL encoded planId. The
+     * encoding only produces characters a _key allows and never a colon, which separates it from the node id.
+     */
+    static String planKey(String planId) {
+        return URLEncoder.encode(planId, StandardCharsets.UTF_8);
+    }
+
+    NodeDocument mapToDocument(Node node) {
+        return new NodeDocument(documentKey(node.getPlanId(), node.getId()), null, node.getData(), node.getPlanId(), node.getStatus(),
+            node.getParentId(), null, null, properties.getArango().isSmartGraph() ? planKey(node.getPlanId()) : null);
     }
 
-    private Node mapToNode(BaseDocument document) {
+    DependsEdge mapToEdge(String parentId, Node child) {
+        String key = parentId + "-" + child.getId();
+        return new DependsEdge(properties.getArango().isSmartGraph() ? documentKey(child.getPlanId(), key) + ":" + planKey(child.getPlanId()) : key,
+            EXECUTION_PLAN_NODE_CLASS + "/" + documentKey(child.getPlanId(), parentId),
+            EXECUTION_PLAN_NODE_CLASS + "/" + documentKey(child.getPlanId(), child.getId()));
+    }
+
+    Node mapToNode(NodeDocument document) {
         return Node.builder()
-            .id(document.getKey())
-            .data((String) document.getAttribute("data"))
-            .planId((String) document.getAttribute("planId"))
-            .status(Node.Status.valueOf((String) document.getAttribute("status")))
-            .parentId((String) document.getAttribute("parentId"))
+            .id(nodeId(document))
+            .data(document.data())
+            .planId(document.planId())
+            .status(document.status())
+            .parentId(document.parentId())
+            .leaseOwner(document.leaseOwner())
+            .leaseExpiresAt(document.leaseExpiresAt() == null ? 0 : document.leaseExpiresAt())
             .build();
     }
+
+    private String nodeId(NodeDocument document) {
+        return properties.getArango().isSmartGraph() ? document.key().substring(document.key().indexOf(':') + 1) : document.key();
+    }
+
+    CompactNode mapToCompactNode(NodeDocument document) {
+        return new CompactNode(nodeId(document),
+            document.planId(), document.data(), document.status(), document.parentId(), document.leaseOwner(),
+            document.leaseExpiresAt() == null ? 0 : document.leaseExpiresAt());
+    }
+
+    /**
+     * Documents written by the driver's Jackson serde straight from these records, so no BaseDocument attribute
+     * map is built per node and status is read back as the enum.
+     */
+    sealed interface ArangoDocument permits NodeDocument, DependsEdge {
+        String key();
+    }
+
+    // revision is only set on read, null fields such as the parentId of a root or the lease of an unclaimed node are left out of the document,
+    // planKey is only written for a SmartGraph
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record NodeDocument(@Key String key, @Rev String revision, String data, String planId, Node.Status status, String parentId,
+                        String leaseOwner, Long leaseExpiresAt, String planKey) implements ArangoDocument {
+    }
+
+    record DependsEdge(@Key String key, @From String from, @To String to) implements ArangoDocument {
+    }
+
+    record ProgressDocument(String planId, long pending, long running, long completed, long error) {
+        PlanProgress toPlanProgress() {
+            return new PlanProgress(planId, pending, running, completed, error);
+        }
+    }
+
+    record StatusCount(String planId, Node.Status status, long nodes) {
+    }
+
+    record AqlInsert(List<String> inserted, List<AqlRejection> rejected) {
+    }
+
+    record AqlRejection(String key, int errorNum, String errorMessage) {
+    }
 }
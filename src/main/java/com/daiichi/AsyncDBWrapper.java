@@ -0,0 +1,38 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link DBWrapper}, every call returns as soon as its first request is handed to the
+ * driver. Failures are logged and completed the same way the blocking wrapper returns them, a failed
+ * fetchAndUpdate completes with an empty Optional.
+ */
+public interface AsyncDBWrapper {
+    CompletableFuture<Void> createTree(ExecutionPlan plan);
+
+    /**
+     * @see DBWrapper#fetchAndUpdate(String)
+     */
+    CompletableFuture<Optional<Node>> fetchAndUpdate(String planId);
+
+    /**
+     * @see DBWrapper#fetchAndUpdateOnServer(String)
+     */
+    default CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        return fetchAndUpdate(planId);
+    }
+
+    default CompletableFuture<Optional<Node>> fetchAndUpdate(String planId, DBWrapper.UpdateMode mode) {
+        return mode == DBWrapper.UpdateMode.SERVER ? fetchAndUpdateOnServer(planId) : fetchAndUpdate(planId);
+    }
+
+    /**
+     * @return connections or sessions the driver spreads concurrent requests over, pipelining keeps a
+     * configured number of requests in flight on each of them
+     */
+    int connections();
+}
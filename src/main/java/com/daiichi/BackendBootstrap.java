@@ -0,0 +1,95 @@
+package com.daiichi;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the schema checks and provisioning of the selected backends in parallel. DbConfig submits a backend's
+ * provisioning as soon as its client bean exists, so the round trips of all backends overlap with each other and
+ * with the rest of the context refresh. The refresh only completes once every backend is provisioned, a failure
+ * names the backend whose server couldn't be reached.
+ */
+@Slf4j
+@Component
+public class BackendBootstrap implements SmartInitializingSingleton, DisposableBean {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "backend-bootstrap");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<DBWrapper.DB, CompletableFuture<Duration>> provisioning = Collections.synchronizedMap(new EnumMap<>(DBWrapper.DB.class));
+    private volatile long firstSubmitNanos;
+    private volatile Duration wallClock = Duration.ZERO;
+
+    void submit(DBWrapper.DB backend, Runnable task) {
+        if (provisioning.isEmpty()) {
+            firstSubmitNanos = System.nanoTime();
+        }
+        provisioning.put(backend, CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            task.run();
+            return Duration.ofNanos(System.nanoTime() - start);
+        }, executor));
+    }
+
+    /**
+     * Blocks until the backend is provisioned, for beans that can't be built before their database exists.
+     */
+    void await(DBWrapper.DB backend) {
+        CompletableFuture<Duration> task = provisioning.get(backend);
+        if (task == null) {
+            throw new IllegalStateException("No bootstrap of " + backend + " was submitted");
+        }
+        try {
+            task.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Bootstrap of " + backend + " failed, is its server up?", e.getCause());
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (provisioning.isEmpty()) {
+            return;
+        }
+        List.copyOf(provisioning.keySet()).forEach(this::await);
+        wallClock = Duration.ofNanos(System.nanoTime() - firstSubmitNanos);
+        log.info("Bootstrapped {} in {} ms", durations(), wallClock.toMillis());
+    }
+
+    /**
+     * @return time each backend's provisioning took on its own
+     */
+    public Map<DBWrapper.DB, Duration> durations() {
+        Map<DBWrapper.DB, Duration> durations = new EnumMap<>(DBWrapper.DB.class);
+        synchronized (provisioning) {
+            provisioning.forEach((backend, task) -> durations.put(backend, task.getNow(Duration.ZERO)));
+        }
+        return durations;
+    }
+
+    /**
+     * @return time from the start of the first provisioning until the last one finished
+     */
+    public Duration wallClock() {
+        return wallClock;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
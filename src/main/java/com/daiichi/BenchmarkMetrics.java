@@ -0,0 +1,204 @@
+package com.daiichi;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Micrometer instrumentation shared by the wrappers. Every DBWrapper call is timed as {@code benchmark.operation}
+ * and every driver request it makes as {@code benchmark.round.trip}, both tagged with backend, operation, update
+ * mode and outcome, with in-flight gauges per backend next to the pool capacity gauges registered by DbConfig.
+ * Both are also emitted as the flight recorder events {@link OperationEvent} and {@link RoundTripEvent}, which add
+ * the plan and node count the timers leave out to keep their tag cardinality low.
+ */
+@Component
+public class BenchmarkMetrics {
+    public static final String OPERATION_TIMER = "benchmark.operation";
+    public static final String ROUND_TRIP_TIMER = "benchmark.round.trip";
+    private static final String NO_MODE = "none";
+    private static final Call NO_CALL = new Call("none", null, null, 0);
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    // DBWrapper call running on this thread, so its round trips carry the same mode tag and event fields
+    private final ThreadLocal<Call> currentCall = ThreadLocal.withInitial(() -> NO_CALL);
+    // Set when the backend logged a failure of the call running on this thread and returned an empty result instead
+    private final ThreadLocal<Boolean> callFailed = ThreadLocal.withInitial(() -> false);
+
+    public BenchmarkMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Wraps a backend so every DBWrapper call is timed and counted.
+     */
+    public DBWrapper instrument(DBWrapper.DB backend, DBWrapper dbWrapper) {
+        return new InstrumentedDBWrapper(this, backend, dbWrapper);
+    }
+
+    /**
+     * Times one driver request made on the calling thread.
+     */
+    public <T> T roundTrip(DBWrapper.DB backend, String operation, Supplier<T> request) {
+        AtomicInteger requests = inFlight(ROUND_TRIP_TIMER, backend);
+        Call call = currentCall.get();
+        RoundTripEvent event = new RoundTripEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(registry);
+        requests.incrementAndGet();
+        String outcome = "error";
+        try {
+            T result = request.get();
+            outcome = "success";
+            return result;
+        } finally {
+            requests.decrementAndGet();
+            sample.stop(timer(ROUND_TRIP_TIMER, backend, operation, call.modeTag(), outcome));
+            commit(event, backend, operation, call, outcome);
+        }
+    }
+
+    /**
+     * Times a pipelined driver request from submission until its future completes.
+     */
+    public <T> CompletableFuture<T> roundTripAsync(DBWrapper.DB backend, String operation, Supplier<CompletableFuture<T>> request) {
+        AtomicInteger requests = inFlight(ROUND_TRIP_TIMER, backend);
+        Call call = currentCall.get();
+        RoundTripEvent event = new RoundTripEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(registry);
+        requests.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            requests.decrementAndGet();
+            sample.stop(timer(ROUND_TRIP_TIMER, backend, operation, call.modeTag(), "error"));
+            commit(event, backend, operation, call, "error");
+            throw e;
+        }
+        return future.whenComplete((result, error) -> {
+            String outcome = error == null ? "success" : "error";
+            requests.decrementAndGet();
+            sample.stop(timer(ROUND_TRIP_TIMER, backend, operation, call.modeTag(), outcome));
+            commit(event, backend, operation, call, outcome);
+        });
+    }
+
+    /**
+     * Registers a gauge of the connections or sessions a backend can have open at once, divide
+     * {@code benchmark.round.trip.inflight} by it for the pool usage.
+     */
+    public void poolCapacity(DBWrapper.DB backend, Supplier<Number> capacity) {
+        Gauge.builder("benchmark.pool.capacity", capacity).tag("backend", backend.name()).register(registry);
+    }
+
+    /**
+     * Registers a gauge of how long requests wait in the backend's queue before they are served, in seconds.
+     */
+    public void poolQueueTime(DBWrapper.DB backend, Supplier<Number> queueTimeSeconds) {
+        Gauge.builder("benchmark.pool.queue.time", queueTimeSeconds).tag("backend", backend.name()).baseUnit("seconds").register(registry);
+    }
+
+    /**
+     * Marks the DBWrapper call running on the calling thread as failed. A backend that catches a failure and returns
+     * an empty result calls this, so the call is tagged with outcome error rather than as one that found nothing.
+     */
+    public void markFailed() {
+        callFailed.set(true);
+    }
+
+    /**
+     * @param nodesOf nodes the call fetched or claimed, null when it is the count the call was given
+     */
+    <T> T operation(DBWrapper.DB backend, Call call, Supplier<T> body, OutcomeOf<T> outcomeOf, ToIntFunction<T> nodesOf) {
+        AtomicInteger operations = inFlight(OPERATION_TIMER, backend);
+        Call previousCall = currentCall.get();
+        boolean previousFailed = callFailed.get();
+        currentCall.set(call);
+        callFailed.set(false);
+        OperationEvent event = new OperationEvent();
+        event.begin();
+        Timer.Sample sample = Timer.start(registry);
+        operations.incrementAndGet();
+        String outcome = "error";
+        int nodeCount = call.nodeCount();
+        try {
+            T result = body.get();
+            outcome = callFailed.get() ? "error" : outcomeOf.outcome(result);
+            nodeCount = nodesOf == null ? nodeCount : nodesOf.applyAsInt(result);
+            return result;
+        } finally {
+            operations.decrementAndGet();
+            sample.stop(timer(OPERATION_TIMER, backend, call.operation(), call.modeTag(), outcome));
+            currentCall.set(previousCall);
+            callFailed.set(previousFailed);
+            event.end();
+            if (event.shouldCommit()) {
+                event.backend = backend.name();
+                event.operation = call.operation();
+                event.mode = call.modeTag();
+                event.planId = call.planId();
+                event.nodeCount = nodeCount;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private static void commit(RoundTripEvent event, DBWrapper.DB backend, String operation, Call call, String outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.backend = backend.name();
+            event.operation = operation;
+            event.call = call.operation();
+            event.mode = call.modeTag();
+            event.planId = call.planId();
+            event.nodeCount = call.nodeCount();
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private Timer timer(String name, DBWrapper.DB backend, String operation, String mode, String outcome) {
+        return Timer.builder(name)
+            .tags(Tags.of("backend", backend.name(), "operation", operation, "mode", mode, "outcome", outcome))
+            .publishPercentiles(0.5, 0.99)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    private AtomicInteger inFlight(String name, DBWrapper.DB backend) {
+        return inFlight.computeIfAbsent(name + "/" + backend, key -> registry.gauge(name + ".inflight",
+            Tags.of("backend", backend.name()), new AtomicInteger()));
+    }
+
+    interface OutcomeOf<T> {
+        String outcome(T result);
+    }
+
+    /**
+     * A DBWrapper call as its timer and events describe it.
+     *
+     * @param planId    null for calls spanning several plans
+     * @param nodeCount nodes the call was given
+     */
+    record Call(String operation, DBWrapper.UpdateMode mode, String planId, int nodeCount) {
+        String modeTag() {
+            return mode == null ? NO_MODE : mode.name();
+        }
+    }
+}
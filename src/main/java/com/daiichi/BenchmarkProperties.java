@@ -0,0 +1,362 @@
+package com.daiichi;
+
+import com.arangodb.Protocol;
+import com.arangodb.model.OverwriteMode;
+import com.daiichi.workload.PlanShape;
+import com.daiichi.workload.SizeDistribution;
+import com.orientechnologies.orient.core.db.ODatabaseType;
+import org.apache.tinkerpop.gremlin.driver.ser.Serializers;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.daiichi.pojo.Constants.TEST_GRAPH_COUNT;
+import static com.daiichi.pojo.Constants.TEST_GRAPH_DEPTH;
+
+@Data
+@ConfigurationProperties(prefix = "benchmark")
+public class BenchmarkProperties {
+    // Only these backends get drivers, schema and wrappers, harnesses skip the others. Servers of backends left out don't have to be up
+    private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+    private int planCount = TEST_GRAPH_COUNT;
+    private int updateCount = 500;
+    // Plans handed to a single DBWrapper.createTrees call during the creation phase
+    private int plansPerCreate = 1;
+
+    // Operations that are timed but left out of the reported histograms
+    private int warmupCreations = 10;
+    private int warmupUpdates = 50;
+
+    // Target ops/sec for the update phase, 0 runs as fast as possible without coordinated omission correction
+    private double targetRate = 0;
+
+    // Update phases run one after the other on the same plans, so client and server side transitions are reported side by side
+    private List<DBWrapper.UpdateMode> updateModes = List.of(DBWrapper.UpdateMode.CLIENT, DBWrapper.UpdateMode.SERVER);
+
+    // Provision secondary indexes on planId, data and id, false drops them so both variants can be compared
+    private boolean indexes = true;
+
+    private Workload workload = new Workload();
+    private Scaling scaling = new Scaling();
+    private Load load = new Load();
+    private Oracle oracle = new Oracle();
+    private FrontierCache frontierCache = new FrontierCache();
+    private Contention contention = new Contention();
+    private Metrics metrics = new Metrics();
+    private Results results = new Results();
+    private Async async = new Async();
+    private Sharding sharding = new Sharding();
+    private Sweep sweep = new Sweep();
+    private Startup startup = new Startup();
+    private Trace trace = new Trace();
+    private Replay replay = new Replay();
+    private Claim claim = new Claim();
+    private Progress progress = new Progress();
+    private Arango arango = new Arango();
+    private Gremlin gremlin = new Gremlin();
+    private Orient orient = new Orient();
+    private Neo4j neo4j = new Neo4j();
+
+    /**
+     * @return the backends of a harness that are selected in {@link #backends}, in the harness's order
+     */
+    public List<DBWrapper.DB> selected(List<DBWrapper.DB> harnessBackends) {
+        return harnessBackends.stream().filter(backends::contains).toList();
+    }
+
+    @Data
+    public static class Workload {
+        private long seed = 42;
+        private PlanShape shape = PlanShape.TREE;
+        private int fanOut = 3;
+        private int depth = TEST_GRAPH_DEPTH;
+        private SizeDistribution sizeDistribution = SizeDistribution.FIXED;
+        // Plan size for FIXED, 0 derives it from shape, fanOut and depth
+        private int planSize = 0;
+        // Bounds for UNIFORM and ZIPF
+        private int minSize = 10;
+        private int maxSize = 100_000;
+        private double zipfExponent = 1.1;
+    }
+
+    @Data
+    public static class Scaling {
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        private List<Integer> planCounts = List.of(10, 100, 1000);
+        private List<Integer> planSizes = List.of(121, 1_093, 9_841);
+        private int updatesPerStep = 200;
+        // CSV with one row per backend, plan count and plan size
+        private String output = "scaling-results.csv";
+    }
+
+    @Data
+    public static class Load {
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        private List<Integer> workerCounts = List.of(1, 2, 4, 8, 16, 32);
+        private boolean virtualThreads = false;
+        private Mode mode = Mode.CLOSED_LOOP;
+        // Aggregate ops/sec across all workers, only used in OPEN_LOOP mode, where it must be above 0
+        private double targetRate = 500;
+        private Duration duration = Duration.ofSeconds(30);
+        private Duration warmup = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Oracle {
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        // fetchAndUpdate calls per backend, each one is checked against the in-memory reference
+        private int updates = 500;
+    }
+
+    @Data
+    public static class FrontierCache {
+        // Wraps every backend handed out to the harnesses in a FrontierCachingDBWrapper
+        private boolean enabled = false;
+        private int maxPlans = 10_000;
+        private int frontierSize = 64;
+    }
+
+    @Data
+    public static class Contention {
+        // Retries of a client side fetchAndUpdate whose compare-and-set lost against another writer
+        private int maxRetries = 5;
+        // Upper bound of the first jittered backoff, doubled per retry up to maxBackoff
+        private Duration initialBackoff = Duration.ofMillis(1);
+        private Duration maxBackoff = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class Metrics {
+        // Prometheus scrape of every meter written when the run finishes, empty skips the file
+        private String dump = "metrics.prom";
+    }
+
+    @Data
+    public static class Startup {
+        // Closes the context once started, for the AppCDS training run that only has to load the startup classes
+        private boolean exitAfterStartup = false;
+        // Bean instantiations listed in the startup report, slowest first
+        private int slowestBeans = 10;
+    }
+
+    @Data
+    public static class Trace {
+        // Records the createTree and fetchAndUpdate calls of every harness to <directory>/<backend>-<timestamp>.trace
+        private boolean record = false;
+        private String directory = "traces";
+    }
+
+    @Data
+    public static class Replay {
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        // Trace written by benchmark.trace.record or converted from production logs
+        private String file;
+        // 1 replays at the recorded pace, 2 twice as fast, 0 as fast as the workers go
+        private double speed = 1;
+        // A plan's operations always go to the same worker, so they run in recorded order
+        private int workers = 8;
+        // Operations waiting per worker before the dispatcher blocks
+        private int queueDepth = 1024;
+    }
+
+    @Data
+    public static class Claim {
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        private List<Integer> workerCounts = List.of(1, 2, 4, 8, 16);
+        // Fresh plans per worker count, a step ends when all of their nodes are Completed or the duration is over
+        private int plans = 20;
+        // Plans named in one claimReady call, picked at random from the step's plans
+        private int plansPerClaim = 4;
+        // Nodes leased per claimReady call
+        private int batchSize = 32;
+        private Duration lease = Duration.ofSeconds(5);
+        // Fraction of claimed nodes a worker drops without reporting, they come back once their lease expires
+        private double abandonRate = 0;
+        private Duration duration = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Progress {
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        private List<Integer> planSizes = List.of(121, 1_093, 9_841);
+        // Fresh plans per plan size, the counters of all of them are checked against their nodes
+        private int plans = 20;
+        // Server side updates per plan before the reads, one claim and report over every plan follows them
+        private int updatesPerPlan = 20;
+        // Timed reads per operation and plan size
+        private int reads = 500;
+        // Plans named in one batched read
+        private int batchSize = 10;
+    }
+
+    @Data
+    public static class Async {
+        // Adds a pipelined phase through the AsyncDBWrapper after every blocking update phase of the load driver
+        private boolean enabled = false;
+        // Requests kept in flight per connection or pooled session, submitters block beyond it
+        private int inFlightPerConnection = 8;
+    }
+
+    @Data
+    public static class Sharding {
+        // Routes plans by consistent hash of planId across the endpoints of each backend and measures every shard count up to their number
+        private boolean enabled = false;
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        // One instance per shard, in the format of the backend's own endpoint: host:port for ArangoDB and Gremlin,
+        // an OrientDB url and a Bolt uri for Neo4j. The defaults are the instances of docker-compose's sharding profile.
+        private Map<DBWrapper.DB, List<String>> endpoints = new EnumMap<>(Map.of(
+            DBWrapper.DB.IN_MEMORY, List.of("memory-1", "memory-2"),
+            DBWrapper.DB.ARGANO, List.of("localhost:8529", "localhost:8539"),
+            DBWrapper.DB.ORIENT, List.of("remote:localhost:2424", "remote:localhost:2425"),
+            DBWrapper.DB.NEPTUNE, List.of("localhost:8182", "localhost:8183"),
+            DBWrapper.DB.NEO4J, List.of("bolt://localhost:7687", "bolt://localhost:7688")));
+        // Points per instance on the hash ring, more of them even out how many plans each shard gets
+        private int virtualNodes = 128;
+        // Plans and workers scale with the shard count, so every shard sees the same load at every step
+        private int plansPerShard = 100;
+        private int workersPerShard = 4;
+        private Duration duration = Duration.ofSeconds(30);
+        private Duration warmup = Duration.ofSeconds(5);
+        // CSV with a row per shard and an aggregate row per backend, shard count and update mode
+        private String output = "sharding-results.csv";
+    }
+
+    @Data
+    public static class Sweep {
+        private List<DBWrapper.DB> backends = List.of(DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J);
+        // Values per property below benchmark., every combination of a backend's matrix is one load driver run in a
+        // context of its own. Keys contain dots, so set them in brackets: --benchmark.sweep.matrix.ARGANO[arango.protocol]=HTTP_JSON,VST
+        // replaces the whole ARGANO matrix. Worker counts come from benchmark.load.worker-counts, every run measures all of them.
+        private Map<DBWrapper.DB, Map<String, List<String>>> matrix = new EnumMap<>(Map.of(
+            DBWrapper.DB.ARGANO, orderedMatrix(
+                Map.entry("arango.protocol", List.of("HTTP_JSON", "HTTP2_JSON", "HTTP2_VPACK", "VST")),
+                Map.entry("arango.max-connections", List.of("1", "4", "16"))),
+            DBWrapper.DB.ORIENT, orderedMatrix(
+                Map.entry("orient.pool-size", List.of("4", "10", "32"))),
+            DBWrapper.DB.NEPTUNE, orderedMatrix(
+                Map.entry("gremlin.min-connection-pool-size", List.of("2", "8")),
+                Map.entry("gremlin.max-connection-pool-size", List.of("8", "16")),
+                Map.entry("gremlin.max-in-process-per-connection", List.of("4", "16")),
+                Map.entry("gremlin.serializer", List.of("GRAPHBINARY_V1D0", "GRAPHSON_V3D0"))),
+            DBWrapper.DB.NEO4J, orderedMatrix(
+                Map.entry("neo4j.max-connections", List.of("4", "10", "32")))));
+        // Operation whose best throughput over all worker counts ranks the combinations of a backend
+        private String rankBy = "Update (CLIENT)";
+        // Result files of every run, sweep.csv with one row per run, worker count and operation, and best.properties
+        private String directory = "sweep";
+    }
+
+    @Data
+    public static class Results {
+        // Every run writes run-<timestamp>.json and .csv here, compare them with: java -jar <jar> compare a.json b.json
+        private String directory = "results";
+        // Records every run with JDK Flight Recorder into run-<timestamp>.jfr next to them, read it with: java -jar <jar> analyze run.jfr
+        private boolean flightRecording = true;
+        // JFR settings the recording starts from, "default" or "profile", the benchmark's own events are always on
+        private String flightRecordingSettings = "default";
+        // Safepoints, thread parks and monitor waits shorter than this are left out of the recording
+        private Duration flightRecordingThreshold = Duration.ofMillis(1);
+    }
+
+    @Data
+    public static class Arango {
+        private String endpoint = "localhost:8529";
+        private IngestMode ingestMode = IngestMode.PER_DOCUMENT;
+        private int batchSize = 1000;
+        private boolean waitForSync = false;
+        private OverwriteMode overwriteMode = OverwriteMode.conflict;
+        // Connections per host, HTTP/2 multiplexes concurrent requests over each of them
+        private int maxConnections = 1;
+        // HTTP2_VPACK sends documents and results as VelocyPack instead of JSON
+        private Protocol protocol = Protocol.HTTP2_JSON;
+        // Shards per collection when endpoint is a cluster coordinator, 0 creates the collections with the server defaults
+        private int numberOfShards = 0;
+        // With numberOfShards, a SmartGraph on planId keeps every plan's vertices and edges on one DB server (Enterprise Edition),
+        // otherwise only the node collection is sharded by planId and edges follow their _key
+        private boolean smartGraph = false;
+    }
+
+    @Data
+    public static class Gremlin {
+        private String endpoint = "localhost:8182";
+        private GremlinIngestMode ingestMode = GremlinIngestMode.PER_ELEMENT;
+        // Whole plans are packed into one traversal until this many nodes, a larger plan gets a traversal of its own
+        private int maxNodesPerTraversal = 5000;
+        // Connection pool per host and the requests each connection carries at once, at the driver defaults
+        private int minConnectionPoolSize = 2;
+        private int maxConnectionPoolSize = 8;
+        private int maxInProcessPerConnection = 4;
+        private Serializers serializer = Serializers.GRAPHBINARY_V1D0;
+    }
+
+    @Data
+    public static class Orient {
+        // remote:host for the compose container, embedded:path for an in-process database
+        private String url = "remote:localhost";
+        // Server credentials for remote:, for embedded: they are ignored and databaseUser is created with the database
+        private String serverUser = "root";
+        private String serverPassword = "admin";
+        private String databaseUser = "root";
+        private String databasePassword = "admin";
+        // PLOCAL or MEMORY, used when the benchmark database has to be created
+        private ODatabaseType databaseType = ODatabaseType.PLOCAL;
+        private int poolSize = 10;
+        // Vertices and edges written per transaction, the default keeps a whole plan in one transaction
+        private int txBatchSize = 10_000;
+    }
+
+    @Data
+    public static class Neo4j {
+        // Bolt endpoint of the compose container, or of any other server such as an embedded one
+        private String uri = "bolt://localhost:7687";
+        private String user = "neo4j";
+        private String password = "password";
+        private String database = "neo4j";
+        // Connections in the driver's pool, each one runs one transaction at a time
+        private int maxConnections = 10;
+        // Rows bound to one UNWIND statement, the default writes a whole plan with one statement for nodes and one for edges
+        private int batchSize = 10_000;
+    }
+
+    // Keeps the matrix in the order its properties are given, combinations vary the last property fastest
+    @SafeVarargs
+    private static Map<String, List<String>> orderedMatrix(Map.Entry<String, List<String>>... values) {
+        Map<String, List<String>> matrix = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> value : values) {
+            matrix.put(value.getKey(), value.getValue());
+        }
+        return matrix;
+    }
+
+    public enum GremlinIngestMode {
+        // One traversal per vertex and per edge
+        PER_ELEMENT,
+        // One traversal per chunk of plans, edges reference the vertices returned by addV
+        TRAVERSAL
+    }
+
+    public enum IngestMode {
+        // One insertDocument round trip per vertex and edge
+        PER_DOCUMENT,
+        // insertDocuments with up to batchSize documents per request
+        MULTI_DOCUMENT,
+        // A single AQL INSERT over a bound array of up to batchSize documents
+        AQL
+    }
+
+    public enum Mode {
+        CLOSED_LOOP,
+        OPEN_LOOP
+    }
+}
@@ -0,0 +1,21 @@
+package com.daiichi;
+
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers the bean only when its backend is one of {@code benchmark.backends}, so drivers of backends that
+ * aren't benchmarked are never built and their servers don't have to be up.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Conditional(OnBackendCondition.class)
+public @interface ConditionalOnBackend {
+    DBWrapper.DB value();
+}
@@ -1,13 +1,114 @@
 package com.daiichi;
 
+import com.daiichi.pojo.CompactNode;
 import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface DBWrapper {
     void createTree(ExecutionPlan plan);
 
-    void fetchAndUpdate(String planId);
+    /**
+     * Stores several plans at once, backends with a bulk write path override this to share round trips between plans.
+     */
+    default void createTrees(List<ExecutionPlan> plans) {
+        plans.forEach(this::createTree);
+    }
+
+    /**
+     * Advances the first node of the plan that isn't Completed by one status transition.
+     *
+     * @return the node after its transition, empty when every node is Completed or the update failed
+     */
+    Optional<Node> fetchAndUpdate(String planId);
+
+    /**
+     * Same contract as fetchAndUpdate, but the node is found and transitioned by a single server side statement,
+     * so a step costs one round trip. Backends without such a statement fall back to fetchAndUpdate.
+     */
+    default Optional<Node> fetchAndUpdateOnServer(String planId) {
+        return fetchAndUpdate(planId);
+    }
+
+    default Optional<Node> fetchAndUpdate(String planId, UpdateMode mode) {
+        return mode == UpdateMode.SERVER ? fetchAndUpdateOnServer(planId) : fetchAndUpdate(planId);
+    }
+
+    /**
+     * @return up to {@code limit} nodes of the plan that aren't Completed, in the order fetchAndUpdate visits them
+     */
+    List<Node> fetchEligible(String planId, int limit);
+
+    /**
+     * Same as {@link #fetchEligible}, for callers that hold the nodes. Backends override it to map their results
+     * straight to {@link CompactNode}s without building a {@link Node} for each one first.
+     */
+    default List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return fetchEligible(planId, limit).stream().map(CompactNode::of).toList();
+    }
+
+    /**
+     * Writes the status of a single node found by id, without traversing the plan.
+     *
+     * @return false when the write failed
+     */
+    boolean updateStatus(Node node);
+
+    /**
+     * Leases up to {@code limit} ready nodes of the given plans to {@code owner} in one atomic step per backend call.
+     * A node is ready when all of its parents are Completed and it is Pending, in Error and due for a retry, or
+     * Running under a lease that expired before the call. Claimed nodes are Running and carry the owner and the
+     * epoch millis the lease expires at, taken from the caller's clock.
+     *
+     * @return the claimed nodes, fewer than limit when the plans have no more ready nodes
+     */
+    List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease);
+
+    /**
+     * Writes the status of several nodes leased to {@code owner} and releases their leases. A node whose lease
+     * was reclaimed by another owner after it expired is left as it is.
+     *
+     * @return number of nodes written
+     */
+    int reportStatus(String owner, List<Node> nodes);
+
+    /**
+     * @return the status counters of the plan, empty when the backend doesn't know it
+     */
+    default Optional<PlanProgress> getPlanProgress(String planId) {
+        return Optional.ofNullable(getPlanProgress(List.of(planId)).get(planId));
+    }
+
+    /**
+     * Reads the status counters of several plans in one backend call. The counters are kept up to date by every
+     * status write, so the cost doesn't grow with the size of the plans.
+     *
+     * @return counters by plan id, plans the backend doesn't know are left out
+     */
+    Map<String, PlanProgress> getPlanProgress(List<String> planIds);
+
+    /**
+     * Counts the nodes of each plan by status from the nodes themselves, at the cost of reading every node. The
+     * reference the counters of {@link #getPlanProgress(List)} are checked and benchmarked against.
+     *
+     * @return counts by plan id, plans without nodes are left out
+     */
+    Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds);
+
+    enum UpdateMode {
+        // Query the node, transition it in Java and write it back
+        CLIENT,
+        // Transition the node inside the query that finds it
+        SERVER
+    }
 
     enum DB {
+        IN_MEMORY,
         ARGANO,
         ORIENT,
         NEPTUNE,
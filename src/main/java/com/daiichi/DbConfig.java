@@ -1,24 +1,44 @@
 package com.daiichi;
 
+import com.arangodb.ArangoCollection;
 import com.arangodb.ArangoDB;
 import com.arangodb.ArangoDatabase;
+import com.arangodb.ArangoDatabaseAsync;
 import com.arangodb.entity.CollectionType;
 import com.arangodb.entity.EdgeDefinition;
+import com.arangodb.entity.IndexEntity;
 import com.arangodb.model.CollectionCreateOptions;
+import com.arangodb.model.GraphCreateOptions;
+import com.arangodb.model.PersistentIndexOptions;
+import com.orientechnologies.orient.core.config.OGlobalConfiguration;
+import com.orientechnologies.orient.core.db.ODatabasePool;
 import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.db.ODatabaseType;
 import com.orientechnologies.orient.core.db.OrientDB;
 import com.orientechnologies.orient.core.db.OrientDBConfig;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tinkerpop.gremlin.driver.Client;
 import org.apache.tinkerpop.gremlin.driver.Cluster;
+import org.apache.tinkerpop.gremlin.driver.remote.DriverRemoteConnection;
+import org.apache.tinkerpop.gremlin.process.traversal.AnonymousTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Config;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import java.util.Collections;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.daiichi.pojo.Constants.*;
 
@@ -29,64 +49,279 @@ class DbConfig {
 
     private final String DB_NAME = "benchmarkdb";
 
+    /*
+     * Building a client does no I/O, the beans hand the round trips of schema checks and provisioning to
+     * BackendBootstrap, which runs them for all selected backends at the same time.
+     */
+
+    @Bean
+    @ConditionalOnBackend(DBWrapper.DB.ARGANO)
+    public ArangoDB arangoDB(BenchmarkProperties properties, BenchmarkMetrics metrics, BackendBootstrap bootstrap) {
+        ArangoDB arangoDB = openArangoDB(properties.getArango().getEndpoint(), properties);
+        bootstrap.submit(DBWrapper.DB.ARGANO, () -> provisionArango(arangoDB, properties));
+        // Average of the server side queue times the driver sampled from its responses
+        metrics.poolQueueTime(DBWrapper.DB.ARGANO, () -> arangoDB.metrics().getQueueTime().getAvg());
+        return arangoDB;
+    }
+
+    @Bean
+    @ConditionalOnBackend(DBWrapper.DB.ORIENT)
+    public OrientDB orientDB(BenchmarkProperties properties, BackendBootstrap bootstrap) {
+        String url = properties.getOrient().getUrl();
+        OrientDB orientDB = openOrientDB(url, properties);
+        bootstrap.submit(DBWrapper.DB.ORIENT, () -> provisionOrient(orientDB, url, properties));
+        return orientDB;
+    }
+
     @Bean
-    public ArangoDB arangoDB() {
-        return new ArangoDB.Builder().host("localhost", 8529).user("root").password("password").build();
+    @ConditionalOnBackend(DBWrapper.DB.NEPTUNE)
+    public Client neptuneDB(BenchmarkProperties properties, BenchmarkMetrics metrics, BackendBootstrap bootstrap) {
+        Client client = openGremlinClient(properties.getGremlin().getEndpoint(), properties);
+        bootstrap.submit(DBWrapper.DB.NEPTUNE, () -> provisionGremlin(client, properties));
+        Cluster cluster = client.getCluster();
+        metrics.poolCapacity(DBWrapper.DB.NEPTUNE, () -> cluster.maxConnectionPoolSize() * cluster.availableHosts().size());
+        return client;
     }
 
     @Bean
-    public OrientDB orientDB() {
-        return new OrientDB("remote:localhost", "root", "admin", OrientDBConfig.defaultConfig());
+    @ConditionalOnBackend(DBWrapper.DB.NEPTUNE)
+    public GraphTraversalSource neptuneTraversal(Client neptuneDB) {
+        // Bytecode traversals go out as GraphBinary over the connections of the shared client
+        return AnonymousTraversalSource.traversal().withRemote(DriverRemoteConnection.using(neptuneDB));
     }
 
     @Bean
-    public Client neptuneDB() {
-        Cluster cluster = Cluster.build()
-            .addContactPoint("localhost")
-            .port(8182)
-            .create();
-        return cluster.connect();
+    @ConditionalOnBackend(DBWrapper.DB.NEO4J)
+    public Driver neo4jDriver(BenchmarkProperties properties, BenchmarkMetrics metrics, BackendBootstrap bootstrap) {
+        Driver driver = openNeo4jDriver(properties.getNeo4j().getUri(), properties);
+        bootstrap.submit(DBWrapper.DB.NEO4J, () -> provisionNeo4j(driver, properties));
+        metrics.poolCapacity(DBWrapper.DB.NEO4J, properties.getNeo4j()::getMaxConnections);
+        return driver;
     }
 
     @Bean
+    @ConditionalOnBackend(DBWrapper.DB.ARGANO)
     public ArangoDatabase arangoDatabase(ArangoDB arangoDB) {
+        return arangoDB.db(DB_NAME);
+    }
+
+    @Bean
+    @ConditionalOnBackend(DBWrapper.DB.ARGANO)
+    public ArangoDatabaseAsync arangoDatabaseAsync(ArangoDB arangoDB, ArangoDatabase arangoDatabase) {
+        // Shares the connections of arangoDB, only the request API differs
+        return arangoDB.async().db(arangoDatabase.name());
+    }
+
+    @Bean
+    @Lazy
+    @ConditionalOnBackend(DBWrapper.DB.ORIENT)
+    public ODatabasePool orientPool(OrientDB orientDB, BenchmarkProperties properties, BenchmarkMetrics metrics, BackendBootstrap bootstrap) {
+        // The pool opens the database right away, so it can't be built before the database was created
+        bootstrap.await(DBWrapper.DB.ORIENT);
+        ODatabasePool orientPool = openOrientPool(orientDB, properties);
+        metrics.poolCapacity(DBWrapper.DB.ORIENT, properties.getOrient()::getPoolSize);
+        return orientPool;
+    }
+
+    /*
+     * The factories below open one instance of a backend and the provision methods create its schema, the beans
+     * above use them for the configured endpoint and ShardFactory for every shard. They register no gauges, those
+     * belong to the beans.
+     */
+
+    ArangoDB openArangoDB(String endpoint, BenchmarkProperties properties) {
+        String[] hostAndPort = endpoint.split(":");
+        return new ArangoDB.Builder().host(hostAndPort[0], Integer.parseInt(hostAndPort[1])).user("root").password("password")
+            .maxConnections(properties.getArango().getMaxConnections())
+            .protocol(properties.getArango().getProtocol())
+            .build();
+    }
+
+    OrientDB openOrientDB(String url, BenchmarkProperties properties) {
+        BenchmarkProperties.Orient orient = properties.getOrient();
+        return new OrientDB(url, orient.getServerUser(), orient.getServerPassword(), OrientDBConfig.defaultConfig());
+    }
+
+    Client openGremlinClient(String endpoint, BenchmarkProperties properties) {
+        BenchmarkProperties.Gremlin gremlin = properties.getGremlin();
+        String[] hostAndPort = endpoint.split(":");
+        // Connections are opened by the first request, not here
+        return Cluster.build()
+            .addContactPoint(hostAndPort[0])
+            .port(Integer.parseInt(hostAndPort[1]))
+            .minConnectionPoolSize(gremlin.getMinConnectionPoolSize())
+            .maxConnectionPoolSize(gremlin.getMaxConnectionPoolSize())
+            .maxInProcessPerConnection(gremlin.getMaxInProcessPerConnection())
+            .serializer(gremlin.getSerializer())
+            .create()
+            .connect();
+    }
+
+    Driver openNeo4jDriver(String uri, BenchmarkProperties properties) {
+        BenchmarkProperties.Neo4j neo4j = properties.getNeo4j();
+        return GraphDatabase.driver(uri, AuthTokens.basic(neo4j.getUser(), neo4j.getPassword()),
+            Config.builder().withMaxConnectionPoolSize(neo4j.getMaxConnections()).build());
+    }
+
+    /**
+     * Needs the database to exist, see {@link #provisionOrient}.
+     */
+    ODatabasePool openOrientPool(OrientDB orientDB, BenchmarkProperties properties) {
+        BenchmarkProperties.Orient orient = properties.getOrient();
+        OrientDBConfig poolConfig = OrientDBConfig.builder()
+            .addConfig(OGlobalConfiguration.DB_POOL_MAX, orient.getPoolSize())
+            .build();
+        return new ODatabasePool(orientDB, DB_NAME, orient.getDatabaseUser(), orient.getDatabasePassword(), poolConfig);
+    }
+
+    void provisionArango(ArangoDB arangoDB, BenchmarkProperties properties) {
         if (!arangoDB.db(DB_NAME).exists()) {
             arangoDB.createDatabase(DB_NAME);
         }
         ArangoDatabase arangoDatabase = arangoDB.db(DB_NAME);
-        if (!arangoDatabase.collection(EXECUTION_PLAN_NODE_CLASS).exists()) {
-            arangoDatabase.createCollection(EXECUTION_PLAN_NODE_CLASS);
-        }
-        if (!arangoDatabase.collection(EXECUTION_PLAN_DEPENDS_CLASS).exists()) {
-            arangoDatabase.createCollection(EXECUTION_PLAN_DEPENDS_CLASS, new CollectionCreateOptions().type(CollectionType.EDGES));
-        }
+        BenchmarkProperties.Arango arango = properties.getArango();
         EdgeDefinition edgeDefinition = new EdgeDefinition()
             .collection(EXECUTION_PLAN_DEPENDS_CLASS)
             .from(EXECUTION_PLAN_NODE_CLASS)
             .to(EXECUTION_PLAN_NODE_CLASS);
+        if (arango.getNumberOfShards() > 0 && arango.isSmartGraph() && !arangoDatabase.graph(EXECUTION_PLAN_GRAPH_CLASS).exists()) {
+            // A SmartGraph creates its own collections, every plan's vertices and edges end up on the shard of its planKey,
+            // the planId in a form _key accepts
+            arangoDatabase.createGraph(EXECUTION_PLAN_GRAPH_CLASS, Collections.singletonList(edgeDefinition),
+                new GraphCreateOptions().isSmart(true).smartGraphAttribute("planKey").numberOfShards(arango.getNumberOfShards()));
+        }
+        CollectionCreateOptions nodeOptions = new CollectionCreateOptions();
+        CollectionCreateOptions edgeOptions = new CollectionCreateOptions().type(CollectionType.EDGES);
+        if (arango.getNumberOfShards() > 0) {
+            // Nodes of a plan share a shard, its edges are spread by _key and traversals hop between DB servers
+            nodeOptions.numberOfShards(arango.getNumberOfShards()).shardKeys("planId");
+            edgeOptions.numberOfShards(arango.getNumberOfShards());
+        }
+        if (!arangoDatabase.collection(EXECUTION_PLAN_NODE_CLASS).exists()) {
+            arangoDatabase.createCollection(EXECUTION_PLAN_NODE_CLASS, nodeOptions);
+        }
+        if (!arangoDatabase.collection(EXECUTION_PLAN_DEPENDS_CLASS).exists()) {
+            arangoDatabase.createCollection(EXECUTION_PLAN_DEPENDS_CLASS, edgeOptions);
+        }
         if (!arangoDatabase.graph(EXECUTION_PLAN_GRAPH_CLASS).exists()) {
             arangoDatabase.createGraph(EXECUTION_PLAN_GRAPH_CLASS, Collections.singletonList(edgeDefinition));
         }
-        return arangoDatabase;
+        // Counters are sharded like the nodes of their plan, the unique index is what every status write looks them up by
+        CollectionCreateOptions progressOptions = new CollectionCreateOptions();
+        if (arango.getNumberOfShards() > 0) {
+            progressOptions.numberOfShards(arango.getNumberOfShards()).shardKeys("planId");
+        }
+        if (!arangoDatabase.collection(EXECUTION_PLAN_PROGRESS_CLASS).exists()) {
+            arangoDatabase.createCollection(EXECUTION_PLAN_PROGRESS_CLASS, progressOptions);
+        }
+        arangoDatabase.collection(EXECUTION_PLAN_PROGRESS_CLASS)
+            .ensurePersistentIndex(List.of("planId"), new PersistentIndexOptions().name("idx_progress_plan").unique(true));
+        provisionArangoIndexes(arangoDatabase.collection(EXECUTION_PLAN_NODE_CLASS), properties.isIndexes());
     }
 
-    @Bean
-    public ODatabaseSession orientSession(OrientDB orientDB) {
+    void provisionOrient(OrientDB orientDB, String url, BenchmarkProperties properties) {
+        BenchmarkProperties.Orient orient = properties.getOrient();
         if (!orientDB.exists(DB_NAME)) {
-            orientDB.create(DB_NAME, ODatabaseType.PLOCAL);
+            if (url.startsWith("remote:")) {
+                orientDB.create(DB_NAME, orient.getDatabaseType());
+            } else {
+                // Embedded databases get no default users, so the pool user is created with the database
+                orientDB.execute("CREATE DATABASE %s %s USERS (%s IDENTIFIED BY '%s' ROLE admin)".formatted(
+                    DB_NAME, orient.getDatabaseType().name().toLowerCase(), orient.getDatabaseUser(), orient.getDatabasePassword())).close();
+            }
         }
-        ODatabaseSession orientSession = orientDB.open(DB_NAME, "root", "admin");
-        if (orientSession.getClass(EXECUTION_PLAN_NODE_CLASS) == null) {
-            orientSession.createVertexClass(EXECUTION_PLAN_NODE_CLASS);
+        try (ODatabaseSession orientSession = orientDB.open(DB_NAME, orient.getDatabaseUser(), orient.getDatabasePassword())) {
+            if (orientSession.getClass(EXECUTION_PLAN_NODE_CLASS) == null) {
+                orientSession.createVertexClass(EXECUTION_PLAN_NODE_CLASS);
+            }
+            if (orientSession.getClass(EXECUTION_PLAN_DEPENDS_CLASS) == null) {
+                orientSession.createEdgeClass(EXECUTION_PLAN_DEPENDS_CLASS);
+            }
+            // Every status write updates the counters of its plan by planId, so they are indexed either way
+            if (orientSession.getClass(EXECUTION_PLAN_PROGRESS_CLASS) == null) {
+                OClass progressClass = orientSession.createClass(EXECUTION_PLAN_PROGRESS_CLASS);
+                progressClass.createProperty("planId", OType.STRING);
+                progressClass.createIndex(EXECUTION_PLAN_PROGRESS_CLASS + ".planId", OClass.INDEX_TYPE.UNIQUE_HASH_INDEX, "planId");
+            }
+            provisionOrientIndexes(orientSession, properties.isIndexes());
         }
-        if (orientSession.getClass(EXECUTION_PLAN_DEPENDS_CLASS) == null) {
-            orientSession.createEdgeClass(EXECUTION_PLAN_DEPENDS_CLASS);
+    }
+
+    void provisionGremlin(Client client, BenchmarkProperties properties) {
+        provisionGremlinIndexes(client, properties.isIndexes());
+    }
+
+    void provisionNeo4j(Driver driver, BenchmarkProperties properties) {
+        try (Session session = driver.session(SessionConfig.forDatabase(properties.getNeo4j().getDatabase()))) {
+            provisionNeo4jSchema(session, properties.isIndexes());
         }
-        return orientSession;
     }
 
-    @Bean
-    public ExecutorService executorService() {
-        return Executors.newFixedThreadPool(10); // Configurable pool size
+    private void provisionArangoIndexes(ArangoCollection nodes, boolean enabled) {
+        // The node id is the document _key, which the primary index already covers
+        Map<String, List<String>> indexes = Map.of(
+            "idx_plan_status", List.of("planId", "status"),
+            "idx_data", List.of("data"));
+        Map<String, String> existing = nodes.getIndexes().stream()
+            .collect(Collectors.toMap(IndexEntity::getName, IndexEntity::getId));
+        indexes.forEach((name, fields) -> {
+            if (enabled) {
+                nodes.ensurePersistentIndex(fields, new PersistentIndexOptions().name(name));
+            } else if (existing.containsKey(name)) {
+                nodes.deleteIndex(existing.get(name));
+            }
+        });
+        log.info("ArangoDB indexes {}", enabled ? indexes.keySet() : "dropped");
+    }
+
+    private void provisionOrientIndexes(ODatabaseSession orientSession, boolean enabled) {
+        OClass nodeClass = orientSession.getClass(EXECUTION_PLAN_NODE_CLASS);
+        Map<String, OClass.INDEX_TYPE> indexes = Map.of(
+            "id", OClass.INDEX_TYPE.UNIQUE_HASH_INDEX,
+            "data", OClass.INDEX_TYPE.NOTUNIQUE_HASH_INDEX,
+            "planId", OClass.INDEX_TYPE.NOTUNIQUE);
+        indexes.forEach((property, type) -> {
+            String name = EXECUTION_PLAN_NODE_CLASS + "." + property;
+            if (enabled) {
+                if (nodeClass.getProperty(property) == null) {
+                    nodeClass.createProperty(property, OType.STRING);
+                }
+                if (nodeClass.getClassIndex(name) == null) {
+                    nodeClass.createIndex(name, type, property);
+                }
+            } else {
+                orientSession.command("DROP INDEX `%s` IF EXISTS".formatted(name)).close();
+            }
+        });
+        log.info("OrientDB indexes {}", enabled ? indexes : "dropped");
+    }
+
+    private void provisionNeo4jSchema(Session session, boolean indexesEnabled) {
+        // Unique ids are part of the model, like the ArangoDB _key, so the constraint and its index stay either way
+        session.run("CREATE CONSTRAINT plan_node_id IF NOT EXISTS FOR (node:%s) REQUIRE node.id IS UNIQUE"
+            .formatted(EXECUTION_PLAN_NODE_CLASS)).consume();
+        // Every status write looks up the counters of its plan, so they are indexed either way too
+        session.run("CREATE CONSTRAINT plan_progress_plan_id IF NOT EXISTS FOR (progress:%s) REQUIRE progress.planId IS UNIQUE"
+            .formatted(EXECUTION_PLAN_PROGRESS_CLASS)).consume();
+        Map<String, String> indexes = Map.of(
+            "plan_node_plan_status", "node.planId, node.status",
+            "plan_node_data", "node.data");
+        indexes.forEach((name, properties) -> session.run(indexesEnabled
+            ? "CREATE INDEX %s IF NOT EXISTS FOR (node:%s) ON (%s)".formatted(name, EXECUTION_PLAN_NODE_CLASS, properties)
+            : "DROP INDEX %s IF EXISTS".formatted(name)).consume());
+        session.run("CALL db.awaitIndexes()").consume();
+        log.info("Neo4j id and progress constraints, indexes {}", indexesEnabled ? indexes.keySet() : "dropped");
+    }
+
+    private void provisionGremlinIndexes(Client client, boolean enabled) {
+        // Only graphs with a key index API (TinkerGraph) accept this, Neptune indexes every property on its own
+        String script = enabled
+            ? "['id', 'planId', 'data'].each { graph.createIndex(it, Vertex.class) }; graph.getIndexedKeys(Vertex.class)"
+            : "graph.getIndexedKeys(Vertex.class).each { graph.dropIndex(it, Vertex.class) }; graph.getIndexedKeys(Vertex.class)";
+        try {
+            log.info("Gremlin indexed keys {}", client.submit(script).all().get());
+        } catch (Exception e) {
+            log.warn("Gremlin server does not support property indexes, queries will scan: {}", e.getMessage());
+        }
     }
 }
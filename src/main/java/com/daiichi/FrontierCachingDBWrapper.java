@@ -0,0 +1,223 @@
+package com.daiichi;
+
+import com.daiichi.pojo.CompactNode;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps the next eligible nodes of recently used plans on the client, so fetchAndUpdate costs a single status
+ * write instead of a traversal from the root. A plan's frontier is seeded with
+ * {@link DBWrapper#fetchEligibleCompact} on first access and advanced locally on every transition; Completed is
+ * final, so the head of the frontier stays the node the delegate's own traversal would pick. Plans are evicted least recently used beyond maxPlans, and
+ * createTree drops the frontier because it resets an existing plan to Pending. Cached nodes are held as
+ * {@link CompactNode}s, a full cache is maxPlans times frontierSize nodes.
+ * Only valid while this instance is the single writer of the plans it caches.
+ */
+@Slf4j
+public class FrontierCachingDBWrapper implements DBWrapper {
+    private static final int LOCK_STRIPES = 64;
+
+    private final DBWrapper delegate;
+    private final StatusTransitions transitions;
+    private final String name;
+    private final int maxPlans;
+    private final int frontierSize;
+    private final Map<String, Frontier> frontiers;
+    private final ReentrantLock[] locks = IntStream.range(0, LOCK_STRIPES)
+        .mapToObj(i -> new ReentrantLock())
+        .toArray(ReentrantLock[]::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxPlans     plans whose frontier is kept, the least recently used one is evicted beyond that
+     * @param frontierSize nodes fetched per seed, bounds the memory of a single plan
+     */
+    public FrontierCachingDBWrapper(DBWrapper delegate, StatusTransitions transitions, String name, int maxPlans, int frontierSize) {
+        this.delegate = delegate;
+        this.transitions = transitions;
+        this.name = name;
+        this.maxPlans = maxPlans;
+        this.frontierSize = frontierSize;
+        this.frontiers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Frontier> eldest) {
+                if (size() > FrontierCachingDBWrapper.this.maxPlans) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void createTree(ExecutionPlan plan) {
+        delegate.createTree(plan);
+        invalidate(plan.getId());
+    }
+
+    @Override
+    public void createTrees(List<ExecutionPlan> plans) {
+        delegate.createTrees(plans);
+        plans.forEach(plan -> invalidate(plan.getId()));
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdate(String planId) {
+        boolean completes = transitions.nextCompletes(planId);
+        ReentrantLock lock = lockFor(planId);
+        lock.lock();
+        try {
+            Frontier frontier = frontierFor(planId);
+            CompactNode cached = frontier.nodes.peekFirst();
+            if (cached == null) {
+                return Optional.empty();
+            }
+            cached.progressStatus(completes);
+            Node node = cached.toNode();
+            if (!delegate.updateStatus(node)) {
+                invalidate(planId);
+                return Optional.empty();
+            }
+            if (node.getStatus() == Node.Status.Completed) {
+                frontier.nodes.removeFirst();
+            }
+            log.debug("Updated node {} through the frontier cache to status {}", node.getData(), node.getStatus());
+            return Optional.of(node);
+        } catch (RuntimeException e) {
+            log.error("Error during cached fetch and update of plan {}", planId, e);
+            invalidate(planId);
+            return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        // The server picks the node, so whatever frontier is cached for the plan may now be stale
+        ReentrantLock lock = lockFor(planId);
+        lock.lock();
+        try {
+            Optional<Node> node = delegate.fetchAndUpdateOnServer(planId);
+            invalidate(planId);
+            return node;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        return delegate.fetchEligible(planId, limit);
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return delegate.fetchEligibleCompact(planId, limit);
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        // A write that didn't go through the frontier may have changed which node is next
+        boolean updated = delegate.updateStatus(node);
+        invalidate(node.getPlanId());
+        return updated;
+    }
+
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        // Claimed nodes turn Running behind the frontiers' back
+        List<Node> claimed = delegate.claimReady(planIds, limit, owner, lease);
+        claimed.stream().map(Node::getPlanId).distinct().forEach(this::invalidate);
+        return claimed;
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        int reported = delegate.reportStatus(owner, nodes);
+        nodes.stream().map(Node::getPlanId).distinct().forEach(this::invalidate);
+        return reported;
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        return delegate.getPlanProgress(planIds);
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        return delegate.aggregatePlanProgress(planIds);
+    }
+
+    public void report() {
+        long total = hits.sum() + misses.sum();
+        log.info("{}: Frontier cache, Hits: {}, Misses: {}, Hit rate: {}, Evictions: {}, Invalidations: {}, Cached plans: {}",
+            name, hits.sum(), misses.sum(), "%.3f".formatted(total == 0 ? 0.0 : hits.sum() / (double) total),
+            evictions.sum(), invalidations.sum(), cachedPlans());
+    }
+
+    /**
+     * Returns the cached frontier, seeding it when the plan isn't cached or every cached node has Completed. A seed
+     * shorter than frontierSize isn't taken as the whole rest of the plan, a backend may return fewer nodes than
+     * remain, so the frontier is seeded again once it runs empty and only an empty seed marks the plan done.
+     * Callers hold the plan's lock, so a seed never races with a transition of the same plan.
+     */
+    private Frontier frontierFor(String planId) {
+        Frontier frontier;
+        synchronized (frontiers) {
+            frontier = frontiers.get(planId);
+        }
+        if (frontier != null && (!frontier.nodes.isEmpty() || frontier.done)) {
+            hits.increment();
+            return frontier;
+        }
+        misses.increment();
+        ArrayDeque<CompactNode> nodes = new ArrayDeque<>(delegate.fetchEligibleCompact(planId, frontierSize));
+        frontier = new Frontier(nodes, nodes.isEmpty());
+        synchronized (frontiers) {
+            frontiers.put(planId, frontier);
+        }
+        return frontier;
+    }
+
+    private void invalidate(String planId) {
+        synchronized (frontiers) {
+            if (frontiers.remove(planId) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    private int cachedPlans() {
+        synchronized (frontiers) {
+            return frontiers.size();
+        }
+    }
+
+    private ReentrantLock lockFor(String planId) {
+        return locks[Math.floorMod(planId.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * @param done the seed found no node that isn't Completed, the plan stays done until createTree resets it
+     */
+    private record Frontier(ArrayDeque<CompactNode> nodes, boolean done) {
+    }
+}
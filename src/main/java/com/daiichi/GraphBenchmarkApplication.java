@@ -1,15 +1,39 @@
 package com.daiichi;
 
+import com.daiichi.results.FlightRecordingAnalysis;
+import com.daiichi.results.ParameterSweep;
+import com.daiichi.results.ResultComparison;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+
+import java.util.Arrays;
 
 @Slf4j
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class GraphBenchmarkApplication {
+    public static final int STARTUP_STEPS = 4096;
 
-    public static void main(String[] args) {
-        SpringApplication.run(GraphBenchmarkApplication.class, args);
+    public static void main(String[] args) throws Exception {
+        // compare baseline.json candidate.json runs without a Spring context or any database
+        if (args.length > 0 && args[0].equals("compare")) {
+            System.exit(ResultComparison.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // analyze run.jfr explains the slow operations of a run's flight recording
+        if (args.length > 0 && args[0].equals("analyze")) {
+            System.exit(FlightRecordingAnalysis.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // sweep [--benchmark.*=...] runs the load driver once per settings combination, each in a fresh context
+        if (args.length > 0 && args[0].equals("sweep")) {
+            System.exit(ParameterSweep.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        SpringApplication application = new SpringApplication(GraphBenchmarkApplication.class);
+        // Keeps the startup steps for StartupReport's slowest beans
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        application.run(args);
     }
 }
 
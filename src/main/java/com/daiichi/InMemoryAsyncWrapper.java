@@ -0,0 +1,40 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Completes every call on the calling thread, the baseline for what pipelining costs without any I/O to overlap.
+ */
+@Service
+@RequiredArgsConstructor
+public class InMemoryAsyncWrapper implements AsyncDBWrapper {
+
+    private final InMemoryGraphWrapper inMemoryGraphWrapper;
+
+    @Override
+    public CompletableFuture<Void> createTree(ExecutionPlan plan) {
+        inMemoryGraphWrapper.createTree(plan);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdate(String planId) {
+        return CompletableFuture.completedFuture(inMemoryGraphWrapper.fetchAndUpdate(planId));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        return CompletableFuture.completedFuture(inMemoryGraphWrapper.fetchAndUpdateOnServer(planId));
+    }
+
+    @Override
+    public int connections() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
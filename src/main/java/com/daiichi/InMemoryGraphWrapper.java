@@ -0,0 +1,530 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.NodeIds;
+import com.daiichi.pojo.PlanProgress;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+import static com.daiichi.pojo.Constants.EXECUTION_PLAN_NODE;
+import static com.daiichi.pojo.Constants.EXECUTION_PLAN_ROOT_NODE;
+
+/**
+ * In-process reference backend. Every plan is held as a compressed sparse row adjacency (parent to children) with
+ * the breadth-first order from the root computed once at creation, so fetchAndUpdate is a cursor walk over a flat
+ * array. Used as the zero-network baseline row of the benchmarks and as the oracle for the remote backends.
+ * The parents of every node are kept as a second sparse row array, so claimReady checks readiness without a search.
+ * Node ids are held as the two longs of their UUID and only formatted back to text for the nodes a call returns,
+ * the data of generated nodes is formatted from their index the same way. An open addressing table over the two
+ * longs maps a node id to its index, so a write by id doesn't search the plan.
+ * Every status write goes through {@link PlanGraph#move}, which keeps the plan's counts by status under the
+ * same lock.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InMemoryGraphWrapper implements DBWrapper {
+    private static final int LOCK_STRIPES = 64;
+    private static final Node.Status[] STATUSES = Node.Status.values();
+
+    private final StatusTransitions transitions;
+    private final Map<String, PlanGraph> plans = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = IntStream.range(0, LOCK_STRIPES)
+        .mapToObj(i -> new ReentrantLock())
+        .toArray(ReentrantLock[]::new);
+
+    @Override
+    public void createTree(ExecutionPlan plan) {
+        ReentrantLock lock = lockFor(plan.getId());
+        lock.lock();
+        try {
+            PlanGraph existing = plans.get(plan.getId());
+            if (existing != null) {
+                existing.reset();
+                log.debug("Plan {} exists, reset it to Pending", plan.getId());
+                return;
+            }
+            plans.put(plan.getId(), PlanGraph.build(plan));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdate(String planId) {
+        boolean completes = transitions.nextCompletes(planId);
+        PlanGraph graph = plans.get(planId);
+        if (graph == null) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = lockFor(planId);
+        lock.lock();
+        try {
+            int node = graph.firstNotCompleted();
+            if (node < 0) {
+                return Optional.empty();
+            }
+            Node.Status status = STATUSES[graph.status[node]].next(completes);
+            graph.move(node, status);
+            if (log.isDebugEnabled()) {
+                log.debug("Updated node {} in memory to status {}", graph.data(node), status);
+            }
+            return Optional.of(graph.toNode(node));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        PlanGraph graph = plans.get(planId);
+        if (graph == null) {
+            return List.of();
+        }
+        ReentrantLock lock = lockFor(planId);
+        lock.lock();
+        try {
+            return graph.eligible(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        PlanGraph graph = plans.get(node.getPlanId());
+        if (graph == null) {
+            return false;
+        }
+        ReentrantLock lock = lockFor(node.getPlanId());
+        lock.lock();
+        try {
+            return graph.setStatus(node.getId(), node.getStatus());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims plan by plan under each plan's lock, so a node is never leased twice, scanning from the cursor since
+     * everything before it is Completed.
+     */
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        long now = System.currentTimeMillis();
+        List<Node> claimed = new ArrayList<>(Math.min(limit, 1024));
+        for (String planId : planIds) {
+            PlanGraph graph = plans.get(planId);
+            if (graph == null) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(planId);
+            lock.lock();
+            try {
+                graph.claim(limit, owner, now, now + lease.toMillis(), claimed);
+            } finally {
+                lock.unlock();
+            }
+            if (claimed.size() >= limit) {
+                break;
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        Map<String, List<Node>> byPlan = new LinkedHashMap<>();
+        nodes.forEach(node -> byPlan.computeIfAbsent(node.getPlanId(), planId -> new ArrayList<>()).add(node));
+        int reported = 0;
+        for (Map.Entry<String, List<Node>> planNodes : byPlan.entrySet()) {
+            PlanGraph graph = plans.get(planNodes.getKey());
+            if (graph == null) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(planNodes.getKey());
+            lock.lock();
+            try {
+                for (Node node : planNodes.getValue()) {
+                    if (graph.report(owner, node.getId(), node.getStatus())) {
+                        reported++;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return reported;
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        Map<String, PlanProgress> progress = new LinkedHashMap<>();
+        for (String planId : planIds) {
+            PlanGraph graph = plans.get(planId);
+            if (graph == null) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(planId);
+            lock.lock();
+            try {
+                progress.put(planId, PlanProgress.of(planId, graph.counts));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return progress;
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        Map<String, PlanProgress> progress = new LinkedHashMap<>();
+        for (String planId : planIds) {
+            PlanGraph graph = plans.get(planId);
+            if (graph == null) {
+                continue;
+            }
+            ReentrantLock lock = lockFor(planId);
+            lock.lock();
+            try {
+                progress.put(planId, PlanProgress.of(planId, graph.aggregate()));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * @return id of the node the next fetchAndUpdate of the plan transitions, empty when every node is Completed
+     */
+    public Optional<String> nextEligible(String planId) {
+        PlanGraph graph = plans.get(planId);
+        if (graph == null) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = lockFor(planId);
+        lock.lock();
+        try {
+            int node = graph.firstNotCompleted();
+            return node < 0 ? Optional.empty() : Optional.of(graph.id(node));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the status of one node, lets the oracle follow the transitions a remote backend actually applied.
+     */
+    public void setStatus(String planId, String nodeId, Node.Status status) {
+        PlanGraph graph = plans.get(planId);
+        if (graph == null) {
+            throw new IllegalArgumentException("Unknown plan " + planId);
+        }
+        ReentrantLock lock = lockFor(planId);
+        lock.lock();
+        try {
+            if (!graph.setStatus(nodeId, status)) {
+                throw new IllegalArgumentException("Unknown node " + nodeId + " in plan " + planId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(String planId) {
+        return locks[Math.floorMod(planId.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static final class PlanGraph {
+        private final String planId;
+        // Most and least significant bits of each node's UUID
+        private final long[] idHigh;
+        private final long[] idLow;
+        // Open addressing table of node index + 1 by id hash, 0 marks a free slot, at most half full
+        private final int[] idTable;
+        // Data of each node, null when every node carries the data the generator gives its index
+        private final String[] data;
+        // Index of the first parent, -1 for the root
+        private final int[] parent;
+        // children[childOffsets[i] until childOffsets[i + 1]] are the children of node i
+        private final int[] childOffsets;
+        private final int[] children;
+        // parents[parentOffsets[i] until parentOffsets[i + 1]] are all parents of node i, extra parents of a DAG included
+        private final int[] parentOffsets;
+        private final int[] parents;
+        private final int[] bfsOrder;
+        private final byte[] status;
+        private final String[] leaseOwner;
+        private final long[] leaseExpiresAt;
+        // Nodes by status ordinal
+        private final long[] counts = new long[STATUSES.length];
+        // Position in bfsOrder before which every node is Completed, Completed is final until the plan is reset
+        private int cursor;
+
+        private PlanGraph(String planId, long[] idHigh, long[] idLow, String[] data, int[] parent, int[] childOffsets, int[] children,
+                          int[] parentOffsets, int[] parents) {
+            this.planId = planId;
+            this.idHigh = idHigh;
+            this.idLow = idLow;
+            this.data = data;
+            this.parent = parent;
+            this.childOffsets = childOffsets;
+            this.children = children;
+            this.parentOffsets = parentOffsets;
+            this.parents = parents;
+            this.idTable = idTable(idHigh, idLow);
+            this.bfsOrder = breadthFirst();
+            this.status = new byte[idHigh.length];
+            this.leaseOwner = new String[idHigh.length];
+            this.leaseExpiresAt = new long[idHigh.length];
+            this.counts[Node.Status.Pending.ordinal()] = idHigh.length;
+        }
+
+        static PlanGraph build(ExecutionPlan plan) {
+            List<Node> nodes = new ArrayList<>(plan.nodeCount());
+            plan.nodes().forEach(nodes::add);
+            int n = nodes.size();
+
+            Map<String, Integer> index = new HashMap<>(n * 2);
+            long[] idHigh = new long[n];
+            long[] idLow = new long[n];
+            String[] data = new String[n];
+            boolean generated = true;
+            for (int i = 0; i < n; i++) {
+                idHigh[i] = NodeIds.high(nodes.get(i).getId());
+                idLow[i] = NodeIds.low(nodes.get(i).getId());
+                data[i] = nodes.get(i).getData();
+                generated &= generatedData(plan.getId(), i).equals(data[i]);
+                index.put(nodes.get(i).getId(), i);
+            }
+
+            int[] parent = new int[n];
+            int[] childOffsets = new int[n + 1];
+            int[] parentOffsets = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                Node node = nodes.get(i);
+                parent[i] = node.getParentId() == null ? -1 : index.get(node.getParentId());
+                node.parentIds().forEach(parentId -> childOffsets[index.get(parentId) + 1]++);
+                parentOffsets[i + 1] = parentOffsets[i] + (int) node.parentIds().count();
+            }
+            for (int i = 0; i < n; i++) {
+                childOffsets[i + 1] += childOffsets[i];
+            }
+            int[] children = new int[childOffsets[n]];
+            int[] parents = new int[parentOffsets[n]];
+            int[] fill = Arrays.copyOf(childOffsets, n);
+            for (int i = 0; i < n; i++) {
+                int child = i;
+                int[] parentFill = {parentOffsets[i]};
+                nodes.get(i).parentIds().forEach(parentId -> {
+                    children[fill[index.get(parentId)]++] = child;
+                    parents[parentFill[0]++] = index.get(parentId);
+                });
+            }
+            return new PlanGraph(plan.getId(), idHigh, idLow, generated ? null : data, parent, childOffsets, children, parentOffsets, parents);
+        }
+
+        private static int[] idTable(long[] idHigh, long[] idLow) {
+            int[] table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, idHigh.length) * 2 - 1) << 1)];
+            for (int node = 0; node < idHigh.length; node++) {
+                int slot = slot(idHigh[node], idLow[node], table.length);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & (table.length - 1);
+                }
+                table[slot] = node + 1;
+            }
+            return table;
+        }
+
+        private static int slot(long high, long low, int tableLength) {
+            long hash = (high ^ low) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & (tableLength - 1);
+        }
+
+        private static String generatedData(String planId, int node) {
+            return node == 0 ? EXECUTION_PLAN_ROOT_NODE.formatted(planId) : EXECUTION_PLAN_NODE.formatted(node, planId);
+        }
+
+        private int[] breadthFirst() {
+            int[] order = new int[idHigh.length];
+            BitSet visited = new BitSet(idHigh.length);
+            int head = 0;
+            int tail = 0;
+            for (int root = 0; root < idHigh.length; root++) {
+                if (parent[root] == -1 && !visited.get(root)) {
+                    visited.set(root);
+                    order[tail++] = root;
+                }
+            }
+            while (head < tail) {
+                int node = order[head++];
+                for (int c = childOffsets[node]; c < childOffsets[node + 1]; c++) {
+                    if (!visited.get(children[c])) {
+                        visited.set(children[c]);
+                        order[tail++] = children[c];
+                    }
+                }
+            }
+            return tail == order.length ? order : Arrays.copyOf(order, tail);
+        }
+
+        int firstNotCompleted() {
+            byte completed = (byte) Node.Status.Completed.ordinal();
+            while (cursor < bfsOrder.length && status[bfsOrder[cursor]] == completed) {
+                cursor++;
+            }
+            return cursor < bfsOrder.length ? bfsOrder[cursor] : -1;
+        }
+
+        List<Node> eligible(int limit) {
+            List<Node> eligible = new ArrayList<>(Math.min(limit, bfsOrder.length));
+            byte completed = (byte) Node.Status.Completed.ordinal();
+            for (int i = cursor; i < bfsOrder.length && eligible.size() < limit; i++) {
+                if (status[bfsOrder[i]] != completed) {
+                    eligible.add(toNode(bfsOrder[i]));
+                }
+            }
+            return eligible;
+        }
+
+        /**
+         * Leases ready nodes in breadth-first order until {@code claimed} holds limit nodes.
+         */
+        void claim(int limit, String owner, long now, long expiresAt, List<Node> claimed) {
+            firstNotCompleted();
+            for (int i = cursor; i < bfsOrder.length && claimed.size() < limit; i++) {
+                int node = bfsOrder[i];
+                if (claimable(node, now) && parentsCompleted(node)) {
+                    move(node, Node.Status.Running);
+                    leaseOwner[node] = owner;
+                    leaseExpiresAt[node] = expiresAt;
+                    claimed.add(toNode(node));
+                }
+            }
+        }
+
+        private boolean claimable(int node, long now) {
+            return switch (STATUSES[status[node]]) {
+                case Pending, Error -> true;
+                case Running -> leaseExpiresAt[node] != 0 && leaseExpiresAt[node] < now;
+                case Completed -> false;
+            };
+        }
+
+        private boolean parentsCompleted(int node) {
+            byte completed = (byte) Node.Status.Completed.ordinal();
+            for (int p = parentOffsets[node]; p < parentOffsets[node + 1]; p++) {
+                if (status[parents[p]] != completed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return false when the node isn't Running under a lease of the owner
+         */
+        boolean report(String owner, String nodeId, Node.Status newStatus) {
+            int node = indexOf(nodeId);
+            if (node < 0 || status[node] != (byte) Node.Status.Running.ordinal() || !owner.equals(leaseOwner[node])) {
+                return false;
+            }
+            move(node, newStatus);
+            leaseOwner[node] = null;
+            leaseExpiresAt[node] = 0;
+            return true;
+        }
+
+        /**
+         * @return false when the plan has no node with the id
+         */
+        boolean setStatus(String nodeId, Node.Status newStatus) {
+            int node = indexOf(nodeId);
+            if (node < 0) {
+                return false;
+            }
+            move(node, newStatus);
+            if (newStatus != Node.Status.Completed) {
+                cursor = 0;
+            }
+            return true;
+        }
+
+        /**
+         * @return index of the node with the id, -1 when the plan has none
+         */
+        private int indexOf(String nodeId) {
+            long high = NodeIds.high(nodeId);
+            long low = NodeIds.low(nodeId);
+            for (int slot = slot(high, low, idTable.length); idTable[slot] != 0; slot = (slot + 1) & (idTable.length - 1)) {
+                int node = idTable[slot] - 1;
+                if (idHigh[node] == high && idLow[node] == low) {
+                    return node;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Writes the status of a node and moves it from the count of its old status to the one of its new status.
+         */
+        void move(int node, Node.Status newStatus) {
+            counts[status[node]]--;
+            counts[newStatus.ordinal()]++;
+            status[node] = (byte) newStatus.ordinal();
+        }
+
+        long[] aggregate() {
+            long[] aggregate = new long[STATUSES.length];
+            for (byte nodeStatus : status) {
+                aggregate[nodeStatus]++;
+            }
+            return aggregate;
+        }
+
+        String data(int node) {
+            return data == null ? generatedData(planId, node) : data[node];
+        }
+
+        String id(int node) {
+            return NodeIds.format(idHigh[node], idLow[node]);
+        }
+
+        void reset() {
+            Arrays.fill(status, (byte) Node.Status.Pending.ordinal());
+            Arrays.fill(counts, 0);
+            counts[Node.Status.Pending.ordinal()] = status.length;
+            Arrays.fill(leaseOwner, null);
+            Arrays.fill(leaseExpiresAt, 0);
+            cursor = 0;
+        }
+
+        Node toNode(int node) {
+            return Node.builder()
+                .id(id(node))
+                .planId(planId)
+                .data(data(node))
+                .status(STATUSES[status[node]])
+                .parentId(parent[node] == -1 ? null : id(parent[node]))
+                .leaseOwner(leaseOwner[node])
+                .leaseExpiresAt(leaseExpiresAt[node])
+                .build();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.daiichi;
+
+import com.daiichi.pojo.CompactNode;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Times every call of the wrapped backend through {@link BenchmarkMetrics}. fetchAndUpdate calls that find no
+ * eligible node are tagged with outcome {@code empty}, so they can be told apart from real updates, and calls whose
+ * failure the backend caught and marked through {@link BenchmarkMetrics#markFailed()} with outcome {@code error}. The
+ * plan of a call is only named when it touches a single one.
+ */
+class InstrumentedDBWrapper implements DBWrapper {
+    private static final String SUCCESS = "success";
+
+    private final BenchmarkMetrics metrics;
+    private final DB backend;
+    private final DBWrapper delegate;
+
+    InstrumentedDBWrapper(BenchmarkMetrics metrics, DB backend, DBWrapper delegate) {
+        this.metrics = metrics;
+        this.backend = backend;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void createTree(ExecutionPlan plan) {
+        metrics.operation(backend, new BenchmarkMetrics.Call("createTree", null, plan.getId(), plan.nodeCount()), () -> {
+            delegate.createTree(plan);
+            return null;
+        }, result -> SUCCESS, null);
+    }
+
+    @Override
+    public void createTrees(List<ExecutionPlan> plans) {
+        int nodes = plans.stream().mapToInt(ExecutionPlan::nodeCount).sum();
+        String planId = plans.size() == 1 ? plans.get(0).getId() : null;
+        metrics.operation(backend, new BenchmarkMetrics.Call("createTrees", null, planId, nodes), () -> {
+            delegate.createTrees(plans);
+            return null;
+        }, result -> SUCCESS, null);
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdate(String planId) {
+        return metrics.operation(backend, new BenchmarkMetrics.Call("fetchAndUpdate", UpdateMode.CLIENT, planId, 0),
+            () -> delegate.fetchAndUpdate(planId), InstrumentedDBWrapper::outcome, node -> node.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        return metrics.operation(backend, new BenchmarkMetrics.Call("fetchAndUpdate", UpdateMode.SERVER, planId, 0),
+            () -> delegate.fetchAndUpdateOnServer(planId), InstrumentedDBWrapper::outcome, node -> node.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        return metrics.operation(backend, new BenchmarkMetrics.Call("fetchEligible", null, planId, 0),
+            () -> delegate.fetchEligible(planId, limit), result -> SUCCESS, List::size);
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return metrics.operation(backend, new BenchmarkMetrics.Call("fetchEligible", null, planId, 0),
+            () -> delegate.fetchEligibleCompact(planId, limit), result -> SUCCESS, List::size);
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        return metrics.operation(backend, new BenchmarkMetrics.Call("updateStatus", null, node.getPlanId(), 1),
+            () -> delegate.updateStatus(node), updated -> updated ? SUCCESS : "failed", null);
+    }
+
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        String planId = planIds.size() == 1 ? planIds.get(0) : null;
+        return metrics.operation(backend, new BenchmarkMetrics.Call("claimReady", null, planId, 0),
+            () -> delegate.claimReady(planIds, limit, owner, lease), claimed -> claimed.isEmpty() ? "empty" : SUCCESS, List::size);
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        String planId = nodes.stream().map(Node::getPlanId).distinct().count() == 1 ? nodes.get(0).getPlanId() : null;
+        return metrics.operation(backend, new BenchmarkMetrics.Call("reportStatus", null, planId, nodes.size()),
+            () -> delegate.reportStatus(owner, nodes), reported -> reported == nodes.size() ? SUCCESS : "leaseLost", null);
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        String planId = planIds.size() == 1 ? planIds.get(0) : null;
+        return metrics.operation(backend, new BenchmarkMetrics.Call("getPlanProgress", null, planId, 0),
+            () -> delegate.getPlanProgress(planIds), result -> SUCCESS, InstrumentedDBWrapper::nodes);
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        String planId = planIds.size() == 1 ? planIds.get(0) : null;
+        return metrics.operation(backend, new BenchmarkMetrics.Call("aggregatePlanProgress", null, planId, 0),
+            () -> delegate.aggregatePlanProgress(planIds), result -> SUCCESS, InstrumentedDBWrapper::nodes);
+    }
+
+    private static int nodes(Map<String, PlanProgress> progress) {
+        return (int) progress.values().stream().mapToLong(PlanProgress::total).sum();
+    }
+
+    private static String outcome(Optional<Node> node) {
+        return node.isPresent() ? SUCCESS : "empty";
+    }
+}
@@ -0,0 +1,75 @@
+package com.daiichi;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.search.Search;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the timers recorded by {@link BenchmarkMetrics} once every harness has run, and writes the Prometheus
+ * scrape of all meters to {@code benchmark.metrics.dump} for runs without a web endpoint to scrape.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class MetricsReport {
+
+    private final MeterRegistry registry;
+    private final ObjectProvider<PrometheusMeterRegistry> prometheusRegistry;
+    private final BenchmarkProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        logTimers(BenchmarkMetrics.OPERATION_TIMER);
+        logTimers(BenchmarkMetrics.ROUND_TRIP_TIMER);
+        dump();
+    }
+
+    private void logTimers(String name) {
+        Search.in(registry).name(name).timers().stream()
+            .filter(timer -> timer.count() > 0)
+            .sorted(Comparator.comparing(timer -> timer.getId().getTags().toString()))
+            .forEach(timer -> log.info("{} {}, Count: {}, Mean: {} ms, P99: {} ms, Max: {} ms", name, timer.getId().getTags(),
+                timer.count(), round(timer.mean(TimeUnit.MILLISECONDS)), round(p99(timer)), round(timer.max(TimeUnit.MILLISECONDS))));
+    }
+
+    private void dump() {
+        String dump = properties.getMetrics().getDump();
+        PrometheusMeterRegistry prometheus = prometheusRegistry.getIfAvailable();
+        if (dump == null || dump.isBlank() || prometheus == null) {
+            return;
+        }
+        try {
+            Files.writeString(Path.of(dump), prometheus.scrape());
+            log.info("Wrote metrics to {}", dump);
+        } catch (IOException e) {
+            log.error("Could not write metrics to {}", dump, e);
+        }
+    }
+
+    private static double p99(Timer timer) {
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.99) {
+                return percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
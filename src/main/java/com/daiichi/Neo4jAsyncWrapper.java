@@ -0,0 +1,158 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.AsyncTransactionCallback;
+import org.neo4j.driver.async.AsyncTransactionContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import static com.daiichi.pojo.Constants.*;
+
+/**
+ * Neo4j through the driver's async sessions, each call takes a session whose transaction runs on one pooled
+ * connection without blocking the caller. Queries and mappers are the ones of {@link Neo4jWrapper}.
+ */
+@Slf4j
+@Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.NEO4J)
+@RequiredArgsConstructor
+public class Neo4jAsyncWrapper implements AsyncDBWrapper {
+
+    private final Driver driver;
+    private final Neo4jWrapper neo4jWrapper;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
+
+    /**
+     * The plan is written by one transaction with an UNWIND statement per batchSize nodes, sent one after the
+     * other, followed by the edge statements and the one creating the plan's counters.
+     */
+    @Override
+    public CompletableFuture<Void> createTree(ExecutionPlan plan) {
+        String nodeData = EXECUTION_PLAN_ROOT_NODE.formatted(plan.getId());
+        return read("query", tx -> tx.runAsync(Neo4jWrapper.ROOT_QUERY, Map.of("data", nodeData)).thenCompose(cursor -> cursor.listAsync()))
+            .thenCompose(rootNode -> {
+                if (!rootNode.isEmpty()) {
+                    return write("reset", tx -> tx.runAsync(Neo4jWrapper.RESET_QUERY, Map.of("planId", plan.getId()))
+                            .thenCompose(cursor -> cursor.singleAsync())
+                            .thenCompose(reset -> tx.runAsync(Neo4jWrapper.RESET_PROGRESS_QUERY, Map.of("planId", plan.getId()))
+                                .thenCompose(cursor -> cursor.consumeAsync())
+                                .thenApply(summary -> reset)))
+                        .thenAccept(reset -> log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), reset.get(0).asLong()));
+                }
+                int batchSize = Math.max(1, properties.getNeo4j().getBatchSize());
+                List<Map<String, Object>> nodes = plan.nodes().map(neo4jWrapper::mapToParameters).toList();
+                List<Map<String, String>> edges = plan.nodes()
+                    .flatMap(node -> node.parentIds().map(parentId -> Map.of("from", parentId, "to", node.getId())))
+                    .toList();
+                return write("unwind", tx -> {
+                    CompletionStage<Void> statements = CompletableFuture.completedFuture(null);
+                    statements = unwind(tx, statements, Neo4jWrapper.CREATE_NODES_QUERY, "nodes", nodes, batchSize);
+                    statements = unwind(tx, statements, Neo4jWrapper.CREATE_EDGES_QUERY, "edges", edges, batchSize);
+                    return statements.thenCompose(ignored -> tx.runAsync(Neo4jWrapper.RESET_PROGRESS_QUERY, Map.of("planId", plan.getId())))
+                        .thenCompose(cursor -> cursor.consumeAsync())
+                        .thenApply(summary -> null);
+                }).thenRun(() -> log.info("Stored graph {} in Neo4j, with {} vertices and {} edges", plan.getId(), nodes.size(), edges.size()));
+            })
+            .exceptionally(e -> {
+                log.error("Error storing graph {} in Neo4j", plan.getId(), e);
+                return null;
+            });
+    }
+
+    private static CompletionStage<Void> unwind(AsyncTransactionContext tx, CompletionStage<Void> previous, String query, String parameter,
+                                                List<? extends Map<String, ?>> rows, int batchSize) {
+        CompletionStage<Void> statements = previous;
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<? extends Map<String, ?>> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            statements = statements.thenCompose(ignored -> tx.runAsync(query, Map.of(parameter, new ArrayList<>(batch))))
+                .thenCompose(cursor -> cursor.consumeAsync())
+                .thenApply(summary -> null);
+        }
+        return statements;
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdate(String planId) {
+        Map<String, Object> parameters = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId, "limit", 1);
+        boolean completes = transitions.nextCompletes(planId);
+        return optimisticRetry.runAsync(DBWrapper.DB.NEO4J.name(), () -> read("query", tx -> tx.runAsync(Neo4jWrapper.ELIGIBLE_QUERY, parameters)
+                .thenCompose(cursor -> cursor.listAsync(record -> neo4jWrapper.mapToNode(record.get(0)))))
+            .thenCompose(eligible -> {
+                if (eligible.isEmpty()) {
+                    return CompletableFuture.completedFuture(Optional.<Node>empty());
+                }
+                // Written back only while the stored status is still the one that was read
+                Node node = eligible.get(0);
+                Node.Status expected = node.getStatus();
+                node.progressStatus(completes);
+                Map<String, Object> update = Map.of("id", node.getId(), "expected", expected.toString(), "status", node.getStatus().toString());
+                return write("update", tx -> tx.runAsync(Neo4jWrapper.COMPARE_AND_SET_QUERY, update).thenCompose(cursor -> cursor.singleAsync()))
+                    .thenApply(matched -> {
+                        if (!matched.get(0).asBoolean()) {
+                            throw new UpdateConflictException("Node " + node.getId(), 2);
+                        }
+                        log.info("Updated node {} in Neo4j to status {}", node.getId(), node.getStatus());
+                        return Optional.of(node);
+                    });
+            }))
+            .exceptionally(e -> {
+                log.error("Error during Neo4j fetch and update", e);
+                return Optional.empty();
+            });
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        String runningTo = (transitions.nextCompletes(planId) ? Node.Status.Completed : Node.Status.Error).toString();
+        Map<String, Object> parameters = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId, "runningTo", runningTo);
+        return write("update", tx -> tx.runAsync(Neo4jWrapper.SERVER_UPDATE_QUERY, parameters)
+                .thenCompose(cursor -> cursor.listAsync(record -> neo4jWrapper.mapToNode(record.get(0)))))
+            .thenApply(updated -> updated.stream().findFirst().map(node -> {
+                log.info("Updated node {} in Neo4j to status {}", node.getId(), node.getStatus());
+                return node;
+            }))
+            .exceptionally(e -> {
+                log.error("Error during Neo4j server side fetch and update", e);
+                return Optional.empty();
+            });
+    }
+
+    @Override
+    public int connections() {
+        return properties.getNeo4j().getMaxConnections();
+    }
+
+    private <T> CompletableFuture<T> read(String operation, AsyncTransactionCallback<CompletionStage<T>> work) {
+        return inSession(operation, session -> session.executeReadAsync(work));
+    }
+
+    private <T> CompletableFuture<T> write(String operation, AsyncTransactionCallback<CompletionStage<T>> work) {
+        return inSession(operation, session -> session.executeWriteAsync(work));
+    }
+
+    /**
+     * Times the transaction as one round trip and closes its session once it completes, whatever the outcome.
+     */
+    private <T> CompletableFuture<T> inSession(String operation, Function<AsyncSession, CompletionStage<T>> transaction) {
+        AsyncSession session = driver.session(AsyncSession.class, neo4jWrapper.sessionConfig());
+        return metrics.roundTripAsync(DBWrapper.DB.NEO4J, operation, () -> transaction.apply(session).toCompletableFuture())
+            .whenComplete((result, error) -> session.closeAsync());
+    }
+}
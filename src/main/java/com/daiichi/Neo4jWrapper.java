@@ -0,0 +1,377 @@
+package com.daiichi;
+
+import com.daiichi.pojo.CompactNode;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionContext;
+import org.neo4j.driver.Value;
+import org.neo4j.driver.summary.SummaryCounters;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.daiichi.pojo.Constants.*;
+
+@Slf4j
+@Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.NEO4J)
+@RequiredArgsConstructor
+public class Neo4jWrapper implements DBWrapper {
+
+    // Appended to every statement that writes status, moves each written node from the counter of its status before,
+    // bound as before, to the one of its status now. The SET takes the write lock of the plan's counters until commit.
+    // OPTIONAL MATCH keeps the rows of plans stored before they had counters, for which the SET is a no-op.
+    static final String PROGRESS_UPDATE = """
+        OPTIONAL MATCH (progress:%s {planId: node.planId})
+        SET %s""".formatted(EXECUTION_PLAN_PROGRESS_CLASS, Arrays.stream(Node.Status.values())
+        .map(status -> "progress.%1$s = progress.%1$s + CASE node.status WHEN '%2$s' THEN 1 ELSE 0 END - CASE before WHEN '%2$s' THEN 1 ELSE 0 END"
+            .formatted(PlanProgress.counter(status), status))
+        .collect(Collectors.joining(",\n    ")));
+    static final String ROOT_QUERY = "MATCH (root:%s {data: $data}) RETURN root.id LIMIT 1".formatted(EXECUTION_PLAN_NODE_CLASS);
+    static final String RESET_QUERY = "MATCH (node:%s {planId: $planId}) WHERE node.status <> 'Pending' SET node.status = 'Pending' RETURN count(node)"
+        .formatted(EXECUTION_PLAN_NODE_CLASS);
+    // Run in the transaction that stores or resets the plan, every node is Pending then
+    static final String RESET_PROGRESS_QUERY = """
+        MATCH (node:%1$s {planId: $planId})
+        WITH count(node) AS nodes
+        MERGE (progress:%2$s {planId: $planId})
+        SET progress.pending = nodes, progress.running = 0, progress.completed = 0, progress.error = 0""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_PROGRESS_CLASS);
+    // SET from the map skips null values, so a root gets no parentId property
+    static final String CREATE_NODES_QUERY = "UNWIND $nodes AS row CREATE (node:%s) SET node = row".formatted(EXECUTION_PLAN_NODE_CLASS);
+    // Both ends are looked up through the index backing the uniqueness constraint on id
+    static final String CREATE_EDGES_QUERY = """
+        UNWIND $edges AS row
+        MATCH (parent:%1$s {id: row.from}), (child:%1$s {id: row.to})
+        CREATE (parent)-[:%2$s]->(child)""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS);
+    // Unbounded path from the root so the deep nodes of a CHAIN plan are reached, nodes are picked nearest first as the
+    // bfs traversal of the other backends does, the id keeps the pick stable among nodes at the same depth
+    static final String ELIGIBLE_QUERY = """
+        MATCH path = (root:%1$s {data: $rootData})-[:%2$s*]->(node:%1$s)
+        WHERE node.planId = $planId AND node.status <> 'Completed'
+        WITH node, min(length(path)) AS depth
+        ORDER BY depth, node.id LIMIT $limit
+        RETURN node {.id, .planId, .data, .status, .parentId}""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS);
+    // Setting _lock takes the node's write lock before status is read, otherwise two writers could both see the expected status
+    static final String COMPARE_AND_SET_QUERY = """
+        MATCH (node:%s {id: $id})
+        SET node._lock = true
+        WITH node, node.status AS before, node.status = $expected AS matches
+        SET node.status = CASE WHEN matches THEN $status ELSE node.status END
+        REMOVE node._lock
+        WITH node, before, matches
+        %s
+        RETURN matches""".formatted(EXECUTION_PLAN_NODE_CLASS, PROGRESS_UPDATE);
+    // The traversal and the transition run in one statement, the status is read again once the lock is held
+    static final String SERVER_UPDATE_QUERY = """
+        MATCH path = (root:%1$s {data: $rootData})-[:%2$s*]->(node:%1$s)
+        WHERE node.planId = $planId AND node.status <> 'Completed'
+        WITH node, min(length(path)) AS depth
+        ORDER BY depth, node.id LIMIT 1
+        SET node._lock = true
+        WITH node, node.status AS before
+        SET node.status = CASE before WHEN 'Pending' THEN 'Running' WHEN 'Running' THEN $runningTo ELSE 'Completed' END
+        REMOVE node._lock
+        WITH node, before
+        %3$s
+        RETURN node {.id, .planId, .data, .status, .parentId}""".formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS, PROGRESS_UPDATE);
+    // Ready nodes are found through the (planId, status) index, the lease condition is read again once the lock is held
+    static final String CLAIM_QUERY = """
+        MATCH (node:%1$s)
+        WHERE node.planId IN $planIds AND node.status IN ['Pending', 'Error', 'Running']
+          AND (node.status <> 'Running' OR 0 < node.leaseExpiresAt < $now)
+          AND NOT EXISTS { (parent:%1$s)-[:%2$s]->(node) WHERE parent.status <> 'Completed' }
+        WITH node LIMIT $limit
+        SET node._lock = true
+        WITH node, node.status AS before, node.status IN ['Pending', 'Error'] OR (node.status = 'Running' AND 0 < node.leaseExpiresAt < $now) AS ready
+        SET node.status = CASE WHEN ready THEN 'Running' ELSE node.status END,
+            node.leaseOwner = CASE WHEN ready THEN $owner ELSE node.leaseOwner END,
+            node.leaseExpiresAt = CASE WHEN ready THEN $expiresAt ELSE node.leaseExpiresAt END
+        REMOVE node._lock
+        WITH node, before, ready WHERE ready
+        %3$s
+        RETURN node {.id, .planId, .data, .status, .parentId, .leaseOwner, .leaseExpiresAt}""".formatted(EXECUTION_PLAN_NODE_CLASS,
+        EXECUTION_PLAN_DEPENDS_CLASS, PROGRESS_UPDATE);
+    // Setting a property to null removes it, so a released node has no lease left
+    static final String REPORT_QUERY = """
+        UNWIND $nodes AS row
+        MATCH (node:%s {id: row.id})
+        SET node._lock = true
+        WITH node, row, node.status AS before, node.status = 'Running' AND node.leaseOwner = $owner AS owned
+        SET node.status = CASE WHEN owned THEN row.status ELSE node.status END,
+            node.leaseOwner = CASE WHEN owned THEN null ELSE node.leaseOwner END,
+            node.leaseExpiresAt = CASE WHEN owned THEN null ELSE node.leaseExpiresAt END
+        REMOVE node._lock
+        WITH node, before, owned
+        %s
+        RETURN count(CASE WHEN owned THEN 1 END)""".formatted(EXECUTION_PLAN_NODE_CLASS, PROGRESS_UPDATE);
+    static final String UPDATE_STATUS_QUERY = """
+        MATCH (node:%s {id: $id})
+        SET node._lock = true
+        WITH node, node.status AS before
+        SET node.status = $status
+        REMOVE node._lock
+        WITH node, before
+        %s""".formatted(EXECUTION_PLAN_NODE_CLASS, PROGRESS_UPDATE);
+    static final String PROGRESS_QUERY = """
+        MATCH (progress:%s) WHERE progress.planId IN $planIds
+        RETURN progress {.planId, .pending, .running, .completed, .error}""".formatted(EXECUTION_PLAN_PROGRESS_CLASS);
+    // Served by the (planId, status) index when indexes are enabled
+    static final String AGGREGATE_QUERY = """
+        MATCH (node:%s) WHERE node.planId IN $planIds
+        RETURN node.planId AS planId, node.status AS status, count(*) AS nodes""".formatted(EXECUTION_PLAN_NODE_CLASS);
+
+    private final Driver driver;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
+
+    @Override
+    public void createTree(ExecutionPlan plan) {
+        try (Session session = driver.session(sessionConfig())) {
+            String nodeData = EXECUTION_PLAN_ROOT_NODE.formatted(plan.getId());
+            boolean exists = metrics.roundTrip(DB.NEO4J, "query",
+                () -> session.executeRead(tx -> tx.run(ROOT_QUERY, Map.of("data", nodeData)).hasNext()));
+            if (exists) {
+                long reset = metrics.roundTrip(DB.NEO4J, "reset", () -> session.executeWrite(tx -> {
+                    long nodes = tx.run(RESET_QUERY, Map.of("planId", plan.getId())).single().get(0).asLong();
+                    tx.run(RESET_PROGRESS_QUERY, Map.of("planId", plan.getId())).consume();
+                    return nodes;
+                }));
+                log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), reset);
+                return;
+            }
+            Written written = session.executeWrite(tx -> insert(tx, plan));
+            log.info("Stored graph {} in Neo4j, with {} vertices and {} edges", plan.getId(), written.vertices(), written.edges());
+        }
+    }
+
+    /**
+     * Streams the plan into UNWIND statements of batchSize rows within one transaction. Nodes come parents first,
+     * so the pending nodes are written before each batch of edges and every MATCH finds both ends. The plan's
+     * counters are created last, in the same transaction.
+     */
+    private Written insert(TransactionContext tx, ExecutionPlan plan) {
+        int batchSize = Math.max(1, properties.getNeo4j().getBatchSize());
+        List<Map<String, Object>> nodes = new ArrayList<>(batchSize);
+        List<Map<String, Object>> edges = new ArrayList<>(batchSize);
+        Written written = new Written(0, 0);
+        for (Iterator<Node> iterator = plan.nodes().iterator(); iterator.hasNext(); ) {
+            Node node = iterator.next();
+            nodes.add(mapToParameters(node));
+            node.parentIds().forEach(parentId -> edges.add(Map.of("from", parentId, "to", node.getId())));
+            if (nodes.size() >= batchSize) {
+                written = written.add(unwind(tx, CREATE_NODES_QUERY, "nodes", nodes));
+            }
+            if (edges.size() >= batchSize) {
+                written = written.add(unwind(tx, CREATE_NODES_QUERY, "nodes", nodes)).add(unwind(tx, CREATE_EDGES_QUERY, "edges", edges));
+            }
+        }
+        written = written.add(unwind(tx, CREATE_NODES_QUERY, "nodes", nodes)).add(unwind(tx, CREATE_EDGES_QUERY, "edges", edges));
+        metrics.roundTrip(DB.NEO4J, "progress", () -> tx.run(RESET_PROGRESS_QUERY, Map.of("planId", plan.getId())).consume());
+        return written;
+    }
+
+    private Written unwind(TransactionContext tx, String query, String parameter, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return new Written(0, 0);
+        }
+        SummaryCounters counters = metrics.roundTrip(DB.NEO4J, "unwind", () -> tx.run(query, Map.of(parameter, rows)).consume().counters());
+        rows.clear();
+        return new Written(counters.nodesCreated(), counters.relationshipsCreated());
+    }
+
+    private record Written(long vertices, long edges) {
+        Written add(Written other) {
+            return new Written(vertices + other.vertices, edges + other.edges);
+        }
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdate(String planId) {
+        boolean completes = transitions.nextCompletes(planId);
+        try (Session session = driver.session(sessionConfig())) {
+            return optimisticRetry.run(DB.NEO4J.name(), () -> {
+                List<Node> eligible = queryEligible(session, planId, 1, this::mapToNode);
+                if (eligible.isEmpty()) {
+                    return Optional.empty();
+                }
+                // Update node status in Java and write it back, only if the stored status is still the one that was read
+                Node node = eligible.get(0);
+                Node.Status expected = node.getStatus();
+                node.progressStatus(completes);
+                Map<String, Object> parameters = Map.of("id", node.getId(), "expected", expected.toString(), "status", node.getStatus().toString());
+                boolean updated = metrics.roundTrip(DB.NEO4J, "update",
+                    () -> session.executeWrite(tx -> tx.run(COMPARE_AND_SET_QUERY, parameters).single().get(0).asBoolean()));
+                if (!updated) {
+                    throw new UpdateConflictException("Node " + node.getId(), 2);
+                }
+                log.info("Updated node {} in Neo4j to status {}", node.getId(), node.getStatus());
+                return Optional.of(node);
+            });
+        } catch (Exception e) {
+            log.error("Error during Neo4j fetch and update", e);
+            metrics.markFailed();
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        String runningTo = (transitions.nextCompletes(planId) ? Node.Status.Completed : Node.Status.Error).toString();
+        Map<String, Object> parameters = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId, "runningTo", runningTo);
+        try (Session session = driver.session(sessionConfig())) {
+            Optional<Node> updated = metrics.roundTrip(DB.NEO4J, "update", () -> session.executeWrite(tx ->
+                tx.run(SERVER_UPDATE_QUERY, parameters).stream().findFirst().map(record -> mapToNode(record.get(0)))));
+            updated.ifPresent(node -> log.info("Updated node {} in Neo4j to status {}", node.getId(), node.getStatus()));
+            return updated;
+        } catch (Exception e) {
+            log.error("Error during Neo4j server side fetch and update", e);
+            metrics.markFailed();
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        try (Session session = driver.session(sessionConfig())) {
+            return queryEligible(session, planId, limit, this::mapToNode);
+        }
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        try (Session session = driver.session(sessionConfig())) {
+            return queryEligible(session, planId, limit, this::mapToCompactNode);
+        }
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        try (Session session = driver.session(sessionConfig())) {
+            Map<String, Object> parameters = Map.of("id", node.getId(), "status", node.getStatus().toString());
+            metrics.roundTrip(DB.NEO4J, "update", () -> session.executeWrite(tx -> tx.run(UPDATE_STATUS_QUERY, parameters).consume()));
+            return true;
+        } catch (Exception e) {
+            log.error("Error updating status of node {} in Neo4j", node.getId(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        long now = System.currentTimeMillis();
+        Map<String, Object> parameters = Map.of("planIds", planIds, "limit", limit, "owner", owner, "now", now,
+            "expiresAt", now + lease.toMillis());
+        try (Session session = driver.session(sessionConfig())) {
+            return metrics.roundTrip(DB.NEO4J, "claim",
+                () -> session.executeWrite(tx -> tx.run(CLAIM_QUERY, parameters).list(record -> mapToNode(record.get(0)))));
+        } catch (Exception e) {
+            log.error("Error claiming ready nodes in Neo4j", e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        List<Map<String, Object>> rows = nodes.stream()
+            .<Map<String, Object>>map(node -> Map.of("id", node.getId(), "status", node.getStatus().toString()))
+            .toList();
+        try (Session session = driver.session(sessionConfig())) {
+            return metrics.roundTrip(DB.NEO4J, "report", () -> session.executeWrite(tx ->
+                tx.run(REPORT_QUERY, Map.of("nodes", rows, "owner", owner)).single().get(0).asInt()));
+        } catch (Exception e) {
+            log.error("Error reporting status of {} nodes in Neo4j", nodes.size(), e);
+            return 0;
+        }
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        try (Session session = driver.session(sessionConfig())) {
+            List<PlanProgress> progress = metrics.roundTrip(DB.NEO4J, "query", () -> session.executeRead(tx ->
+                tx.run(PROGRESS_QUERY, Map.of("planIds", planIds)).list(record -> mapToPlanProgress(record.get(0)))));
+            return progress.stream().collect(Collectors.toMap(PlanProgress::getPlanId, Function.identity()));
+        }
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        Map<String, long[]> counts = new HashMap<>();
+        try (Session session = driver.session(sessionConfig())) {
+            metrics.roundTrip(DB.NEO4J, "query", () -> session.executeRead(tx -> tx.run(AGGREGATE_QUERY, Map.of("planIds", planIds)).list()))
+                .forEach(record -> counts.computeIfAbsent(record.get("planId").asString(), planId -> new long[Node.Status.values().length])
+                    [Node.Status.valueOf(record.get("status").asString()).ordinal()] = record.get("nodes").asLong());
+        }
+        return counts.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> PlanProgress.of(entry.getKey(), entry.getValue())));
+    }
+
+    private <T> List<T> queryEligible(Session session, String planId, int limit, Function<Value, T> mapper) {
+        Map<String, Object> parameters = Map.of("rootData", EXECUTION_PLAN_ROOT_NODE.formatted(planId), "planId", planId, "limit", limit);
+        return metrics.roundTrip(DB.NEO4J, "query",
+            () -> session.executeRead(tx -> tx.run(ELIGIBLE_QUERY, parameters).list(record -> mapper.apply(record.get(0)))));
+    }
+
+    SessionConfig sessionConfig() {
+        return SessionConfig.forDatabase(properties.getNeo4j().getDatabase());
+    }
+
+    @PreDestroy
+    public void closeDriver() {
+        driver.close();
+        System.out.println("Neo4j driver closed successfully.");
+    }
+
+    Map<String, Object> mapToParameters(Node node) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("id", node.getId());
+        parameters.put("planId", node.getPlanId());
+        parameters.put("data", node.getData());
+        parameters.put("status", node.getStatus().toString());
+        if (node.getParentId() != null) {
+            parameters.put("parentId", node.getParentId());
+        }
+        return parameters;
+    }
+
+    Node mapToNode(Value node) {
+        return Node.builder()
+            .id(node.get("id").asString())
+            .planId(node.get("planId").asString())
+            .data(node.get("data").asString())
+            .status(Node.Status.valueOf(node.get("status").asString()))
+            .parentId(node.get("parentId").asString(null))
+            .leaseOwner(node.get("leaseOwner").asString(null))
+            .leaseExpiresAt(node.get("leaseExpiresAt").asLong(0))
+            .build();
+    }
+
+    PlanProgress mapToPlanProgress(Value progress) {
+        return new PlanProgress(progress.get("planId").asString(), progress.get("pending").asLong(), progress.get("running").asLong(),
+            progress.get("completed").asLong(), progress.get("error").asLong());
+    }
+
+    CompactNode mapToCompactNode(Value node) {
+        return new CompactNode(node.get("id").asString(), node.get("planId").asString(), node.get("data").asString(),
+            Node.Status.valueOf(node.get("status").asString()), node.get("parentId").asString(null),
+            node.get("leaseOwner").asString(null), node.get("leaseExpiresAt").asLong(0));
+    }
+}
@@ -0,0 +1,44 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import lombok.RequiredArgsConstructor;
+import org.apache.tinkerpop.gremlin.driver.Client;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gremlin through {@code Traversal.promise}, the blocking {@link NeptuneBWrapper} awaits the same futures.
+ */
+@Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.NEPTUNE)
+@RequiredArgsConstructor
+public class NeptuneBAsyncWrapper implements AsyncDBWrapper {
+
+    private final Client client;
+    private final NeptuneBWrapper neptuneBWrapper;
+
+    @Override
+    public CompletableFuture<Void> createTree(ExecutionPlan plan) {
+        return neptuneBWrapper.createTreeAsync(plan);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdate(String planId) {
+        return neptuneBWrapper.fetchAndUpdateAsync(planId);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        return neptuneBWrapper.fetchAndUpdateOnServerAsync(planId);
+    }
+
+    @Override
+    public int connections() {
+        return client.getCluster().maxConnectionPoolSize() * Math.max(1, client.getCluster().availableHosts().size());
+    }
+}
@@ -1,87 +1,520 @@
 package com.daiichi;
 
+import com.daiichi.pojo.CompactNode;
 import com.daiichi.pojo.ExecutionPlan;
 import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.tinkerpop.gremlin.driver.Client;
-import org.apache.tinkerpop.gremlin.driver.Result;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.Pick;
+import org.apache.tinkerpop.gremlin.process.traversal.Traversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
+import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.structure.VertexProperty;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.daiichi.pojo.Constants.*;
 
+/**
+ * Gremlin through bytecode traversals, which the driver sends as GraphBinary over the pooled connections of the
+ * client. Values travel as typed GraphBinary values instead of being formatted into script text, and nodes are read
+ * back as an {@code elementMap} of single values rather than a {@code valueMap(true)} of lists.
+ */
 @Slf4j
 @Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.NEPTUNE)
 @RequiredArgsConstructor
 public class NeptuneBWrapper implements DBWrapper {
+    // Properties of a node vertex, elementMap leaves out the ones a vertex doesn't have, such as a root's parentId
+    private static final String[] NODE_KEYS = {"id", "planId", "data", "status", "parentId"};
+    private static final String[] LEASED_NODE_KEYS = {"id", "planId", "data", "status", "parentId", "leaseOwner", "leaseExpiresAt"};
+
     private final Client client;
+    private final GraphTraversalSource g;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
 
     @Override
     public void createTree(ExecutionPlan plan) {
-        String nodeData = plan.getGraph().stream()
-            .filter(node -> node.getParentId() == null)
-            .findFirst()
-            .map(Node::getData)
-            .orElse(null);
-
-        String query = "g.V().hasLabel('%s').has('data', '%s')".formatted(EXECUTION_PLAN_NODE_CLASS, nodeData);
-        Iterator<?> resultSet = client.submit(query).stream().iterator();
-        if (resultSet.hasNext()) {
-            String resetQuery = "g.V().hasLabel('%s').has('planId', '%s').has('status', neq('Pending')).property('status', 'Pending')".formatted(EXECUTION_PLAN_NODE_CLASS, plan.getId());
-            long count = client.submit(resetQuery).stream().count();
-            log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), count);
+        if (properties.getGremlin().getIngestMode() == BenchmarkProperties.GremlinIngestMode.TRAVERSAL) {
+            createTrees(List.of(plan));
+            return;
+        }
+        await(createTreeAsync(plan));
+    }
+
+    /**
+     * Stores one plan without blocking. In TRAVERSAL mode the nodes go in chunks of at most maxNodesPerTraversal, one
+     * after the other since a chunk looks up the parents written by earlier ones. Otherwise every element is a
+     * traversal of its own, with at most the driver's in process requests in flight, and all vertices complete
+     * before the edges that look them up are sent.
+     */
+    CompletableFuture<Void> createTreeAsync(ExecutionPlan plan) {
+        return resetIfExistsAsync(plan).thenCompose(exists -> {
+            if (exists) {
+                return CompletableFuture.completedFuture(null);
+            }
+            BenchmarkProperties.Gremlin gremlin = properties.getGremlin();
+            LongAdder vertices = new LongAdder();
+            LongAdder edges = new LongAdder();
+            CompletableFuture<Void> written;
+            if (gremlin.getIngestMode() == BenchmarkProperties.GremlinIngestMode.TRAVERSAL) {
+                written = WindowedWrites.send(WindowedWrites.chunks(plan.nodes().iterator(), gremlin.getMaxNodesPerTraversal()), 1, nodes -> {
+                    TraversalChunk chunk = new TraversalChunk();
+                    nodes.forEach(chunk::add);
+                    vertices.add(nodes.size());
+                    return chunk.submitAsync().thenAccept(edges::add);
+                });
+            } else {
+                int window = gremlin.getMaxConnectionPoolSize() * gremlin.getMaxInProcessPerConnection();
+                written = WindowedWrites.send(plan.nodes().iterator(), window, node -> {
+                    vertices.increment();
+                    return submitTraversal("addV", mapToVertex(node));
+                }).thenCompose(ignored -> WindowedWrites.send(
+                    plan.nodes().flatMap(node -> node.parentIds().map(parentId -> mapToEdge(parentId, node.getId()))).iterator(), window, edge -> {
+                        edges.increment();
+                        return submitTraversal("addE", edge);
+                    }));
+            }
+            return written.thenCompose(ignored -> createProgress(List.of(plan))).thenRun(() ->
+                log.info("Stored graph {} in Neptune, with {} vertices and {} edges", plan.getId(), vertices.sum(), edges.sum()));
+        });
+    }
+
+    /**
+     * In TRAVERSAL mode the nodes of all new plans are streamed into chunks of at most maxNodesPerTraversal,
+     * each written by one awaited submission of {@link TraversalChunk#traversal()}.
+     */
+    @Override
+    public void createTrees(List<ExecutionPlan> plans) {
+        if (properties.getGremlin().getIngestMode() != BenchmarkProperties.GremlinIngestMode.TRAVERSAL) {
+            plans.forEach(this::createTree);
             return;
         }
+        TraversalChunk chunk = new TraversalChunk();
+        List<ExecutionPlan> newPlans = new ArrayList<>();
+        for (ExecutionPlan plan : plans) {
+            if (resetIfExists(plan)) {
+                continue;
+            }
+            newPlans.add(plan);
+            for (Iterator<Node> nodes = plan.nodes().iterator(); nodes.hasNext(); ) {
+                chunk.add(nodes.next());
+                if (chunk.nodes.size() >= properties.getGremlin().getMaxNodesPerTraversal()) {
+                    chunk.submit();
+                    chunk = new TraversalChunk();
+                }
+            }
+        }
+        if (!chunk.nodes.isEmpty()) {
+            chunk.submit();
+        }
+        if (!newPlans.isEmpty()) {
+            await(createProgress(newPlans));
+        }
+        log.info("Stored {} graphs in Neptune using chunked traversals", newPlans.size());
+    }
+
+    private boolean resetIfExists(ExecutionPlan plan) {
+        return await(resetIfExistsAsync(plan));
+    }
+
+    private CompletableFuture<Boolean> resetIfExistsAsync(ExecutionPlan plan) {
+        String nodeData = EXECUTION_PLAN_ROOT_NODE.formatted(plan.getId());
+
+        // has(label, key, value) as the first step lets an indexed graph answer from its key index
+        return submitTraversal("query", g.V().has(EXECUTION_PLAN_NODE_CLASS, "data", nodeData).limit(1).id()).thenCompose(rootNode -> {
+            if (rootNode.isEmpty()) {
+                return CompletableFuture.completedFuture(false);
+            }
+            GraphTraversal<Vertex, Long> reset = g.V().has(EXECUTION_PLAN_NODE_CLASS, "planId", plan.getId())
+                .has("status", P.neq(Node.Status.Pending.toString()))
+                .property(VertexProperty.Cardinality.single, "status", Node.Status.Pending.toString())
+                .count()
+                .sideEffect(resetProgress(plan));
+            return submitTraversal("reset", reset).thenApply(count -> {
+                log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), count.get(0));
+                return true;
+            });
+        });
+    }
+
+    /**
+     * Writes the counters of plans whose nodes were all just written as Pending, in one traversal.
+     */
+    private CompletableFuture<List<Integer>> createProgress(List<ExecutionPlan> plans) {
+        GraphTraversal<Integer, Integer> create = g.inject(plans.size());
+        plans.forEach(plan -> create.sideEffect(resetProgress(plan)));
+        return submitTraversal("createProgress", create);
+    }
+
+    /**
+     * Creates the counter vertex of a plan when it has none and sets every node as Pending.
+     */
+    @SuppressWarnings("unchecked")
+    private static Traversal<?, ?> resetProgress(ExecutionPlan plan) {
+        return __.V().has(EXECUTION_PLAN_PROGRESS_CLASS, "planId", plan.getId()).fold()
+            .coalesce(__.unfold(), __.addV(EXECUTION_PLAN_PROGRESS_CLASS).property("planId", plan.getId()))
+            .property(VertexProperty.Cardinality.single, PlanProgress.counter(Node.Status.Pending), (long) plan.nodeCount())
+            .property(VertexProperty.Cardinality.single, PlanProgress.counter(Node.Status.Running), 0L)
+            .property(VertexProperty.Cardinality.single, PlanProgress.counter(Node.Status.Completed), 0L)
+            .property(VertexProperty.Cardinality.single, PlanProgress.counter(Node.Status.Error), 0L);
+    }
+
+    /**
+     * Moves the node vertex labelled "node" from the status labelled "before" to the status it has now in the
+     * counters of its plan, within the traversal that wrote it and so in its transaction. Counter vertices are
+     * looked up by constant planId so an indexed graph finds them by key, which is why the plans the traversal
+     * can write must be known up front.
+     */
+    private static Traversal<?, ?> moveProgress(Collection<String> planIds) {
+        GraphTraversal<Vertex, Object> byPlan = __.choose(__.values("planId"));
+        new HashSet<>(planIds).forEach(planId -> byPlan.option(planId, __.V().has(EXECUTION_PLAN_PROGRESS_CLASS, "planId", planId)
+            .sideEffect(addToCounter(__.select("before"), -1))
+            .sideEffect(addToCounter(__.select("node").values("status"), 1))));
+        return byPlan;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Traversal<?, ?> addToCounter(Traversal<?, ?> status, long delta) {
+        GraphTraversal<Vertex, Object> byStatus = __.choose(status);
+        for (Node.Status counted : Node.Status.values()) {
+            String counter = PlanProgress.counter(counted);
+            byStatus.option(counted.toString(), __.property(VertexProperty.Cardinality.single, counter,
+                __.union(__.values(counter), __.constant(delta)).sum()));
+        }
+        return byStatus;
+    }
+
+    /**
+     * Labels the vertex "node" and its status before the write "before", for {@link #moveProgress}. Status is always
+     * written with single cardinality, under Neptune's default set cardinality a vertex would collect every status it
+     * had and send one traverser per value through here.
+     */
+    private static GraphTraversal<Vertex, Vertex> beforeWrite(GraphTraversal<Vertex, Vertex> nodes) {
+        return nodes.as("node").values("status").as("before").select("node");
+    }
+
+    private class TraversalChunk {
+        private final List<Map<String, Object>> nodes = new ArrayList<>();
+        private final List<Map<String, String>> edges = new ArrayList<>();
+        private final Set<String> nodeIds = new HashSet<>();
+        private final Set<String> external = new HashSet<>();
+
+        void add(Node node) {
+            nodes.add(mapToBinding(node));
+            nodeIds.add(node.getId());
+            node.parentIds().forEach(parentId -> {
+                edges.add(Map.of("from", parentId, "to", node.getId()));
+                if (!nodeIds.contains(parentId)) {
+                    external.add(parentId);
+                }
+            });
+        }
 
-        Map<String, Node> vertexMap = plan.getGraph().stream()
-            .peek(node -> client.submit(mapToVertex(node)))
-            .collect(Collectors.toMap(Node::getId, Function.identity()));
-        //noinspection MappingBeforeCount
-        long edgeCount = plan.getGraph().stream()
-            .filter(node -> node.getParentId() != null)
-            .map(node -> client.submit("""
-                g.V().hasLabel('%s').has('id', '%s').as('source')
-                 .V().hasLabel('%s').has('id', '%s').as('target')
-                 .addE('%s').from('source').to('target')
-                """
-                .formatted(EXECUTION_PLAN_NODE_CLASS, node.getParentId(), EXECUTION_PLAN_NODE_CLASS, node.getId(), EXECUTION_PLAN_DEPENDS_CLASS)))
-            .count();
+        void submit() {
+            long edgeCount = await(submitAsync());
+            log.debug("Stored {} vertices and {} edges in one traversal, {} parents from earlier chunks", nodes.size(), edgeCount, external.size());
+        }
 
-        log.info("Stored graph {} in Neptune, with {} vertices and {} edges", plan.getId(), vertexMap.size(), edgeCount);
+        /**
+         * @return number of edges written
+         */
+        CompletableFuture<Long> submitAsync() {
+            return submitTraversal("createTrees", traversal()).thenApply(result -> result.isEmpty() ? 0 : result.get(0));
+        }
+
+        /**
+         * Parents written by an earlier chunk are looked up once by id, every other edge endpoint comes from addV.
+         * Roots have no parentId in their binding, so the property is only added when the binding has one.
+         */
+        GraphTraversal<Vertex, Long> traversal() {
+            return g.V().has(EXECUTION_PLAN_NODE_CLASS, "id", P.within(external)).group("created").by("id")
+                .fold()
+                .constant(nodes).unfold().as("n")
+                .addV(EXECUTION_PLAN_NODE_CLASS)
+                  .property("id", __.select("n").select("id"))
+                  .property("planId", __.select("n").select("planId"))
+                  .property("data", __.select("n").select("data"))
+                  .property("status", __.select("n").select("status"))
+                  .choose(__.select("n").select("parentId"), __.property("parentId", __.select("n").select("parentId")))
+                .group("created").by(__.select("n").select("id"))
+                .fold()
+                .constant(edges).unfold().as("e")
+                .addE(EXECUTION_PLAN_DEPENDS_CLASS)
+                  .from(__.select("created").select(__.select("e").select("from")).<Vertex>unfold())
+                  .to(__.select("created").select(__.select("e").select("to")).<Vertex>unfold())
+                .count();
+        }
     }
 
     @Override
-    public void fetchAndUpdate(String planId) {
+    public Optional<Node> fetchAndUpdate(String planId) {
         try {
-            String query = """
-                g.V().hasLabel('%s').has('data', '%s')
-                .repeat(outE().inV())
-                .until(has('status', neq('Completed')))
-                .limit(1)
-                .valueMap(true)
-                """.formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_ROOT_NODE.formatted(planId));
-
-            Iterator<Result> resultSet = client.submit(query).stream().iterator();
-            if (resultSet.hasNext()) {
-                Result nodeToUpdate = resultSet.next();
-                Node node = mapToNode(nodeToUpdate);
-                node.progressStatus();
-                String updateQuery = "g.V().hasLabel('%s').has('id', '%s').property('status', '%s')".formatted(EXECUTION_PLAN_NODE_CLASS, node.getId(), node.getStatus());
-                client.submit(updateQuery);
-                log.info("Updated node {} in OrientDB to status {}", node.getData(), node.getStatus());
+            boolean completes = transitions.nextCompletes(planId);
+            return optimisticRetry.run(DB.NEPTUNE.name(), () -> await(attemptUpdate(planId, completes)));
+        } catch (Exception e) {
+            log.error("Error during Gremlin fetch and update", e);
+            metrics.markFailed();
+        }
+        return Optional.empty();
+    }
+
+    CompletableFuture<Optional<Node>> fetchAndUpdateAsync(String planId) {
+        boolean completes = transitions.nextCompletes(planId);
+        return optimisticRetry.runAsync(DB.NEPTUNE.name(), () -> attemptUpdate(planId, completes))
+            .exceptionally(e -> {
+                log.error("Error during Gremlin fetch and update", e);
+                return Optional.empty();
+            });
+    }
+
+    /**
+     * One compare-and-set attempt, completes with an {@link UpdateConflictException} when the node was written
+     * between the query and the update. {@code completes} is drawn once by the caller, not per attempt.
+     */
+    private CompletableFuture<Optional<Node>> attemptUpdate(String planId, boolean completes) {
+        return queryEligible(planId, 1).thenCompose(eligible -> {
+            if (eligible.isEmpty()) {
+                return CompletableFuture.completedFuture(Optional.<Node>empty());
             }
+            Node node = mapToNode(eligible.get(0));
+            Node.Status expected = node.getStatus();
+            node.progressStatus(completes);
+            // The write only matches while the vertex still has the status that was read
+            GraphTraversal<Vertex, Long> update = beforeWrite(g.V().has(EXECUTION_PLAN_NODE_CLASS, "id", node.getId())
+                .has("status", expected.toString()))
+                .property(VertexProperty.Cardinality.single, "status", node.getStatus().toString())
+                .sideEffect(moveProgress(List.of(planId)))
+                .count();
+            return submitTraversal("update", update).thenApply(updated -> {
+                if (updated.get(0) == 0) {
+                    throw new UpdateConflictException("Node " + node.getId(), 2);
+                }
+                log.info("Updated node {} in Gremlin to status {}", node.getData(), node.getStatus());
+                return Optional.of(node);
+            });
+        });
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        try {
+            return await(updateOnServer(planId));
+        } catch (Exception e) {
+            log.error("Error during Gremlin server side fetch and update", e);
+            metrics.markFailed();
+        }
+        return Optional.empty();
+    }
+
+    CompletableFuture<Optional<Node>> fetchAndUpdateOnServerAsync(String planId) {
+        return updateOnServer(planId)
+            .exceptionally(e -> {
+                log.error("Error during Gremlin server side fetch and update", e);
+                return Optional.empty();
+            });
+    }
+
+    private CompletableFuture<Optional<Node>> updateOnServer(String planId) {
+        String runningTo = (transitions.nextCompletes(planId) ? Node.Status.Completed : Node.Status.Error).toString();
+        GraphTraversal<Vertex, Map<Object, Object>> update = beforeWrite(g.V().has(EXECUTION_PLAN_NODE_CLASS, "data", EXECUTION_PLAN_ROOT_NODE.formatted(planId))
+            .repeat(__.outE().inV())
+            .until(__.has("status", P.neq(Node.Status.Completed.toString())))
+            .limit(1))
+            .property(VertexProperty.Cardinality.single, "status", __.choose(__.values("status"))
+                .option(Node.Status.Pending.toString(), __.constant(Node.Status.Running.toString()))
+                .option(Node.Status.Running.toString(), __.constant(runningTo))
+                .option(Pick.none, __.constant(Node.Status.Completed.toString())))
+            .sideEffect(moveProgress(List.of(planId)))
+            .elementMap(NODE_KEYS);
+        return submitTraversal("update", update)
+            .thenApply(updated -> updated.stream().findFirst().map(result -> {
+                Node node = mapToNode(result);
+                log.info("Updated node {} in Gremlin to status {}", node.getData(), node.getStatus());
+                return node;
+            }));
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        return await(queryEligible(planId, limit)).stream().map(this::mapToNode).toList();
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return await(queryEligible(planId, limit)).stream().map(this::mapToCompactNode).toList();
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        try {
+            await(submitStatus(node));
+            return true;
+        } catch (IllegalStateException e) {
+            log.error("Error updating status of node {} in Gremlin", node.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Edges point from a parent to its children, so a node is ready once no incoming edge comes from an unfinished
+     * parent. Neptune runs the traversal as one transaction and fails it when a concurrent claim wrote the same
+     * vertex, which is retried; TinkerGraph doesn't isolate traversals, there two claims of the same node can
+     * overlap and only the later owner can report it. Lease writes use single cardinality, Neptune would otherwise
+     * keep every owner a node ever had.
+     */
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        long now = System.currentTimeMillis();
+        try {
+            // A traversal can only be submitted once, every attempt builds its own
+            return optimisticRetry.run(DB.NEPTUNE.name(), () -> {
+                GraphTraversal<Vertex, Map<Object, Object>> claim = beforeWrite(g.V().has(EXECUTION_PLAN_NODE_CLASS, "planId", P.within(planIds))
+                    .or(__.has("status", P.within(Node.Status.Pending.toString(), Node.Status.Error.toString())),
+                        __.has("status", Node.Status.Running.toString()).has("leaseExpiresAt", P.between(1L, now)))
+                    .not(__.in(EXECUTION_PLAN_DEPENDS_CLASS).has("status", P.neq(Node.Status.Completed.toString())))
+                    .limit(limit))
+                    .property(VertexProperty.Cardinality.single, "status", Node.Status.Running.toString())
+                    .property(VertexProperty.Cardinality.single, "leaseOwner", owner)
+                    .property(VertexProperty.Cardinality.single, "leaseExpiresAt", now + lease.toMillis())
+                    .sideEffect(moveProgress(planIds))
+                    .elementMap(LEASED_NODE_KEYS);
+                return Optional.of(awaitWrite(submitTraversal("claim", claim), "Claim over " + planIds.size() + " plans").stream()
+                    .map(this::mapToNode)
+                    .toList());
+            }).orElse(List.of());
         } catch (Exception e) {
-            log.error("Error during OrientDB fetch and update", e);
+            log.error("Error claiming ready nodes in Gremlin", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * One traversal per reported status rather than per node, submitted together. The counters of every plan a
+     * traversal reports nodes of are updated by it.
+     */
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        Map<Node.Status, List<Node>> nodesByStatus = nodes.stream().collect(Collectors.groupingBy(Node::getStatus));
+        try {
+            return optimisticRetry.run(DB.NEPTUNE.name(), () -> {
+                List<CompletableFuture<List<Long>>> reports = nodesByStatus.entrySet().stream()
+                    .map(reported -> submitTraversal("report", beforeWrite(g.V().has(EXECUTION_PLAN_NODE_CLASS, "id", P.within(reported.getValue().stream().map(Node::getId).toList()))
+                        .has("status", Node.Status.Running.toString())
+                        .has("leaseOwner", owner))
+                        .property(VertexProperty.Cardinality.single, "status", reported.getKey().toString())
+                        .sideEffect(__.properties("leaseOwner", "leaseExpiresAt").drop())
+                        .sideEffect(moveProgress(reported.getValue().stream().map(Node::getPlanId).toList()))
+                        .count()))
+                    .toList();
+                int reported = 0;
+                for (CompletableFuture<List<Long>> report : reports) {
+                    reported += awaitWrite(report, "Report of " + nodes.size() + " nodes").get(0).intValue();
+                }
+                return Optional.of(reported);
+            }).orElse(0);
+        } catch (Exception e) {
+            log.error("Error reporting status of {} nodes in Gremlin", nodes.size(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * Awaits a write, turning Neptune's rejection of a transaction that lost against a concurrent writer into an
+     * {@link UpdateConflictException}.
+     */
+    private static <T> T awaitWrite(CompletableFuture<T> write, String target) {
+        try {
+            return await(write);
+        } catch (IllegalStateException e) {
+            if (e.getCause() != null && String.valueOf(e.getCause().getMessage()).contains("ConcurrentModificationException")) {
+                throw new UpdateConflictException(target, 1);
+            }
+            throw e;
         }
+    }
+
+    /**
+     * Emits every node below the root that isn't Completed, level by level, rather than stopping each path at its
+     * first one, so up to limit nodes come back in BFS order as {@link DBWrapper#fetchEligible} promises.
+     */
+    private CompletableFuture<List<Map<Object, Object>>> queryEligible(String planId, int limit) {
+        GraphTraversal<Vertex, Map<Object, Object>> query = g.V().has(EXECUTION_PLAN_NODE_CLASS, "data", EXECUTION_PLAN_ROOT_NODE.formatted(planId))
+            .repeat(__.out(EXECUTION_PLAN_DEPENDS_CLASS).dedup())
+            .emit(__.has("status", P.neq(Node.Status.Completed.toString())))
+            .dedup()
+            .limit(limit)
+            .elementMap(NODE_KEYS);
+        return submitTraversal("query", query);
+    }
+
+    private CompletableFuture<List<Object>> submitStatus(Node node) {
+        return submitTraversal("update", beforeWrite(g.V().has(EXECUTION_PLAN_NODE_CLASS, "id", node.getId()))
+            .property(VertexProperty.Cardinality.single, "status", node.getStatus().toString())
+            .sideEffect(moveProgress(List.of(node.getPlanId())))
+            .id());
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        GraphTraversal<Vertex, Map<Object, Object>> progress = g.V().has(EXECUTION_PLAN_PROGRESS_CLASS, "planId", P.within(planIds))
+            .elementMap("planId", "pending", "running", "completed", "error");
+        return await(submitTraversal("query", progress)).stream()
+            .map(counters -> new PlanProgress((String) counters.get("planId"), ((Number) counters.get("pending")).longValue(),
+                ((Number) counters.get("running")).longValue(), ((Number) counters.get("completed")).longValue(),
+                ((Number) counters.get("error")).longValue()))
+            .collect(Collectors.toMap(PlanProgress::getPlanId, Function.identity()));
+    }
 
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        GraphTraversal<Vertex, Map<String, Map<String, Long>>> aggregate = g.V().has(EXECUTION_PLAN_NODE_CLASS, "planId", P.within(planIds))
+            .<String, Map<String, Long>>group().by("planId").by(__.groupCount().by("status"));
+        Map<String, PlanProgress> progress = new HashMap<>();
+        await(submitTraversal("query", aggregate)).stream().findFirst().orElse(Map.of()).forEach((planId, byStatus) -> {
+            long[] counts = new long[Node.Status.values().length];
+            byStatus.forEach((status, nodes) -> counts[Node.Status.valueOf(status).ordinal()] = nodes);
+            progress.put(planId, PlanProgress.of(planId, counts));
+        });
+        return progress;
+    }
+
+    /**
+     * Submits a traversal and collects its results, timed as one round trip from submission to the last result.
+     * A submission the client rejects right away fails the returned future like any other error.
+     */
+    private <E> CompletableFuture<List<E>> submitTraversal(String operation, Traversal<?, E> traversal) {
+        try {
+            return metrics.roundTripAsync(DB.NEPTUNE, operation, () -> traversal.promise(Traversal::toList));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     @PreDestroy
@@ -92,27 +525,72 @@ public class NeptuneBWrapper implements DBWrapper {
         }
     }
 
-    private String mapToVertex(Node node) {
-        // Create vertices
-        return """
-                g.addV('%s')
-                .property('id', '%s')
-                .property('planId', '%s')
-                .property('data', '%s')
-                .property('status', '%s')
-                .property('parentId', '%s')
-            """.formatted(EXECUTION_PLAN_NODE_CLASS, node.getId(), node.getPlanId(), node.getData(), node.getStatus(), node.getParentId());
+    GraphTraversal<Vertex, Object> mapToVertex(Node node) {
+        GraphTraversal<Vertex, Vertex> vertex = g.addV(EXECUTION_PLAN_NODE_CLASS)
+            .property("id", node.getId())
+            .property("planId", node.getPlanId())
+            .property("data", node.getData())
+            .property("status", node.getStatus().toString());
+        if (node.getParentId() != null) {
+            vertex.property("parentId", node.getParentId());
+        }
+        return vertex.id();
+    }
+
+    GraphTraversal<Vertex, Object> mapToEdge(String parentId, String childId) {
+        return g.V().has(EXECUTION_PLAN_NODE_CLASS, "id", parentId).as("source")
+            .V().has(EXECUTION_PLAN_NODE_CLASS, "id", childId)
+            .addE(EXECUTION_PLAN_DEPENDS_CLASS).from("source")
+            .id();
     }
 
-    private Node mapToNode(Result nodeToUpdate) {
-        //noinspection unchecked
-        HashMap<String, List<String>> nodeMap = nodeToUpdate.get(HashMap.class);
+    Map<String, Object> mapToBinding(Node node) {
+        Map<String, Object> binding = new HashMap<>();
+        binding.put("id", node.getId());
+        binding.put("planId", node.getPlanId());
+        binding.put("data", node.getData());
+        binding.put("status", node.getStatus().toString());
+        if (node.getParentId() != null) {
+            binding.put("parentId", node.getParentId());
+        }
+        return binding;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Gremlin server", e);
+        } catch (ExecutionException e) {
+            // A lost compare-and-set is handed to OptimisticRetry as is
+            if (e.getCause() instanceof UpdateConflictException conflict) {
+                throw conflict;
+            }
+            throw new IllegalStateException("Gremlin submission failed", e.getCause());
+        }
+    }
+
+    Node mapToNode(Map<Object, Object> elementMap) {
+        String parentId = (String) elementMap.get("parentId");
+        Number leaseExpiresAt = (Number) elementMap.get("leaseExpiresAt");
         return Node.builder()
-            .id(nodeMap.get("id").get(0))
-            .planId(nodeMap.get("planId").get(0))
-            .data(nodeMap.get("data").get(0))
-            .status(Node.Status.valueOf(nodeMap.get("status").get(0)))
-            .parentId(nodeMap.get("parentId").get(0).equals("null") ? null : nodeMap.get("parentId").get(0))
+            .id((String) elementMap.get("id"))
+            .planId((String) elementMap.get("planId"))
+            .data((String) elementMap.get("data"))
+            .status(Node.Status.valueOf((String) elementMap.get("status")))
+            // Roots written before parentId was left out of them have the string "null"
+            .parentId("null".equals(parentId) ? null : parentId)
+            .leaseOwner((String) elementMap.get("leaseOwner"))
+            .leaseExpiresAt(leaseExpiresAt == null ? 0 : leaseExpiresAt.longValue())
             .build();
     }
+
+    CompactNode mapToCompactNode(Map<Object, Object> elementMap) {
+        String parentId = (String) elementMap.get("parentId");
+        Number leaseExpiresAt = (Number) elementMap.get("leaseExpiresAt");
+        return new CompactNode((String) elementMap.get("id"), (String) elementMap.get("planId"), (String) elementMap.get("data"),
+            Node.Status.valueOf((String) elementMap.get("status")), "null".equals(parentId) ? null : parentId,
+            (String) elementMap.get("leaseOwner"), leaseExpiresAt == null ? 0 : leaseExpiresAt.longValue());
+    }
 }
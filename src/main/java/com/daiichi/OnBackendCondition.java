@@ -0,0 +1,25 @@
+package com.daiichi;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.List;
+
+class OnBackendCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        DBWrapper.DB backend = metadata.getAnnotations().get(ConditionalOnBackend.class).getEnum("value", DBWrapper.DB.class);
+        // Bound like BenchmarkProperties binds it, falling back to its default when the property isn't set
+        List<DBWrapper.DB> selected = Binder.get(context.getEnvironment())
+            .bind("benchmark.backends", Bindable.listOf(DBWrapper.DB.class))
+            .orElseGet(() -> new BenchmarkProperties().getBackends());
+        return selected.contains(backend)
+            ? ConditionOutcome.match("backend " + backend + " is selected")
+            : ConditionOutcome.noMatch("backend " + backend + " isn't in benchmark.backends " + selected);
+    }
+}
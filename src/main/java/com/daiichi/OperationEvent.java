@@ -0,0 +1,40 @@
+package com.daiichi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one DBWrapper call, emitted by {@link BenchmarkMetrics} next to the
+ * {@code benchmark.operation} timer. Read back by {@link com.daiichi.results.FlightRecordingAnalysis}.
+ */
+@Name(OperationEvent.NAME)
+@Label("Benchmark Operation")
+@Category({"Graph Benchmark"})
+@Description("DBWrapper call of a benchmark harness")
+@StackTrace(false)
+public final class OperationEvent extends jdk.jfr.Event {
+    public static final String NAME = "com.daiichi.Operation";
+
+    @Label("Backend")
+    String backend;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Update Mode")
+    String mode;
+
+    @Label("Plan Id")
+    @Description("Plan the call works on, null for calls spanning several plans")
+    String planId;
+
+    @Label("Node Count")
+    @Description("Nodes written, fetched or claimed by the call")
+    int nodeCount;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,119 @@
+package com.daiichi;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs compare-and-set updates with a bounded number of retries and exponential backoff with full jitter, and
+ * counts per backend how often an attempt lost against a concurrent writer and how many round trips that cost.
+ * An attempt signals a lost compare-and-set by throwing {@link UpdateConflictException}.
+ */
+@Slf4j
+@Component
+public class OptimisticRetry {
+    private final BenchmarkProperties properties;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public OptimisticRetry(BenchmarkProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @return the result of the first attempt that didn't conflict, empty when every retry conflicted
+     */
+    public <T> Optional<T> run(String backend, Supplier<Optional<T>> attempt) {
+        BenchmarkProperties.Contention contention = properties.getContention();
+        Counters stats = counters.computeIfAbsent(backend, key -> new Counters());
+        long backoffNanos = contention.getInitialBackoff().toNanos();
+        for (int retry = 0; ; retry++) {
+            stats.attempts.increment();
+            try {
+                return attempt.get();
+            } catch (UpdateConflictException e) {
+                if (!retryAfterConflict(backend, stats, e, retry)) {
+                    return Optional.empty();
+                }
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(backoffNanos + 1));
+                backoffNanos = Math.min(backoffNanos * 2, contention.getMaxBackoff().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #run} for attempts that complete asynchronously, a conflict completes the attempt's future
+     * exceptionally and the backoff is scheduled instead of parking the calling thread.
+     */
+    public <T> CompletableFuture<Optional<T>> runAsync(String backend, Supplier<CompletableFuture<Optional<T>>> attempt) {
+        Counters stats = counters.computeIfAbsent(backend, key -> new Counters());
+        return attemptAsync(backend, stats, attempt, 0, properties.getContention().getInitialBackoff().toNanos());
+    }
+
+    private <T> CompletableFuture<Optional<T>> attemptAsync(String backend, Counters stats, Supplier<CompletableFuture<Optional<T>>> attempt,
+                                                            int retry, long backoffNanos) {
+        stats.attempts.increment();
+        return attempt.get().handle((result, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (!(cause instanceof UpdateConflictException conflict)) {
+                return CompletableFuture.<Optional<T>>failedFuture(cause);
+            }
+            if (!retryAfterConflict(backend, stats, conflict, retry)) {
+                return CompletableFuture.completedFuture(Optional.<T>empty());
+            }
+            long nextBackoff = Math.min(backoffNanos * 2, properties.getContention().getMaxBackoff().toNanos());
+            Executor backoff = CompletableFuture.delayedExecutor(ThreadLocalRandom.current().nextLong(backoffNanos + 1), TimeUnit.NANOSECONDS);
+            return CompletableFuture.supplyAsync(() -> null, backoff)
+                .thenCompose(ignored -> attemptAsync(backend, stats, attempt, retry + 1, nextBackoff));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Counts a lost compare-and-set, {@code retry} is the number of retries before this attempt.
+     *
+     * @return false when the retries are exhausted
+     */
+    private boolean retryAfterConflict(String backend, Counters stats, UpdateConflictException e, int retry) {
+        stats.conflicts.increment();
+        stats.wastedRoundTrips.add(e.getRoundTrips());
+        if (retry >= properties.getContention().getMaxRetries()) {
+            stats.exhausted.increment();
+            log.warn("{}: Giving up after {} retries, {}", backend, retry, e.getMessage());
+            return false;
+        }
+        stats.retries.increment();
+        return true;
+    }
+
+    public void report(String backend) {
+        Counters stats = counters.get(backend);
+        if (stats == null) {
+            return;
+        }
+        log.info("{}: Contention Stats, Attempts: {}, Conflicts: {}, Retries: {}, Exhausted: {}, Wasted round trips: {}",
+            backend, stats.attempts.sum(), stats.conflicts.sum(), stats.retries.sum(), stats.exhausted.sum(),
+            stats.wastedRoundTrips.sum());
+    }
+
+    private static final class Counters {
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+        private final LongAdder wastedRoundTrips = new LongAdder();
+    }
+}
@@ -0,0 +1,59 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * OrientDB's remote protocol has no asynchronous client, so calls of the blocking {@link OrientDBWrapper} run on
+ * a thread per pooled session. In flight requests are bounded by the pool size, the caller never blocks.
+ */
+@Slf4j
+@Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.ORIENT)
+public class OrientDBAsyncWrapper implements AsyncDBWrapper {
+
+    private final OrientDBWrapper orientDBWrapper;
+    private final int poolSize;
+    private final ExecutorService sessions;
+
+    public OrientDBAsyncWrapper(OrientDBWrapper orientDBWrapper, BenchmarkProperties properties) {
+        this.orientDBWrapper = orientDBWrapper;
+        this.poolSize = properties.getOrient().getPoolSize();
+        this.sessions = Executors.newFixedThreadPool(poolSize);
+    }
+
+    @Override
+    public CompletableFuture<Void> createTree(ExecutionPlan plan) {
+        return CompletableFuture.runAsync(() -> orientDBWrapper.createTree(plan), sessions);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdate(String planId) {
+        return CompletableFuture.supplyAsync(() -> orientDBWrapper.fetchAndUpdate(planId), sessions);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        return CompletableFuture.supplyAsync(() -> orientDBWrapper.fetchAndUpdateOnServer(planId), sessions);
+    }
+
+    @Override
+    public int connections() {
+        return poolSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sessions.shutdownNow();
+    }
+}
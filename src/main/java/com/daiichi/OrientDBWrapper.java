@@ -1,7 +1,11 @@
 package com.daiichi;
 
+import com.daiichi.pojo.CompactNode;
 import com.daiichi.pojo.ExecutionPlan;
 import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import com.orientechnologies.common.concur.ONeedRetryException;
+import com.orientechnologies.orient.core.db.ODatabasePool;
 import com.orientechnologies.orient.core.db.ODatabaseSession;
 import com.orientechnologies.orient.core.record.OElement;
 import com.orientechnologies.orient.core.record.OVertex;
@@ -9,94 +13,415 @@ import com.orientechnologies.orient.core.sql.executor.OResultSet;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.daiichi.pojo.Constants.*;
 
 @Slf4j
 @Service
+@Lazy
+@ConditionalOnBackend(DBWrapper.DB.ORIENT)
 @RequiredArgsConstructor
 public class OrientDBWrapper implements DBWrapper {
+    static final String RESET_PROGRESS_QUERY = "UPDATE %s SET pending = ?, running = 0, completed = 0, error = 0 UPSERT WHERE planId = ?"
+        .formatted(EXECUTION_PLAN_PROGRESS_CLASS);
+    static final String MOVE_PROGRESS_QUERY = "UPDATE %s SET pending = pending + ?, running = running + ?, completed = completed + ?, error = error + ? WHERE planId = ?"
+        .formatted(EXECUTION_PLAN_PROGRESS_CLASS);
 
-    private final ODatabaseSession orientSession;
+    private final ODatabasePool orientPool;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
 
     @Override
     public void createTree(ExecutionPlan plan) {
-        orientSession.activateOnCurrentThread();
-        String nodeData = plan.getGraph().stream()
-            .filter(node -> node.getParentId() == null)
-            .findFirst()
-            .map(Node::getData)
-            .orElse(null);
-        String query = "SELECT * FROM %s WHERE data = '%s' LIMIT 1".formatted(EXECUTION_PLAN_NODE_CLASS, nodeData);
-
-        OResultSet resultSet = orientSession.query(query);
-        if (resultSet.hasNext()) {
-            String resetQuery = "UPDATE %s SET status = 'Pending' WHERE NOT status = 'Pending' and planId = '%s'".formatted(EXECUTION_PLAN_NODE_CLASS, plan.getId());
-            OResultSet updateResultSet = orientSession.command(resetQuery);
-            if (updateResultSet.hasNext()) {
-                log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), updateResultSet.next().getProperty("count"));
+        try (ODatabaseSession orientSession = orientPool.acquire()) {
+            String nodeData = EXECUTION_PLAN_ROOT_NODE.formatted(plan.getId());
+            String query = "SELECT id FROM %s WHERE data = ? LIMIT 1".formatted(EXECUTION_PLAN_NODE_CLASS);
+
+            try (OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "query", () -> orientSession.query(query, nodeData))) {
+                if (resultSet.hasNext()) {
+                    String resetQuery = "UPDATE %s SET status = 'Pending' WHERE planId = ? AND status <> 'Pending'".formatted(EXECUTION_PLAN_NODE_CLASS);
+                    inTransaction(orientSession, () -> {
+                        try (OResultSet updateResultSet = metrics.roundTrip(DB.ORIENT, "command", () -> orientSession.command(resetQuery, plan.getId()))) {
+                            if (updateResultSet.hasNext()) {
+                                log.info("Plan {} already exists, reset status of {} nodes", plan.getId(), updateResultSet.next().<Object>getProperty("count"));
+                            }
+                        }
+                        resetProgress(orientSession, plan);
+                    });
+                    return;
+                }
+            }
+
+            // Each node is written with the edges to its parents, committed every txBatchSize records, the plan's counters with the last batch.
+            // Only the vertices of the current batch are held, parents written by an earlier batch are loaded through the id index
+            List<Node> batch = new ArrayList<>();
+            int batchRecords = 0;
+            long vertexCount = 0;
+            long edgeCount = 0;
+            int batchSize = Math.max(1, properties.getOrient().getTxBatchSize());
+            for (Iterator<Node> nodes = plan.nodes().iterator(); nodes.hasNext(); ) {
+                Node node = nodes.next();
+                int edges = (int) node.parentIds().count();
+                batch.add(node);
+                batchRecords += 1 + edges;
+                edgeCount += edges;
+                boolean last = !nodes.hasNext();
+                if (batchRecords >= batchSize || last) {
+                    inTransaction(orientSession, () -> {
+                        Map<String, OVertex> vertices = loadParents(orientSession, batch);
+                        batch.forEach(batchNode -> {
+                            OVertex vertex = mapToOVertex(orientSession, batchNode).save();
+                            vertices.put(batchNode.getId(), vertex);
+                            batchNode.parentIds().forEach(parentId -> vertex
+                                .addEdge(vertices.get(parentId), EXECUTION_PLAN_DEPENDS_CLASS)
+                                .save());
+                        });
+                        if (last) {
+                            resetProgress(orientSession, plan);
+                        }
+                    });
+                    vertexCount += batch.size();
+                    batch.clear();
+                    batchRecords = 0;
+                }
             }
-            return;
-        }
 
-        Map<String, OVertex> vertexMap = plan.getGraph().stream()
-            .map(node -> mapToOVertex(node).<OVertex>save())
-            .collect(Collectors.toMap(oVertex -> oVertex.getProperty("id"), Function.identity()));
-        long edgeCount = plan.getGraph().stream()
-            .filter(node -> node.getParentId() != null)
-            .map(node -> vertexMap.get(node.getId())
-                .addEdge(vertexMap.get(node.getParentId()), EXECUTION_PLAN_DEPENDS_CLASS)
-                .save()).count();
+            log.info("Stored graph {} in OrientDB, with {} vertices and {} edges", plan.getId(), vertexCount, edgeCount);
+        }
+    }
 
-        log.info("Stored graph {} in OrientDB, with {} vertices and {} edges", plan.getId(), vertexMap.size(), edgeCount);
+    /**
+     * @return the vertices of the batch's parents that an earlier batch wrote, by node id, in one query
+     */
+    private Map<String, OVertex> loadParents(ODatabaseSession orientSession, List<Node> batch) {
+        Set<String> batchIds = batch.stream().map(Node::getId).collect(Collectors.toSet());
+        List<String> parentIds = batch.stream()
+            .flatMap(Node::parentIds)
+            .filter(parentId -> !batchIds.contains(parentId))
+            .distinct()
+            .toList();
+        Map<String, OVertex> parents = new HashMap<>();
+        if (parentIds.isEmpty()) {
+            return parents;
+        }
+        String query = "SELECT FROM %s WHERE id IN ?".formatted(EXECUTION_PLAN_NODE_CLASS);
+        try (OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "query", () -> orientSession.query(query, parentIds))) {
+            resultSet.forEachRemaining(result -> result.getVertex().ifPresent(parent -> parents.put(parent.getProperty("id"), parent)));
+        }
+        return parents;
     }
 
     @Override
-    public void fetchAndUpdate(String planId) {
-        orientSession.activateOnCurrentThread();
-        try {
-            // Recursive query to traverse and find the first eligible node
-            String query = """
-                SELECT * FROM (
-                  TRAVERSE IN(DEPENDS_ON)
-                  FROM (SELECT * FROM PLAN_NODE WHERE data LIKE '%s')
-                  STRATEGY BREADTH_FIRST
-                )
-                WHERE NOT status = 'Completed'
-                LIMIT 1
-                """.formatted(EXECUTION_PLAN_ROOT_NODE.formatted(planId));
-
-            OResultSet resultSet = orientSession.query(query);
-            if (resultSet.hasNext()) {
-                OElement nodeToUpdate = resultSet.next().toElement();
-
-                // Update node status in Java and save back to the database
-                Node node = mapToNode(nodeToUpdate); // Utility method to map ODocument to Node
-                node.progressStatus();
-                nodeToUpdate.setProperty("status", node.getStatus().toString());
-                nodeToUpdate.save();
-                log.info("Updated node {} in OrientDB to status {}", node.getData(), node.getStatus());
-            }
+    public Optional<Node> fetchAndUpdate(String planId) {
+        boolean completes = transitions.nextCompletes(planId);
+        try (ODatabaseSession orientSession = orientPool.acquire()) {
+            return optimisticRetry.run(DB.ORIENT.name(), () -> {
+                orientSession.begin();
+                try {
+                    Optional<Node> updated = Optional.empty();
+                    try (OResultSet resultSet = queryEligible(orientSession, planId, 1)) {
+                        if (resultSet.hasNext()) {
+                            OElement nodeToUpdate = resultSet.next().toElement();
+
+                            // Update node status in Java and save back, the commit fails if the record version moved on
+                            Node node = mapToNode(nodeToUpdate); // Utility method to map ODocument to Node
+                            Node.Status before = node.getStatus();
+                            node.progressStatus(completes);
+                            nodeToUpdate.setProperty("status", node.getStatus().toString());
+                            nodeToUpdate.save();
+                            ProgressDeltas deltas = new ProgressDeltas();
+                            deltas.move(planId, before, node.getStatus());
+                            moveProgress(orientSession, deltas);
+                            updated = Optional.of(node);
+                        }
+                    }
+                    metrics.roundTrip(DB.ORIENT, "commit", orientSession::commit);
+                    updated.ifPresent(node -> log.info("Updated node {} in OrientDB to status {}", node.getData(), node.getStatus()));
+                    return updated;
+                } catch (ONeedRetryException e) {
+                    orientSession.rollback();
+                    throw new UpdateConflictException("Next node of " + planId, 2);
+                } catch (RuntimeException e) {
+                    orientSession.rollback();
+                    throw e;
+                }
+            });
         } catch (Exception e) {
             log.error("Error during OrientDB fetch and update", e);
+            metrics.markFailed();
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        // UPDATE over the traversal subquery, the transition is evaluated per record. RETURN BEFORE sends back the status
+        // the counters move the node from, the status it moved to follows from the same transition
+        String query = """
+            UPDATE (
+              SELECT FROM (
+                TRAVERSE IN(%s)
+                FROM (SELECT FROM %s WHERE data = ?)
+                STRATEGY BREADTH_FIRST
+              )
+              WHERE NOT status = 'Completed'
+              LIMIT 1
+            )
+            SET status = if(eval("status = 'Pending'"), 'Running', if(eval("status = 'Running'"), ?, 'Completed'))
+            RETURN BEFORE
+            """.formatted(EXECUTION_PLAN_DEPENDS_CLASS, EXECUTION_PLAN_NODE_CLASS);
+        boolean completes = transitions.nextCompletes(planId);
+        String runningTo = (completes ? Node.Status.Completed : Node.Status.Error).toString();
+        try (ODatabaseSession orientSession = orientPool.acquire()) {
+            Optional<Node> updated = inTransaction(orientSession, () -> {
+                try (OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "command",
+                    () -> orientSession.command(query, EXECUTION_PLAN_ROOT_NODE.formatted(planId), runningTo))) {
+                    if (!resultSet.hasNext()) {
+                        return Optional.<Node>empty();
+                    }
+                    Node node = mapToNode(resultSet.next().toElement());
+                    Node.Status before = node.getStatus();
+                    node.progressStatus(completes);
+                    ProgressDeltas deltas = new ProgressDeltas();
+                    deltas.move(planId, before, node.getStatus());
+                    moveProgress(orientSession, deltas);
+                    return Optional.of(node);
+                }
+            });
+            updated.ifPresent(node -> log.info("Updated node {} in OrientDB to status {}", node.getData(), node.getStatus()));
+            return updated;
+        } catch (Exception e) {
+            log.error("Error during OrientDB server side fetch and update", e);
+            metrics.markFailed();
         }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        try (ODatabaseSession orientSession = orientPool.acquire();
+             OResultSet resultSet = queryEligible(orientSession, planId, limit)) {
+            return resultSet.stream().map(result -> mapToNode(result.toElement())).toList();
+        }
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        try (ODatabaseSession orientSession = orientPool.acquire();
+             OResultSet resultSet = queryEligible(orientSession, planId, limit)) {
+            return resultSet.stream().map(result -> mapToCompactNode(result.toElement())).toList();
+        }
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        String query = "UPDATE %s SET status = ? RETURN BEFORE WHERE id = ?".formatted(EXECUTION_PLAN_NODE_CLASS);
+        try (ODatabaseSession orientSession = orientPool.acquire()) {
+            inTransaction(orientSession, () -> {
+                ProgressDeltas deltas = new ProgressDeltas();
+                try (OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "command", () -> orientSession.command(query, node.getStatus().toString(), node.getId()))) {
+                    resultSet.forEachRemaining(before -> deltas.move(node.getPlanId(), Node.Status.valueOf(before.getProperty("status")), node.getStatus()));
+                }
+                moveProgress(orientSession, deltas);
+            });
+            return true;
+        } catch (Exception e) {
+            log.error("Error updating status of node {} in OrientDB", node.getId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Edges point from a child to its parents, so a node is ready once none of its outgoing edges reaches an
+     * unfinished parent. The planId index narrows the candidates; the update runs in a transaction whose commit
+     * fails when a concurrent claim wrote one of the nodes first, and the whole claim is retried. RETURN BEFORE
+     * gives the status each claimed node leaves for the counters, the claimed nodes are the records with the lease.
+     */
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        String query = """
+            UPDATE %s SET status = 'Running', leaseOwner = ?, leaseExpiresAt = ?
+            RETURN BEFORE
+            WHERE planId IN ? AND status IN ['Pending', 'Error', 'Running']
+              AND (status <> 'Running' OR (leaseExpiresAt > 0 AND leaseExpiresAt < ?))
+              AND out('%s')[status <> 'Completed'].size() = 0
+            LIMIT ?
+            """.formatted(EXECUTION_PLAN_NODE_CLASS, EXECUTION_PLAN_DEPENDS_CLASS);
+        long now = System.currentTimeMillis();
+        try (ODatabaseSession orientSession = orientPool.acquire()) {
+            return optimisticRetry.run(DB.ORIENT.name(), () -> {
+                orientSession.begin();
+                try {
+                    List<Node> claimed = new ArrayList<>();
+                    ProgressDeltas deltas = new ProgressDeltas();
+                    try (OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "command",
+                        () -> orientSession.command(query, owner, now + lease.toMillis(), planIds, now, limit))) {
+                        resultSet.forEachRemaining(result -> {
+                            Node before = mapToNode(result.toElement());
+                            deltas.move(before.getPlanId(), before.getStatus(), Node.Status.Running);
+                            claimed.add(before.toBuilder().status(Node.Status.Running).leaseOwner(owner).leaseExpiresAt(now + lease.toMillis()).build());
+                        });
+                    }
+                    moveProgress(orientSession, deltas);
+                    metrics.roundTrip(DB.ORIENT, "commit", orientSession::commit);
+                    return Optional.of(claimed);
+                } catch (ONeedRetryException e) {
+                    orientSession.rollback();
+                    throw new UpdateConflictException("Claim over " + planIds.size() + " plans", 2);
+                } catch (RuntimeException e) {
+                    orientSession.rollback();
+                    throw e;
+                }
+            }).orElse(List.of());
+        } catch (Exception e) {
+            log.error("Error claiming ready nodes in OrientDB", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * One UPDATE per reported status rather than per node, all of them committed together with the counters.
+     * RETURN BEFORE lists the records that were still leased to the owner, which are the ones written.
+     */
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        String query = "UPDATE %s SET status = ?, leaseOwner = null, leaseExpiresAt = null RETURN BEFORE WHERE id IN ? AND status = 'Running' AND leaseOwner = ?"
+            .formatted(EXECUTION_PLAN_NODE_CLASS);
+        Map<Node.Status, List<String>> idsByStatus = nodes.stream()
+            .collect(Collectors.groupingBy(Node::getStatus, Collectors.mapping(Node::getId, Collectors.toList())));
+        try (ODatabaseSession orientSession = orientPool.acquire()) {
+            return inTransaction(orientSession, () -> {
+                ProgressDeltas deltas = new ProgressDeltas();
+                int reported = 0;
+                for (Map.Entry<Node.Status, List<String>> ids : idsByStatus.entrySet()) {
+                    try (OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "command",
+                        () -> orientSession.command(query, ids.getKey().toString(), ids.getValue(), owner))) {
+                        while (resultSet.hasNext()) {
+                            deltas.move(resultSet.next().getProperty("planId"), Node.Status.Running, ids.getKey());
+                            reported++;
+                        }
+                    }
+                }
+                moveProgress(orientSession, deltas);
+                return reported;
+            });
+        } catch (Exception e) {
+            log.error("Error reporting status of {} nodes in OrientDB", nodes.size(), e);
+            return 0;
+        }
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        String query = "SELECT planId, pending, running, completed, error FROM %s WHERE planId IN ?".formatted(EXECUTION_PLAN_PROGRESS_CLASS);
+        try (ODatabaseSession orientSession = orientPool.acquire();
+             OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "query", () -> orientSession.query(query, planIds))) {
+            return resultSet.stream()
+                .map(result -> new PlanProgress(result.getProperty("planId"), result.<Number>getProperty("pending").longValue(),
+                    result.<Number>getProperty("running").longValue(), result.<Number>getProperty("completed").longValue(),
+                    result.<Number>getProperty("error").longValue()))
+                .collect(Collectors.toMap(PlanProgress::getPlanId, Function.identity()));
+        }
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        String query = "SELECT planId, status, count(*) AS nodes FROM %s WHERE planId IN ? GROUP BY planId, status".formatted(EXECUTION_PLAN_NODE_CLASS);
+        Map<String, long[]> counts = new HashMap<>();
+        try (ODatabaseSession orientSession = orientPool.acquire();
+             OResultSet resultSet = metrics.roundTrip(DB.ORIENT, "query", () -> orientSession.query(query, planIds))) {
+            resultSet.forEachRemaining(result -> counts.computeIfAbsent(result.getProperty("planId"), planId -> new long[Node.Status.values().length])
+                [Node.Status.valueOf(result.getProperty("status")).ordinal()] = result.<Number>getProperty("nodes").longValue());
+        }
+        return counts.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, entry -> PlanProgress.of(entry.getKey(), entry.getValue())));
+    }
+
+    /**
+     * Sets the counters of a plan whose nodes were all just written as Pending, in the caller's transaction.
+     */
+    private void resetProgress(ODatabaseSession orientSession, ExecutionPlan plan) {
+        metrics.roundTrip(DB.ORIENT, "command", () -> orientSession.command(RESET_PROGRESS_QUERY, plan.nodeCount(), plan.getId())).close();
+    }
+
+    /**
+     * Applies the counter changes in the caller's transaction. Concurrent writers of a plan then conflict on its
+     * counter record at commit and are retried, which keeps the counters exact.
+     */
+    private void moveProgress(ODatabaseSession orientSession, ProgressDeltas deltas) {
+        deltas.forEach((planId, delta) -> metrics.roundTrip(DB.ORIENT, "command", () -> orientSession.command(MOVE_PROGRESS_QUERY,
+            delta.getPending(), delta.getRunning(), delta.getCompleted(), delta.getError(), planId)).close());
+    }
+
+    private OResultSet queryEligible(ODatabaseSession orientSession, String planId, int limit) {
+        // Recursive query to traverse and find the first eligible nodes
+        String query = """
+            SELECT * FROM (
+              TRAVERSE IN(%s)
+              FROM (SELECT * FROM %s WHERE data = ?)
+              STRATEGY BREADTH_FIRST
+            )
+            WHERE NOT status = 'Completed'
+            LIMIT ?
+            """.formatted(EXECUTION_PLAN_DEPENDS_CLASS, EXECUTION_PLAN_NODE_CLASS);
+        return metrics.roundTrip(DB.ORIENT, "query", () -> orientSession.query(query, EXECUTION_PLAN_ROOT_NODE.formatted(planId), limit));
     }
 
     @PreDestroy
     public void closeSession() {
-        orientSession.activateOnCurrentThread();
-        if (!orientSession.isClosed()) {
-            orientSession.close();
-            System.out.println("OrientDB session closed successfully.");
+        if (!orientPool.isClosed()) {
+            orientPool.close();
+            System.out.println("OrientDB pool closed successfully.");
         }
     }
 
-    private OVertex mapToOVertex(Node node) {
+    /**
+     * Runs {@code work} in an explicit transaction, retrying the whole unit through {@link OptimisticRetry} when
+     * the commit loses an optimistic version check against a concurrent writer.
+     */
+    private void inTransaction(ODatabaseSession orientSession, Runnable work) {
+        inTransaction(orientSession, () -> {
+            work.run();
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * @throws IllegalStateException when every retry conflicted
+     */
+    private <T> T inTransaction(ODatabaseSession orientSession, Supplier<T> work) {
+        return optimisticRetry.run(DB.ORIENT.name(), () -> {
+            orientSession.begin();
+            try {
+                T result = work.get();
+                metrics.roundTrip(DB.ORIENT, "commit", orientSession::commit);
+                return Optional.of(result);
+            } catch (ONeedRetryException e) {
+                orientSession.rollback();
+                throw new UpdateConflictException("OrientDB transaction", 2);
+            } catch (RuntimeException e) {
+                orientSession.rollback();
+                throw e;
+            }
+        }).orElseThrow(() -> new IllegalStateException("OrientDB transaction kept conflicting after the last retry"));
+    }
+
+    OVertex mapToOVertex(ODatabaseSession orientSession, Node node) {
         OVertex vertex = orientSession.newVertex(EXECUTION_PLAN_NODE_CLASS);
         vertex.setProperty("id", node.getId());
         vertex.setProperty("data", node.getData());
@@ -106,13 +431,23 @@ public class OrientDBWrapper implements DBWrapper {
         return vertex;
     }
 
-    private Node mapToNode(OElement document) {
+    Node mapToNode(OElement document) {
+        Number leaseExpiresAt = document.getProperty("leaseExpiresAt");
         return Node.builder()
             .id(document.getProperty("id"))
             .data(document.getProperty("data"))
             .planId(document.getProperty("planId"))
             .status(Node.Status.valueOf(document.getProperty("status")))
             .parentId(document.getProperty("parentId"))
+            .leaseOwner(document.getProperty("leaseOwner"))
+            .leaseExpiresAt(leaseExpiresAt == null ? 0 : leaseExpiresAt.longValue())
             .build();
     }
+
+    CompactNode mapToCompactNode(OElement document) {
+        Number leaseExpiresAt = document.getProperty("leaseExpiresAt");
+        return new CompactNode(document.getProperty("id"), document.getProperty("planId"), document.getProperty("data"),
+            Node.Status.valueOf(document.getProperty("status")), document.getProperty("parentId"), document.getProperty("leaseOwner"),
+            leaseExpiresAt == null ? 0 : leaseExpiresAt.longValue());
+    }
 }
@@ -0,0 +1,82 @@
+package com.daiichi;
+
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps at most {@code inFlightPerConnection} calls per connection of the wrapped backend in flight. A caller
+ * that would exceed the limit blocks until an earlier call completes, so a fast submitter is slowed down to the
+ * rate the backend sustains instead of queueing unbounded work in the driver.
+ */
+@Slf4j
+public class PipelinedDBWrapper implements AsyncDBWrapper {
+    private final AsyncDBWrapper delegate;
+    private final String name;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public PipelinedDBWrapper(AsyncDBWrapper delegate, String name, int inFlightPerConnection) {
+        this.delegate = delegate;
+        this.name = name;
+        this.maxInFlight = Math.max(1, inFlightPerConnection * delegate.connections());
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public CompletableFuture<Void> createTree(ExecutionPlan plan) {
+        return submit(() -> delegate.createTree(plan));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdate(String planId) {
+        return submit(() -> delegate.fetchAndUpdate(planId));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Node>> fetchAndUpdateOnServer(String planId) {
+        return submit(() -> delegate.fetchAndUpdateOnServer(planId));
+    }
+
+    @Override
+    public int connections() {
+        return delegate.connections();
+    }
+
+    /**
+     * Blocks until every call submitted so far has completed.
+     */
+    public void drain() {
+        permits.acquireUninterruptibly(maxInFlight);
+        permits.release(maxInFlight);
+    }
+
+    public void report() {
+        log.info("{}: Pipeline Stats, Max in flight: {} ({} connections), Submitted: {}, Throttled: {}",
+            name, maxInFlight, delegate.connections(), submitted.sum(), throttled.sum());
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        if (!permits.tryAcquire()) {
+            throttled.increment();
+            permits.acquireUninterruptibly();
+        }
+        submitted.increment();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return future.whenComplete((result, error) -> permits.release());
+    }
+}
@@ -0,0 +1,38 @@
+package com.daiichi;
+
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Net change of the status counters per plan over the status writes of one transaction, so a backend updates the
+ * counter record of each plan once however many of its nodes were written.
+ */
+final class ProgressDeltas {
+    private static final int STATUSES = Node.Status.values().length;
+
+    private final Map<String, long[]> deltas = new LinkedHashMap<>();
+
+    void move(String planId, Node.Status from, Node.Status to) {
+        if (from == to) {
+            return;
+        }
+        long[] delta = deltas.computeIfAbsent(planId, plan -> new long[STATUSES]);
+        delta[from.ordinal()]--;
+        delta[to.ordinal()]++;
+    }
+
+    boolean isEmpty() {
+        return deltas.isEmpty();
+    }
+
+    /**
+     * @param action gets each plan with its change as a PlanProgress of signed counts
+     */
+    void forEach(BiConsumer<String, PlanProgress> action) {
+        deltas.forEach((planId, delta) -> action.accept(planId, PlanProgress.of(planId, delta)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.daiichi;
+
+import com.daiichi.pojo.CompactNode;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import com.daiichi.workload.TraceWriter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Appends every createTree and fetchAndUpdate call to a trace before passing it on, so the traffic a harness
+ * generated can be replayed against other backends by the trace replay. Calls are recorded when they're issued,
+ * failed ones included. fetchEligible, updateStatus, the lease calls and progress reads aren't part of the trace format and pass
+ * through.
+ */
+public class RecordingDBWrapper implements DBWrapper, AutoCloseable {
+    private final DBWrapper delegate;
+    private final TraceWriter trace;
+
+    public RecordingDBWrapper(DBWrapper delegate, TraceWriter trace) {
+        this.delegate = delegate;
+        this.trace = trace;
+    }
+
+    @Override
+    public void createTree(ExecutionPlan plan) {
+        trace.created(plan);
+        delegate.createTree(plan);
+    }
+
+    @Override
+    public void createTrees(List<ExecutionPlan> plans) {
+        plans.forEach(trace::created);
+        delegate.createTrees(plans);
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdate(String planId) {
+        trace.updated(planId, UpdateMode.CLIENT);
+        return delegate.fetchAndUpdate(planId);
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        trace.updated(planId, UpdateMode.SERVER);
+        return delegate.fetchAndUpdateOnServer(planId);
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        return delegate.fetchEligible(planId, limit);
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return delegate.fetchEligibleCompact(planId, limit);
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        return delegate.updateStatus(node);
+    }
+
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        return delegate.claimReady(planIds, limit, owner, lease);
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        return delegate.reportStatus(owner, nodes);
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        return delegate.getPlanProgress(planIds);
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        return delegate.aggregatePlanProgress(planIds);
+    }
+
+    @Override
+    public void close() throws IOException {
+        trace.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.daiichi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one driver request, emitted by {@link BenchmarkMetrics} next to the
+ * {@code benchmark.round.trip} timer. Carries the DBWrapper call it was made for. A pipelined request is committed
+ * by the thread that completes its future, so it is recorded on that thread rather than the caller's.
+ */
+@Name(RoundTripEvent.NAME)
+@Label("Benchmark Round Trip")
+@Category({"Graph Benchmark"})
+@Description("Driver request made by a DBWrapper call")
+@StackTrace(false)
+public final class RoundTripEvent extends jdk.jfr.Event {
+    public static final String NAME = "com.daiichi.RoundTrip";
+
+    @Label("Backend")
+    String backend;
+
+    @Label("Request")
+    String operation;
+
+    @Label("Call")
+    @Description("DBWrapper call the request was made for")
+    String call;
+
+    @Label("Update Mode")
+    String mode;
+
+    @Label("Plan Id")
+    String planId;
+
+    @Label("Node Count")
+    @Description("Nodes the DBWrapper call was given, 0 when it fetches or claims them")
+    int nodeCount;
+
+    @Label("Outcome")
+    String outcome;
+}
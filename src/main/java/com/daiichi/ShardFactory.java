@@ -0,0 +1,84 @@
+package com.daiichi;
+
+import com.arangodb.ArangoDB;
+import com.orientechnologies.orient.core.db.ODatabasePool;
+import com.orientechnologies.orient.core.db.OrientDB;
+import lombok.RequiredArgsConstructor;
+import org.apache.tinkerpop.gremlin.driver.Client;
+import org.apache.tinkerpop.gremlin.driver.remote.DriverRemoteConnection;
+import org.apache.tinkerpop.gremlin.process.traversal.AnonymousTraversalSource;
+import org.neo4j.driver.Driver;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens a backend once per endpoint, each shard with a driver and connection pool of its own sized by the
+ * backend's properties, and puts a {@link ShardedDBWrapper} in front of them. The shards aren't Spring beans,
+ * closing the ShardedDBWrapper releases them.
+ */
+@Component
+@RequiredArgsConstructor
+public class ShardFactory {
+    // Plain instance, the Spring proxy of DbConfig would hand out the singleton beans instead of new instances
+    private final DbConfig dbConfig = new DbConfig();
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
+
+    public ShardedDBWrapper open(DBWrapper.DB db, List<String> endpoints) {
+        List<ShardedDBWrapper.Shard> shards = new ArrayList<>(endpoints.size());
+        try {
+            for (String endpoint : endpoints) {
+                shards.add(openShard(db, endpoint));
+            }
+        } catch (RuntimeException e) {
+            // Releases the shards opened before the failing one
+            if (!shards.isEmpty()) {
+                new ShardedDBWrapper(shards, 1).close();
+            }
+            throw e;
+        }
+        return new ShardedDBWrapper(shards, properties.getSharding().getVirtualNodes());
+    }
+
+    private ShardedDBWrapper.Shard openShard(DBWrapper.DB db, String endpoint) {
+        switch (db) {
+            case IN_MEMORY -> {
+                // The endpoint only names the shard, every one is a separate in-process graph
+                return new ShardedDBWrapper.Shard(endpoint, new InMemoryGraphWrapper(transitions), () -> { });
+            }
+            case ARGANO -> {
+                ArangoDB arangoDB = dbConfig.openArangoDB(endpoint, properties);
+                dbConfig.provisionArango(arangoDB, properties);
+                ArangoDBWrapper wrapper = new ArangoDBWrapper(arangoDB, dbConfig.arangoDatabase(arangoDB), properties,
+                    transitions, optimisticRetry, metrics);
+                return new ShardedDBWrapper.Shard(endpoint, wrapper, arangoDB::shutdown);
+            }
+            case ORIENT -> {
+                OrientDB orientDB = dbConfig.openOrientDB(endpoint, properties);
+                dbConfig.provisionOrient(orientDB, endpoint, properties);
+                ODatabasePool orientPool = dbConfig.openOrientPool(orientDB, properties);
+                return new ShardedDBWrapper.Shard(endpoint, new OrientDBWrapper(orientPool, properties, transitions, optimisticRetry, metrics), () -> {
+                    orientPool.close();
+                    orientDB.close();
+                });
+            }
+            case NEPTUNE -> {
+                Client client = dbConfig.openGremlinClient(endpoint, properties);
+                dbConfig.provisionGremlin(client, properties);
+                NeptuneBWrapper wrapper = new NeptuneBWrapper(client, AnonymousTraversalSource.traversal().withRemote(DriverRemoteConnection.using(client)),
+                    properties, transitions, optimisticRetry, metrics);
+                return new ShardedDBWrapper.Shard(endpoint, wrapper, () -> client.getCluster().close());
+            }
+            case NEO4J -> {
+                Driver driver = dbConfig.openNeo4jDriver(endpoint, properties);
+                dbConfig.provisionNeo4j(driver, properties);
+                return new ShardedDBWrapper.Shard(endpoint, new Neo4jWrapper(driver, properties, transitions, optimisticRetry, metrics), driver::close);
+            }
+        }
+        throw new RuntimeException("DB isn't supported");
+    }
+}
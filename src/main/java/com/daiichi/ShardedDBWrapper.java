@@ -0,0 +1,177 @@
+package com.daiichi;
+
+import com.daiichi.pojo.CompactNode;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Spreads plans over several instances of one backend by consistent hashing of the planId. No call touches more
+ * than one plan, so every call goes to exactly one shard and the shards never talk to each other. The lease calls
+ * take several plans and are split into one call per shard. Each instance
+ * owns virtualNodes points on the ring, keyed by its endpoint, so adding an instance moves only the plans that
+ * now hash to it.
+ */
+@Slf4j
+public class ShardedDBWrapper implements DBWrapper, AutoCloseable {
+
+    private final List<Shard> shards;
+    private final NavigableMap<Long, Integer> ring = new TreeMap<>();
+
+    public ShardedDBWrapper(List<Shard> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        this.shards = List.copyOf(shards);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                ring.put(hash(shards.get(shard).endpoint() + "#" + point), shard);
+            }
+        }
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return index of the shard that stores the plan
+     */
+    public int shardOf(String planId) {
+        Map.Entry<Long, Integer> point = ring.ceilingEntry(hash(planId));
+        return (point != null ? point : ring.firstEntry()).getValue();
+    }
+
+    @Override
+    public void createTree(ExecutionPlan plan) {
+        route(plan.getId()).createTree(plan);
+    }
+
+    /**
+     * Hands every shard its own plans in one createTrees call, so bulk writes still share round trips per shard.
+     */
+    @Override
+    public void createTrees(List<ExecutionPlan> plans) {
+        Map<Integer, List<ExecutionPlan>> byShard = new LinkedHashMap<>();
+        plans.forEach(plan -> byShard.computeIfAbsent(shardOf(plan.getId()), shard -> new ArrayList<>()).add(plan));
+        byShard.forEach((shard, shardPlans) -> shards.get(shard).wrapper().createTrees(shardPlans));
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdate(String planId) {
+        return route(planId).fetchAndUpdate(planId);
+    }
+
+    @Override
+    public Optional<Node> fetchAndUpdateOnServer(String planId) {
+        return route(planId).fetchAndUpdateOnServer(planId);
+    }
+
+    @Override
+    public List<Node> fetchEligible(String planId, int limit) {
+        return route(planId).fetchEligible(planId, limit);
+    }
+
+    @Override
+    public List<CompactNode> fetchEligibleCompact(String planId, int limit) {
+        return route(planId).fetchEligibleCompact(planId, limit);
+    }
+
+    @Override
+    public boolean updateStatus(Node node) {
+        return route(node.getPlanId()).updateStatus(node);
+    }
+
+    /**
+     * Claims from one shard after the other until limit nodes are leased, the plans of a shard share one call.
+     */
+    @Override
+    public List<Node> claimReady(List<String> planIds, int limit, String owner, Duration lease) {
+        Map<Integer, List<String>> byShard = byShard(planIds);
+        List<Node> claimed = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> shardPlans : byShard.entrySet()) {
+            claimed.addAll(shards.get(shardPlans.getKey()).wrapper().claimReady(shardPlans.getValue(), limit - claimed.size(), owner, lease));
+            if (claimed.size() >= limit) {
+                break;
+            }
+        }
+        return claimed;
+    }
+
+    @Override
+    public int reportStatus(String owner, List<Node> nodes) {
+        Map<Integer, List<Node>> byShard = new LinkedHashMap<>();
+        nodes.forEach(node -> byShard.computeIfAbsent(shardOf(node.getPlanId()), shard -> new ArrayList<>()).add(node));
+        int reported = 0;
+        for (Map.Entry<Integer, List<Node>> shardNodes : byShard.entrySet()) {
+            reported += shards.get(shardNodes.getKey()).wrapper().reportStatus(owner, shardNodes.getValue());
+        }
+        return reported;
+    }
+
+    @Override
+    public Map<String, PlanProgress> getPlanProgress(List<String> planIds) {
+        Map<String, PlanProgress> progress = new LinkedHashMap<>();
+        byShard(planIds).forEach((shard, shardPlans) -> progress.putAll(shards.get(shard).wrapper().getPlanProgress(shardPlans)));
+        return progress;
+    }
+
+    @Override
+    public Map<String, PlanProgress> aggregatePlanProgress(List<String> planIds) {
+        Map<String, PlanProgress> progress = new LinkedHashMap<>();
+        byShard(planIds).forEach((shard, shardPlans) -> progress.putAll(shards.get(shard).wrapper().aggregatePlanProgress(shardPlans)));
+        return progress;
+    }
+
+    private Map<Integer, List<String>> byShard(List<String> planIds) {
+        Map<Integer, List<String>> byShard = new LinkedHashMap<>();
+        planIds.forEach(planId -> byShard.computeIfAbsent(shardOf(planId), shard -> new ArrayList<>()).add(planId));
+        return byShard;
+    }
+
+    private DBWrapper route(String planId) {
+        return shards.get(shardOf(planId)).wrapper();
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            try {
+                shard.resource().close();
+            } catch (Exception e) {
+                log.warn("Failed to close shard {}", shard.endpoint(), e);
+            }
+        }
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes followed by the MurmurHash3 finalizer, stable across JVMs unlike
+     * String.hashCode and spread well enough for the short, similar keys of the ring.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * @param resource closes the shard's driver and connection pool
+     */
+    public record Shard(String endpoint, DBWrapper wrapper, AutoCloseable resource) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.daiichi;
+
+import com.daiichi.results.RunResults;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+/**
+ * Logs where startup went before the first harness runs: JVM start to a started context, the context refresh,
+ * every backend's bootstrap and the slowest bean instantiations, and adds the totals to the run's results. Bean
+ * timings need the BufferingApplicationStartup that main installs, durations include the beans a bean pulled in.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class StartupReport {
+
+    private final BackendBootstrap bootstrap;
+    private final ApplicationStartup applicationStartup;
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationStartedEvent.class)
+    public void report(ApplicationStartedEvent event) {
+        Map<String, Long> startupMs = new LinkedHashMap<>();
+        startupMs.put("jvm", ManagementFactory.getRuntimeMXBean().getUptime());
+        startupMs.put("context", millis(event.getTimeTaken()));
+        startupMs.put("bootstrap", millis(bootstrap.wallClock()));
+        bootstrap.durations().forEach((backend, duration) -> startupMs.put("bootstrap." + backend, millis(duration)));
+        log.info("Started in {} ms since JVM start, context {} ms, backend bootstrap {} ms {}", startupMs.get("jvm"),
+            startupMs.get("context"), startupMs.get("bootstrap"), bootstrap.durations());
+        logSlowestBeans();
+        runResults.recordStartup(startupMs);
+
+        if (properties.getStartup().isExitAfterStartup()) {
+            log.info("Exiting after startup as benchmark.startup.exit-after-startup is set");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    private void logSlowestBeans() {
+        if (!(applicationStartup instanceof BufferingApplicationStartup buffering)) {
+            return;
+        }
+        StringBuilder slowest = new StringBuilder();
+        buffering.getBufferedTimeline().getEvents().stream()
+            .filter(step -> step.getStartupStep().getName().equals("spring.beans.instantiate"))
+            .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+            .limit(properties.getStartup().getSlowestBeans())
+            .forEach(step -> slowest.append("\n  %6d ms %s".formatted(millis(step.getDuration()), beanName(step))));
+        log.info("Slowest bean instantiations:{}", slowest);
+    }
+
+    private static String beanName(StartupTimeline.TimelineEvent step) {
+        return StreamSupport.stream(step.getStartupStep().getTags().spliterator(), false)
+            .filter(tag -> tag.getKey().equals("beanName"))
+            .map(StartupStep.Tag::getValue)
+            .findFirst()
+            .orElse("?");
+    }
+
+    private static long millis(Duration duration) {
+        return duration.toMillis();
+    }
+}
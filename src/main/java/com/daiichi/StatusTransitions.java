@@ -0,0 +1,34 @@
+package com.daiichi;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Seeded source of the Completed/Error outcome of a Running node. Each plan draws from its own stream, seeded from
+ * the workload seed and the plan id, so the outcomes of a plan don't depend on how workers on other plans
+ * interleave. A fetchAndUpdate draws once per call, before it looks for a node and outside any retry, whether the
+ * transition is applied by the client or by the server, so both update modes see the same sequence of outcomes
+ * per plan for the same seed.
+ */
+@Component
+public class StatusTransitions {
+    private final long seed;
+    private final Map<String, SplittableRandom> streams = new ConcurrentHashMap<>();
+
+    public StatusTransitions(BenchmarkProperties properties) {
+        this.seed = properties.getWorkload().getSeed();
+    }
+
+    /**
+     * @return whether the node of the plan, if it is Running, finishes as Completed rather than Error
+     */
+    public boolean nextCompletes(String planId) {
+        SplittableRandom stream = streams.computeIfAbsent(planId, key -> new SplittableRandom(seed * 31 + key.hashCode()));
+        synchronized (stream) {
+            return stream.nextBoolean();
+        }
+    }
+}
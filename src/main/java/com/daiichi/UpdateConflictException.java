@@ -0,0 +1,22 @@
+package com.daiichi;
+
+import lombok.Getter;
+
+import java.io.Serial;
+
+/**
+ * Thrown by a compare-and-set attempt whose write lost against a concurrent writer of the same node.
+ */
+@Getter
+class UpdateConflictException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // Round trips the failed attempt cost, all of them have to be spent again by the retry
+    private final int roundTrips;
+
+    UpdateConflictException(String target, int roundTrips) {
+        super(target + " was modified concurrently");
+        this.roundTrips = roundTrips;
+    }
+}
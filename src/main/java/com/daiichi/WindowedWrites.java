@@ -0,0 +1,101 @@
+package com.daiichi;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Sends the writes of a plan through an async driver with a bounded number of them in flight. The items are taken
+ * from an iterator only when a write slot frees up, so a large plan is neither held as a list of documents nor
+ * handed to the driver as one burst of requests.
+ */
+final class WindowedWrites {
+
+    private WindowedWrites() {
+    }
+
+    /**
+     * Writes every item with at most {@code window} writes in flight, the next item is written as soon as any
+     * earlier write completes.
+     *
+     * @return completes when every write completed, or exceptionally with the first failure, after which no more
+     * items are written
+     */
+    static <T> CompletableFuture<Void> send(Iterator<T> items, int window, Function<? super T, ? extends CompletableFuture<?>> write) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        int slots = Math.max(1, window);
+        AtomicInteger open = new AtomicInteger(slots);
+        for (int i = 0; i < slots; i++) {
+            next(items, write, open, done);
+        }
+        return done;
+    }
+
+    /**
+     * Writes items in one slot until a write is still in flight, which continues the slot when it completes. Writes
+     * that already completed are followed in the loop, so a fast driver doesn't deepen the stack. The continuation
+     * runs off the driver's thread, a driver blocks a submission while its connections are busy and must not block
+     * the thread that frees them.
+     */
+    private static <T> void next(Iterator<T> items, Function<? super T, ? extends CompletableFuture<?>> write, AtomicInteger open,
+                                 CompletableFuture<Void> done) {
+        while (!done.isDone()) {
+            T item;
+            synchronized (items) {
+                if (!items.hasNext()) {
+                    break;
+                }
+                item = items.next();
+            }
+            CompletableFuture<?> future;
+            try {
+                future = write.apply(item);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                future.whenCompleteAsync((result, error) -> {
+                    if (error != null) {
+                        done.completeExceptionally(error);
+                    } else {
+                        next(items, write, open, done);
+                    }
+                });
+                return;
+            }
+        }
+        if (open.decrementAndGet() == 0) {
+            done.complete(null);
+        }
+    }
+
+    /**
+     * @return the items in lists of up to {@code size}, each list is filled when it is taken
+     */
+    static <T> Iterator<List<T>> chunks(Iterator<T> items, int size) {
+        int chunkSize = Math.max(1, size);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!items.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<T> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && items.hasNext()) {
+                    chunk.add(items.next());
+                }
+                return chunk;
+            }
+        };
+    }
+}
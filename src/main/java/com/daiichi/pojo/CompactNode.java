@@ -0,0 +1,111 @@
+package com.daiichi.pojo;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Heap-lean counterpart of {@link Node} for clients that hold many nodes at once. Ids are kept as the two longs of
+ * their UUID instead of 36 character strings, planId and leaseOwner are canonicalized so the nodes of a plan share
+ * one instance, and status is the ordinal byte that {@link #progressStatus} rewrites in place. A root has no parent
+ * bits. Like the nodes the backends read back, extra parents of a DAG node aren't kept.
+ */
+@Getter
+public final class CompactNode {
+    private static final Node.Status[] STATUSES = Node.Status.values();
+    // Direct-mapped, a colliding string evicts the previous one. Bounded unlike String#intern and without its native lookup
+    private static final String[] CANONICAL = new String[4096];
+
+    private final long idHigh;
+    private final long idLow;
+    private final String planId;
+    private final String data;
+    private final boolean root;
+    private final long parentHigh;
+    private final long parentLow;
+    @Getter(AccessLevel.NONE)
+    private byte status;
+    private String leaseOwner;
+    private long leaseExpiresAt;
+
+    public CompactNode(String id, String planId, String data, Node.Status status, String parentId, String leaseOwner, long leaseExpiresAt) {
+        this.idHigh = NodeIds.high(id);
+        this.idLow = NodeIds.low(id);
+        this.planId = canonical(planId);
+        this.data = data;
+        this.root = parentId == null;
+        this.parentHigh = root ? 0 : NodeIds.high(parentId);
+        this.parentLow = root ? 0 : NodeIds.low(parentId);
+        this.status = (byte) status.ordinal();
+        this.leaseOwner = canonical(leaseOwner);
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public static CompactNode of(Node node) {
+        return new CompactNode(node.getId(), node.getPlanId(), node.getData(), node.getStatus(), node.getParentId(),
+            node.getLeaseOwner(), node.getLeaseExpiresAt());
+    }
+
+    public String id() {
+        return NodeIds.format(idHigh, idLow);
+    }
+
+    public String parentId() {
+        return root ? null : NodeIds.format(parentHigh, parentLow);
+    }
+
+    public Node.Status status() {
+        return STATUSES[status];
+    }
+
+    /**
+     * Same transition as {@link Node#progressStatus}, without allocating.
+     */
+    public void progressStatus(boolean completes) {
+        status = (byte) STATUSES[status].next(completes).ordinal();
+    }
+
+    public void setStatus(Node.Status status) {
+        this.status = (byte) status.ordinal();
+    }
+
+    public void lease(String owner, long expiresAt) {
+        leaseOwner = canonical(owner);
+        leaseExpiresAt = expiresAt;
+    }
+
+    public boolean hasId(String id) {
+        return NodeIds.matches(id, idHigh, idLow);
+    }
+
+    /**
+     * @return a Node with the same values, ids formatted back to text
+     */
+    public Node toNode() {
+        return Node.builder()
+            .id(id())
+            .planId(planId)
+            .data(data)
+            .status(status())
+            .parentId(parentId())
+            .leaseOwner(leaseOwner)
+            .leaseExpiresAt(leaseExpiresAt)
+            .build();
+    }
+
+    /**
+     * @return an equal string already held by other nodes, or value itself. Races only cost sharing, any slot
+     * holds some complete string.
+     */
+    private static String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        int slot = value.hashCode() & (CANONICAL.length - 1);
+        String held = CANONICAL[slot];
+        if (value.equals(held)) {
+            return held;
+        }
+        CANONICAL[slot] = value;
+        return value;
+    }
+}
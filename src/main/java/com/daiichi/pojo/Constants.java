@@ -7,5 +7,9 @@ public interface Constants {
     String EXECUTION_PLAN_NODE_CLASS = "PLAN_NODE";
     String EXECUTION_PLAN_DEPENDS_CLASS = "DEPENDS_ON";
     String EXECUTION_PLAN_GRAPH_CLASS = "PLAN_GRAPH";
+    // Status counters of a plan, one record per plan
+    String EXECUTION_PLAN_PROGRESS_CLASS = "PLAN_PROGRESS";
     String EXECUTION_PLAN_ROOT_NODE = "Root Node for %s";
+    // Data of the generated node at an index after the root, then the plan id
+    String EXECUTION_PLAN_NODE = "Node %d of %s";
 }
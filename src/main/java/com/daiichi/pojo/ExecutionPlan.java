@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Data
 @Builder
@@ -14,4 +16,15 @@ import java.util.List;
 public class ExecutionPlan {
     private String id;
     private List<Node> graph;
+    // Generates the nodes parents first on every call, used instead of graph for plans too large to hold on the heap
+    private Supplier<Stream<Node>> nodeSource;
+    private int size;
+
+    public Stream<Node> nodes() {
+        return graph != null ? graph.stream() : nodeSource.get();
+    }
+
+    public int nodeCount() {
+        return graph != null ? graph.size() : size;
+    }
 }
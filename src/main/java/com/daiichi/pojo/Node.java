@@ -5,10 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
-import java.util.Random;
+import java.util.List;
+import java.util.stream.Stream;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @RequiredArgsConstructor
 @AllArgsConstructor
 public class Node {
@@ -18,18 +19,34 @@ public class Node {
     @Builder.Default
     private Node.Status status = Node.Status.Pending;
     private final String parentId;
+    // Further dependencies of DAG plans, a node only has parentId in a tree
+    @Builder.Default
+    private List<String> extraParentIds = List.of();
+    // Executor holding the node while it is Running under a lease, null when the node isn't leased
+    private String leaseOwner;
+    // Epoch millis after which the lease may be reclaimed by another owner, 0 when the node isn't leased
+    private long leaseExpiresAt;
 
-    public void progressStatus() {
-        if (status == Node.Status.Pending)
-            status = Node.Status.Running;
-        else if (status == Node.Status.Running) {
-            status = new Random().nextInt(2) == 0 ? Node.Status.Completed : Node.Status.Error;
-        } else if (status == Node.Status.Error) {
-            status = Node.Status.Completed;
-        }
+    public Stream<String> parentIds() {
+        return parentId == null ? Stream.empty() : Stream.concat(Stream.of(parentId), extraParentIds.stream());
+    }
+
+    public void progressStatus(boolean completes) {
+        status = status.next(completes);
     }
 
     public enum Status {
-        Pending, Running, Completed, Error
+        Pending, Running, Completed, Error;
+
+        /**
+         * @param completes whether a Running node finishes as Completed rather than Error
+         */
+        public Status next(boolean completes) {
+            return switch (this) {
+                case Pending -> Running;
+                case Running -> completes ? Completed : Error;
+                case Error, Completed -> Completed;
+            };
+        }
     }
 }
@@ -0,0 +1,55 @@
+package com.daiichi.pojo;
+
+import java.util.UUID;
+
+/**
+ * Node ids are UUIDs in their 36 character text form, these convert between that form and the 128 bits of the
+ * UUID held as two longs without allocating, unlike {@link UUID#fromString}.
+ */
+public final class NodeIds {
+
+    private NodeIds() {
+    }
+
+    /**
+     * @return the most significant 64 bits of the UUID
+     */
+    public static long high(CharSequence id) {
+        check(id);
+        return hex(id, 0, 8) << 32 | hex(id, 9, 13) << 16 | hex(id, 14, 18);
+    }
+
+    /**
+     * @return the least significant 64 bits of the UUID
+     */
+    public static long low(CharSequence id) {
+        check(id);
+        return hex(id, 19, 23) << 48 | hex(id, 24, 36);
+    }
+
+    public static String format(long high, long low) {
+        return new UUID(high, low).toString();
+    }
+
+    public static boolean matches(CharSequence id, long high, long low) {
+        return high(id) == high && low(id) == low;
+    }
+
+    private static void check(CharSequence id) {
+        if (id.length() != 36 || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            throw new IllegalArgumentException("Node id " + id + " isn't a UUID");
+        }
+    }
+
+    private static long hex(CharSequence id, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(id.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Node id " + id + " isn't a UUID");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,52 @@
+package com.daiichi.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Number of nodes of a plan in each status. Backends keep it as a counter record per plan, updated in the same
+ * atomic step as every status write, so reading it doesn't scan the plan.
+ */
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+public class PlanProgress {
+    private final String planId;
+    private final long pending;
+    private final long running;
+    private final long completed;
+    private final long error;
+
+    /**
+     * @param counts nodes by status ordinal
+     */
+    public static PlanProgress of(String planId, long[] counts) {
+        return new PlanProgress(planId, counts[Node.Status.Pending.ordinal()], counts[Node.Status.Running.ordinal()],
+            counts[Node.Status.Completed.ordinal()], counts[Node.Status.Error.ordinal()]);
+    }
+
+    /**
+     * @return name of the counter of the status in the backends' plan summary records
+     */
+    public static String counter(Node.Status status) {
+        return status.name().toLowerCase();
+    }
+
+    public long count(Node.Status status) {
+        return switch (status) {
+            case Pending -> pending;
+            case Running -> running;
+            case Completed -> completed;
+            case Error -> error;
+        };
+    }
+
+    public long total() {
+        return pending + running + completed + error;
+    }
+
+    public boolean isFinished() {
+        return total() > 0 && completed == total();
+    }
+}
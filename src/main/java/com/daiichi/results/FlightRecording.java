@@ -0,0 +1,73 @@
+package com.daiichi.results;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.OperationEvent;
+import com.daiichi.RoundTripEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder recording of the whole run, started with the context so it covers every harness, and dumped
+ * by {@link RunResults} next to the result files. Next to the chosen settings it always records the benchmark's
+ * {@link OperationEvent} and {@link RoundTripEvent} and the GC pauses, safepoints, thread parks and monitor waits
+ * {@link FlightRecordingAnalysis} correlates them with.
+ */
+@Slf4j
+@Component
+public class FlightRecording implements DisposableBean {
+    // Correlated with the operations regardless of the chosen settings
+    private static final List<String> THRESHOLD_EVENTS = List.of("jdk.SafepointBegin", "jdk.ThreadPark", "jdk.JavaMonitorEnter");
+
+    private final Recording recording;
+
+    public FlightRecording(BenchmarkProperties properties) throws IOException, ParseException {
+        BenchmarkProperties.Results results = properties.getResults();
+        if (!results.isFlightRecording()) {
+            recording = null;
+            return;
+        }
+        if (!FlightRecorder.isAvailable()) {
+            log.warn("JDK Flight Recorder isn't available in this JVM, the run isn't recorded");
+            recording = null;
+            return;
+        }
+        recording = new Recording(Configuration.getConfiguration(results.getFlightRecordingSettings()));
+        recording.setName("graph-benchmark");
+        recording.setToDisk(true);
+        recording.enable(OperationEvent.class).withoutThreshold();
+        recording.enable(RoundTripEvent.class).withoutThreshold();
+        recording.enable("jdk.GCPhasePause").withoutThreshold();
+        Duration threshold = results.getFlightRecordingThreshold();
+        THRESHOLD_EVENTS.forEach(event -> recording.enable(event).withThreshold(threshold));
+        recording.start();
+        log.info("Flight recording started with {} settings", results.getFlightRecordingSettings());
+    }
+
+    /**
+     * Writes what was recorded so far, the recording keeps running.
+     */
+    void dump(Path file) throws IOException {
+        if (recording == null) {
+            return;
+        }
+        recording.dump(file);
+        log.info("Wrote flight recording to {}, analyze it with: analyze {}", file.toAbsolutePath(), file);
+    }
+
+    @Override
+    public void destroy() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
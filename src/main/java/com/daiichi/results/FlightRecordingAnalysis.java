@@ -0,0 +1,267 @@
+package com.daiichi.results;
+
+import com.daiichi.OperationEvent;
+import com.daiichi.RoundTripEvent;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Explains the slow operations of a {@link FlightRecording}. Every {@link OperationEvent} above the threshold is
+ * split into the time the JVM was paused for GC, the time spent in other safepoints, the time its thread spent in
+ * driver round trips ({@link RoundTripEvent}), the time the thread was parked or waiting for a monitor outside of
+ * them, and what remains, which is client CPU. The largest share names the cause. Round trip time is counted net of
+ * pauses, what remains of it was spent waiting for the server or the network.
+ * <p>
+ * Usage: {@code analyze [--percentile=99] [--slow-ms=N] [--top=20] run.jfr}. Without {@code --slow-ms} an
+ * operation is slow when it is above the percentile of its backend and operation.
+ */
+@Slf4j
+public final class FlightRecordingAnalysis {
+    private static final String GC_PAUSE = "jdk.GCPhasePause";
+    private static final String SAFEPOINT = "jdk.SafepointBegin";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+
+    private final List<Operation> operations = new ArrayList<>();
+    private final Intervals gcPauses = new Intervals();
+    private final Intervals safepoints = new Intervals();
+    private final Map<Long, Intervals> roundTrips = new HashMap<>();
+    private final Map<Long, Intervals> blocked = new HashMap<>();
+
+    private FlightRecordingAnalysis() {
+    }
+
+    public static int run(String[] args) throws IOException {
+        double percentile = 99;
+        double slowMs = -1;
+        int top = 20;
+        Path file = null;
+        for (String arg : args) {
+            if (arg.startsWith("--percentile=")) {
+                percentile = Double.parseDouble(arg.substring("--percentile=".length()));
+            } else if (arg.startsWith("--slow-ms=")) {
+                slowMs = Double.parseDouble(arg.substring("--slow-ms=".length()));
+            } else if (arg.startsWith("--top=")) {
+                top = Integer.parseInt(arg.substring("--top=".length()));
+            } else {
+                file = Path.of(arg);
+            }
+        }
+        if (file == null) {
+            log.error("Usage: analyze [--percentile=99] [--slow-ms=N] [--top=20] run.jfr");
+            return 2;
+        }
+
+        FlightRecordingAnalysis analysis = new FlightRecordingAnalysis();
+        analysis.read(file);
+        if (analysis.operations.isEmpty()) {
+            log.warn("{} has no {} events, was it recorded by a benchmark run?", file, OperationEvent.NAME);
+            return 0;
+        }
+        analysis.report(percentile, slowMs, top);
+        return 0;
+    }
+
+    private void read(Path file) throws IOException {
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                long start = nanos(event.getStartTime());
+                long end = nanos(event.getEndTime());
+                switch (event.getEventType().getName()) {
+                    case OperationEvent.NAME -> operations.add(new Operation(start, end, threadId(event), threadName(event),
+                        event.getString("backend"), event.getString("operation"), event.getString("mode"), event.getString("planId"),
+                        event.getInt("nodeCount"), event.getString("outcome")));
+                    case RoundTripEvent.NAME -> roundTrips.computeIfAbsent(threadId(event), thread -> new Intervals()).add(start, end);
+                    case GC_PAUSE -> gcPauses.add(start, end);
+                    case SAFEPOINT -> safepoints.add(start, end);
+                    case THREAD_PARK, MONITOR_ENTER -> blocked.computeIfAbsent(threadId(event), thread -> new Intervals()).add(start, end);
+                    default -> {
+                    }
+                }
+            }
+        }
+        gcPauses.merge();
+        safepoints.merge();
+        roundTrips.values().forEach(Intervals::merge);
+        blocked.values().forEach(Intervals::merge);
+        log.info("Read {} operations, {} GC pauses, {} safepoints from {}", operations.size(), gcPauses.size(), safepoints.size(), file);
+    }
+
+    private void report(double percentile, double slowMs, int top) {
+        Map<String, List<Operation>> groups = operations.stream()
+            .collect(Collectors.groupingBy(operation -> operation.backend() + " " + operation.operation(), TreeMap::new, Collectors.toList()));
+        List<Breakdown> slow = new ArrayList<>();
+        for (Map.Entry<String, List<Operation>> group : groups.entrySet()) {
+            long threshold = slowMs >= 0 ? (long) (slowMs * 1_000_000) : percentile(group.getValue(), percentile);
+            List<Breakdown> slowOfGroup = group.getValue().stream()
+                .filter(operation -> operation.duration() > threshold)
+                .map(this::breakdown)
+                .toList();
+            Map<String, Long> causes = slowOfGroup.stream()
+                .collect(Collectors.groupingBy(Breakdown::cause, LinkedHashMap::new, Collectors.counting()));
+            log.info("{}: {} of {} operations above {} ms, causes {}", group.getKey(), slowOfGroup.size(), group.getValue().size(),
+                "%.3f".formatted(threshold / 1_000_000.0), causes);
+            slow.addAll(slowOfGroup);
+        }
+        slow.sort(Comparator.comparingLong((Breakdown breakdown) -> breakdown.operation().duration()).reversed());
+        log.info("Slowest {} operations, ms of gc / safepoint / round trips / blocked / client", Math.min(top, slow.size()));
+        slow.stream().limit(top).forEach(breakdown -> log.info(breakdown.describe()));
+    }
+
+    private Breakdown breakdown(Operation operation) {
+        long from = operation.start();
+        long to = operation.end();
+        long gc = gcPauses.overlap(from, to);
+        // GC pauses are safepoints too
+        long safepoint = Math.max(0, safepoints.overlap(from, to) - gc);
+        Intervals threadRoundTrips = roundTrips.getOrDefault(operation.threadId(), new Intervals());
+        long roundTrip = Math.max(0, threadRoundTrips.overlap(from, to) - gc - safepoint);
+        // Parks inside a round trip are the driver waiting for its response, they count as round trip time
+        long blockedOutside = 0;
+        for (long[] park : blocked.getOrDefault(operation.threadId(), new Intervals()).clip(from, to)) {
+            blockedOutside += park[1] - park[0] - threadRoundTrips.overlap(park[0], park[1]);
+        }
+        long client = Math.max(0, operation.duration() - gc - safepoint - roundTrip - blockedOutside);
+        return new Breakdown(operation, gc, safepoint, roundTrip, blockedOutside, client);
+    }
+
+    private static long percentile(List<Operation> operations, double percentile) {
+        long[] durations = operations.stream().mapToLong(Operation::duration).sorted().toArray();
+        int rank = (int) Math.ceil(percentile / 100 * durations.length) - 1;
+        return durations[Math.max(0, Math.min(durations.length - 1, rank))];
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static long threadId(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        return thread == null ? -1 : thread.getJavaThreadId();
+    }
+
+    private static String threadName(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        return thread == null ? "?" : thread.getJavaName();
+    }
+
+    private record Operation(long start, long end, long threadId, String thread, String backend, String operation, String mode,
+                             String planId, int nodeCount, String outcome) {
+        long duration() {
+            return end - start;
+        }
+    }
+
+    private record Breakdown(Operation operation, long gc, long safepoint, long roundTrip, long blocked, long client) {
+        String cause() {
+            long[] shares = {gc, safepoint, roundTrip, blocked, client};
+            String[] causes = {"gc", "safepoint", "server or network", "client thread blocked", "client cpu"};
+            int largest = 0;
+            for (int i = 1; i < shares.length; i++) {
+                largest = shares[i] > shares[largest] ? i : largest;
+            }
+            return causes[largest];
+        }
+
+        String describe() {
+            return "%s %s (%s) plan %s, %d nodes, %s: %.3f ms on %s = %.3f / %.3f / %.3f / %.3f / %.3f -> %s".formatted(
+                operation.backend(), operation.operation(), operation.mode(), Objects.requireNonNullElse(operation.planId(), "-"), operation.nodeCount(),
+                operation.outcome(), operation.duration() / 1_000_000.0, operation.thread(), gc / 1_000_000.0,
+                safepoint / 1_000_000.0, roundTrip / 1_000_000.0, blocked / 1_000_000.0, client / 1_000_000.0, cause());
+        }
+    }
+
+    /**
+     * Time intervals in epoch nanos, merged into disjoint ones ordered by start so ends are ordered too.
+     */
+    private static final class Intervals {
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int size;
+
+        void add(long start, long end) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void merge() {
+            Integer[] order = new Integer[size];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparingLong(i -> starts[i]));
+            long[] mergedStarts = new long[Math.max(1, size)];
+            long[] mergedEnds = new long[Math.max(1, size)];
+            int merged = 0;
+            for (int i : order) {
+                if (merged > 0 && starts[i] <= mergedEnds[merged - 1]) {
+                    mergedEnds[merged - 1] = Math.max(mergedEnds[merged - 1], ends[i]);
+                } else {
+                    mergedStarts[merged] = starts[i];
+                    mergedEnds[merged] = ends[i];
+                    merged++;
+                }
+            }
+            starts = mergedStarts;
+            ends = mergedEnds;
+            size = merged;
+        }
+
+        long overlap(long from, long to) {
+            long overlap = 0;
+            for (long[] interval : clip(from, to)) {
+                overlap += interval[1] - interval[0];
+            }
+            return overlap;
+        }
+
+        /**
+         * @return the parts of the intervals that fall within from and to
+         */
+        List<long[]> clip(long from, long to) {
+            List<long[]> clipped = new ArrayList<>();
+            for (int i = firstEndingAfter(from); i < size && starts[i] < to; i++) {
+                clipped.add(new long[]{Math.max(from, starts[i]), Math.min(to, ends[i])});
+            }
+            return clipped;
+        }
+
+        private int firstEndingAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ends[middle] <= time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
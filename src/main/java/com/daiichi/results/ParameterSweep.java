@@ -0,0 +1,186 @@
+package com.daiichi.results;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.GraphBenchmarkApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the load driver once per combination of a backend's settings matrix, every run in a Spring context of its
+ * own so drivers and pools are built from scratch with the combination's properties. Each run writes its
+ * {@link RunResults} files to a directory of its own. The sweep then collects them into one CSV of throughput and
+ * latency per combination and worker count, and writes the best combination of every backend to best.properties.
+ * <p>
+ * Usage: {@code sweep [--benchmark.*=...]...}, arguments other than the sweep's own are passed to every run.
+ */
+@Slf4j
+public final class ParameterSweep {
+    private static final String HEADER = "backend,run,settings,step,operation,count,throughput,p50Ms,p99Ms,p999Ms";
+    // Harnesses other than the load driver are switched off, their results would mix with the sweep's
+    private static final Map<String, String> RUN_OVERRIDES = Map.of(
+        "benchmark.use-case-one.enabled", "false",
+        "benchmark.scaling.enabled", "false",
+        "benchmark.oracle.enabled", "false",
+        "benchmark.sharding.enabled", "false",
+        "benchmark.replay.enabled", "false",
+        "benchmark.claim.enabled", "false",
+        "benchmark.progress.enabled", "false",
+        "benchmark.load.enabled", "true");
+
+    private final String[] args;
+    private final BenchmarkProperties.Sweep sweep;
+
+    private ParameterSweep(String[] args, BenchmarkProperties.Sweep sweep) {
+        this.args = args;
+        this.sweep = sweep;
+    }
+
+    public static int run(String[] args) throws IOException {
+        // Bound the same way a run binds them, without starting a context or touching a database
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        BenchmarkProperties properties = Binder.get(environment).bind("benchmark", BenchmarkProperties.class).orElseGet(BenchmarkProperties::new);
+        return new ParameterSweep(args, properties.getSweep()).execute();
+    }
+
+    private int execute() throws IOException {
+        Path directory = Path.of(sweep.getDirectory());
+        Files.createDirectories(directory);
+        Map<DBWrapper.DB, Best> best = new LinkedHashMap<>();
+        int failed = 0;
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(directory.resolve("sweep.csv")))) {
+            writer.println(HEADER);
+            for (DBWrapper.DB db : sweep.getBackends()) {
+                List<Map<String, String>> combinations = combinations(sweep.getMatrix().getOrDefault(db, Map.of()));
+                log.info("Sweep: {} combinations for {}", combinations.size(), db);
+                for (int run = 0; run < combinations.size(); run++) {
+                    Map<String, String> settings = combinations.get(run);
+                    Path runDirectory = directory.resolve(db.name()).resolve("run-" + run);
+                    Optional<RunResult> result = runOnce(db, settings, runDirectory);
+                    if (result.isEmpty()) {
+                        failed++;
+                        continue;
+                    }
+                    for (RunResult.OperationResult operation : result.get().getOperations()) {
+                        writer.println("%s,%d,%s,%s,%s,%d,%.1f,%.3f,%.3f,%.3f".formatted(db, run, describe(settings), operation.getStep(),
+                            operation.getOperation(), operation.getCount(), operation.getThroughput(), operation.getP50Ms(),
+                            operation.getP99Ms(), operation.getP999Ms()));
+                        if (operation.getOperation().equals(sweep.getRankBy())
+                            && (!best.containsKey(db) || operation.getThroughput() > best.get(db).operation().getThroughput())) {
+                            best.put(db, new Best(settings, operation));
+                        }
+                    }
+                    writer.flush();
+                }
+            }
+        }
+        writeBest(directory.resolve("best.properties"), best);
+        log.info("Sweep complete, {} runs failed, results in {}", failed, directory.toAbsolutePath());
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * @return the result file of the run, empty when the context failed or the run recorded nothing
+     */
+    private Optional<RunResult> runOnce(DBWrapper.DB db, Map<String, String> settings, Path runDirectory) throws IOException {
+        Map<String, String> overrides = new LinkedHashMap<>(RUN_OVERRIDES);
+        // Only the swept backend is bootstrapped, the servers of the others don't have to be up
+        overrides.put("benchmark.backends", db.name());
+        overrides.put("benchmark.load.backends", db.name());
+        overrides.put("benchmark.results.directory", runDirectory.toString());
+        settings.forEach((property, value) -> overrides.put("benchmark." + property, value));
+        log.info("Sweep: {} with {}", db, describe(settings));
+        try {
+            new SpringApplicationBuilder(GraphBenchmarkApplication.class)
+                .applicationStartup(new BufferingApplicationStartup(GraphBenchmarkApplication.STARTUP_STEPS))
+                .run(runArgs(overrides))
+                .close();
+        } catch (RuntimeException e) {
+            log.error("Sweep: run of {} with {} failed", db, describe(settings), e);
+            return Optional.empty();
+        }
+        if (!Files.isDirectory(runDirectory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(runDirectory)) {
+            Optional<Path> json = files.filter(file -> file.getFileName().toString().endsWith(".json")).max(Path::compareTo);
+            return json.isEmpty() ? Optional.empty() : Optional.of(RunResults.MAPPER.readValue(json.get().toFile(), RunResult.class));
+        }
+    }
+
+    /**
+     * The caller's arguments, minus the sweep's own and the ones the run overrides, followed by the overrides.
+     * Repeating an option would make Spring join both values into one.
+     */
+    private String[] runArgs(Map<String, String> overrides) {
+        List<String> runArgs = new ArrayList<>();
+        for (String arg : args) {
+            String name = arg.startsWith("--") ? arg.substring(2).split("=", 2)[0] : "";
+            if (!name.startsWith("benchmark.sweep.") && !overrides.containsKey(name)) {
+                runArgs.add(arg);
+            }
+        }
+        overrides.forEach((property, value) -> runArgs.add("--%s=%s".formatted(property, value)));
+        return runArgs.toArray(String[]::new);
+    }
+
+    private void writeBest(Path file, Map<DBWrapper.DB, Best> best) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            best.forEach((db, result) -> {
+                RunResult.OperationResult operation = result.operation();
+                log.info("Sweep: best {} {}, {} ops/s at {} workers, p99 {} ms", db, describe(result.settings()),
+                    "%.1f".formatted(operation.getThroughput()), operation.getStep(), "%.3f".formatted(operation.getP99Ms()));
+                writer.println("# %s: %s %.1f ops/s at %s workers, p99 %.3f ms".formatted(db, operation.getOperation(),
+                    operation.getThroughput(), operation.getStep(), operation.getP99Ms()));
+                result.settings().forEach((property, value) -> writer.println("benchmark.%s=%s".formatted(property, value)));
+            });
+        }
+    }
+
+    /**
+     * Cartesian product of the matrix, the last property varies fastest. An empty matrix is a single run at the
+     * configured settings.
+     */
+    static List<Map<String, String>> combinations(Map<String, List<String>> matrix) {
+        List<Map<String, String>> combinations = List.of(Map.of());
+        for (Map.Entry<String, List<String>> property : matrix.entrySet()) {
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : property.getValue()) {
+                    Map<String, String> extended = new LinkedHashMap<>(combination);
+                    extended.put(property.getKey(), value);
+                    next.add(extended);
+                }
+            }
+            combinations = next;
+        }
+        return combinations;
+    }
+
+    // Semicolons keep the settings in one CSV column
+    private static String describe(Map<String, String> settings) {
+        return settings.isEmpty() ? "defaults" : settings.entrySet().stream()
+            .map(setting -> setting.getKey() + "=" + setting.getValue())
+            .collect(Collectors.joining(";"));
+    }
+
+    private record Best(Map<String, String> settings, RunResult.OperationResult operation) {
+    }
+}
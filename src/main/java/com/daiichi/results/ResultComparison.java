@@ -0,0 +1,219 @@
+package com.daiichi.results;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the operations of result files written by {@link RunResults} against a baseline and flags the changes
+ * that are both statistically significant and larger than a minimum relative change.
+ * <p>
+ * Latency is compared on p50, p99 and the mean. The percentile intervals are distribution free, taken from the
+ * order statistics at ranks {@code n*q +/- z*sqrt(n*q*(1-q))} of the recorded histogram. The mean interval is
+ * {@code mean +/- z*stddev/sqrt(n)}. Throughput intervals come from the per window samples, or from one sample
+ * per file when several runs are given per side. With fewer than two samples on either side there is no throughput
+ * interval, the recorded throughput is shown without a verdict. A change is flagged only when the two intervals
+ * don't overlap.
+ * <p>
+ * Usage: {@code compare [--confidence=0.95] [--min-change=0.05] baseline.json[,repeat.json...] candidate.json[,repeat.json...]...}
+ * The exit status is 1 if any candidate regressed, so the command can gate driver upgrades and config changes.
+ */
+@Slf4j
+public final class ResultComparison {
+    private final double z;
+    private final double minChange;
+
+    ResultComparison(double confidence, double minChange) {
+        this.z = normalQuantile(1 - (1 - confidence) / 2);
+        this.minChange = minChange;
+    }
+
+    public static int run(String[] args) throws IOException {
+        double confidence = 0.95;
+        double minChange = 0.05;
+        List<List<RunResult>> runs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--confidence=")) {
+                confidence = Double.parseDouble(arg.substring("--confidence=".length()));
+            } else if (arg.startsWith("--min-change=")) {
+                minChange = Double.parseDouble(arg.substring("--min-change=".length()));
+            } else {
+                List<RunResult> repeats = new ArrayList<>();
+                for (String file : arg.split(",")) {
+                    repeats.add(RunResults.MAPPER.readValue(Path.of(file).toFile(), RunResult.class));
+                }
+                runs.add(repeats);
+            }
+        }
+        if (runs.size() < 2) {
+            log.error("Usage: compare [--confidence=0.95] [--min-change=0.05] baseline.json[,repeat.json...] candidate.json[,repeat.json...]...");
+            return 2;
+        }
+
+        ResultComparison comparison = new ResultComparison(confidence, minChange);
+        Map<String, Merged> baseline = merge(runs.get(0));
+        int regressions = 0;
+        for (int i = 1; i < runs.size(); i++) {
+            log.info("Comparing {} against baseline {} at {}% confidence, ignoring changes below {}%",
+                describe(runs.get(i)), describe(runs.get(0)), confidence * 100, minChange * 100);
+            regressions += comparison.compare(baseline, merge(runs.get(i)));
+        }
+        log.info("{} regressions", regressions);
+        return regressions > 0 ? 1 : 0;
+    }
+
+    /**
+     * @return number of regressed metrics
+     */
+    int compare(Map<String, Merged> baseline, Map<String, Merged> candidate) {
+        int regressions = 0;
+        for (Map.Entry<String, Merged> entry : candidate.entrySet()) {
+            Merged base = baseline.get(entry.getKey());
+            if (base == null) {
+                log.info("{}: not in baseline", entry.getKey());
+                continue;
+            }
+            Merged next = entry.getValue();
+            if (base.histogram.getTotalCount() == 0 || next.histogram.getTotalCount() == 0) {
+                log.info("{}: no samples to compare", entry.getKey());
+                continue;
+            }
+            List<String> changes = new ArrayList<>();
+            regressions += check(changes, "p50", percentile(base.histogram, 0.5), percentile(next.histogram, 0.5), true);
+            regressions += check(changes, "p99", percentile(base.histogram, 0.99), percentile(next.histogram, 0.99), true);
+            regressions += check(changes, "mean", mean(base.histogram), mean(next.histogram), true);
+            if (base.throughputSamples.size() < 2 || next.throughputSamples.size() < 2) {
+                changes.add("throughput %.3f -> %.3f (insufficient samples)".formatted(base.recordedThroughput(), next.recordedThroughput()));
+            } else {
+                regressions += check(changes, "throughput", throughput(base), throughput(next), false);
+            }
+            log.info("{}: {}", entry.getKey(), String.join(", ", changes));
+        }
+        baseline.keySet().stream()
+            .filter(key -> !candidate.containsKey(key))
+            .forEach(key -> log.info("{}: missing from candidate", key));
+        return regressions;
+    }
+
+    private int check(List<String> changes, String metric, Interval base, Interval next, boolean lowerIsBetter) {
+        double change = base.estimate == 0 ? 0 : (next.estimate - base.estimate) / base.estimate;
+        boolean significant = (next.low > base.high || next.high < base.low) && Math.abs(change) >= minChange;
+        boolean worse = lowerIsBetter ? change > 0 : change < 0;
+        String verdict = !significant ? "" : worse ? " REGRESSION" : " improved";
+        changes.add("%s %s -> %s (%+.1f%%)%s".formatted(metric, base, next, change * 100, verdict));
+        return significant && worse ? 1 : 0;
+    }
+
+    private Interval percentile(Histogram histogram, double quantile) {
+        long n = histogram.getTotalCount();
+        double halfWidth = z * Math.sqrt(n * quantile * (1 - quantile));
+        return new Interval(
+            millis(histogram.getValueAtPercentile(100.0 * quantile)),
+            millis(histogram.getValueAtPercentile(Math.max(0, 100.0 * (n * quantile - halfWidth) / n))),
+            millis(histogram.getValueAtPercentile(Math.min(100, 100.0 * (n * quantile + halfWidth) / n))));
+    }
+
+    private Interval mean(Histogram histogram) {
+        double halfWidth = z * histogram.getStdDeviation() / Math.sqrt(histogram.getTotalCount());
+        return new Interval(millis(histogram.getMean()), millis(histogram.getMean() - halfWidth), millis(histogram.getMean() + halfWidth));
+    }
+
+    private Interval throughput(Merged merged) {
+        List<Double> samples = merged.throughputSamples;
+        int n = samples.size();
+        double mean = samples.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double variance = samples.stream().mapToDouble(sample -> (sample - mean) * (sample - mean)).sum() / (n - 1);
+        double halfWidth = studentQuantile(n - 1) * Math.sqrt(variance / n);
+        return new Interval(mean, mean - halfWidth, mean + halfWidth);
+    }
+
+    private static Map<String, Merged> merge(List<RunResult> repeats) {
+        Map<String, Merged> merged = new LinkedHashMap<>();
+        for (RunResult run : repeats) {
+            for (RunResult.OperationResult operation : run.getOperations()) {
+                Merged target = merged.computeIfAbsent(operation.key(), key -> new Merged());
+                Histogram histogram = operation.decodeHistogram();
+                if (target.histogram == null) {
+                    target.histogram = histogram;
+                } else {
+                    target.histogram.add(histogram);
+                }
+                target.throughputs.add(operation.getThroughput());
+                // Repeated runs without windows contribute one sample each
+                if (operation.getThroughputSamples().isEmpty() && repeats.size() > 1) {
+                    target.throughputSamples.add(operation.getThroughput());
+                } else {
+                    target.throughputSamples.addAll(operation.getThroughputSamples());
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static String describe(List<RunResult> repeats) {
+        RunResult first = repeats.get(0);
+        return "%s%s (%s, %d runs)".formatted(first.getGitCommit(), first.isGitDirty() ? "-dirty" : "", first.getDrivers(), repeats.size());
+    }
+
+    /**
+     * Two sided Student t quantile for the configured confidence, Cornish-Fisher expansion around the normal one.
+     */
+    private double studentQuantile(int degreesOfFreedom) {
+        double df = degreesOfFreedom;
+        return z + (Math.pow(z, 3) + z) / (4 * df)
+            + (5 * Math.pow(z, 5) + 16 * Math.pow(z, 3) + 3 * z) / (96 * df * df)
+            + (3 * Math.pow(z, 7) + 19 * Math.pow(z, 5) + 17 * Math.pow(z, 3) - 15 * z) / (384 * df * df * df);
+    }
+
+    /**
+     * Inverse of the standard normal distribution, Acklam's rational approximation.
+     */
+    static double normalQuantile(double p) {
+        double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01};
+        double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00};
+        double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5]) / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+            / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    static final class Merged {
+        private Histogram histogram;
+        private final List<Double> throughputSamples = new ArrayList<>();
+        private final List<Double> throughputs = new ArrayList<>();
+
+        /**
+         * @return mean of the throughput recorded by each run
+         */
+        private double recordedThroughput() {
+            return throughputs.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        }
+    }
+
+    private record Interval(double estimate, double low, double high) {
+        @Override
+        public String toString() {
+            return "%.3f [%.3f, %.3f]".formatted(estimate, low, high);
+        }
+    }
+}
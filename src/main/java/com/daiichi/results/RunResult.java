@@ -0,0 +1,90 @@
+package com.daiichi.results;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * Everything one benchmark run measured, with enough of its environment to tell two runs apart. Serialized as
+ * the JSON result file, the latency histograms are kept in HdrHistogram's compressed encoding so a comparison
+ * can work on the full distribution rather than on the summary percentiles.
+ */
+@Data
+public class RunResult {
+    private String startedAt;
+    private String finishedAt;
+    private String gitCommit;
+    private boolean gitDirty;
+    private Map<String, String> drivers = new TreeMap<>();
+    private Jvm jvm = new Jvm();
+    // benchmark.* properties of the run without credentials
+    private JsonNode configuration;
+    private List<OperationResult> operations = new ArrayList<>();
+    // ms from JVM start and of the context refresh and backend bootstraps, see StartupReport
+    private Map<String, Long> startupMs = new LinkedHashMap<>();
+
+    @Data
+    public static class Jvm {
+        private String version;
+        private String vendor;
+        private List<String> inputArguments = new ArrayList<>();
+        private List<String> garbageCollectors = new ArrayList<>();
+        private long maxHeapBytes;
+        private int availableProcessors;
+    }
+
+    @Data
+    public static class OperationResult {
+        // UseCaseOne, LoadDriver or ScalingSuite
+        private String harness;
+        private String backend;
+        // Worker count or plan count and size, empty when the harness has no steps
+        private String step;
+        private String operation;
+        private long count;
+        private double meanMs;
+        private double stdDevMs;
+        private double p50Ms;
+        private double p90Ms;
+        private double p99Ms;
+        private double p999Ms;
+        private double maxMs;
+        // ops/sec over the whole phase, and per sampling window where the harness records them
+        private double throughput;
+        private List<Double> throughputSamples = new ArrayList<>();
+        private String histogram;
+
+        @JsonIgnore
+        public String key() {
+            return step.isEmpty()
+                ? "%s %s %s".formatted(harness, backend, operation)
+                : "%s %s %s %s".formatted(harness, backend, step, operation);
+        }
+
+        @JsonIgnore
+        public Histogram decodeHistogram() {
+            try {
+                return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(histogram)), 0);
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Corrupt histogram for " + key(), e);
+            }
+        }
+
+        static String encode(Histogram histogram) {
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+            return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+        }
+    }
+}
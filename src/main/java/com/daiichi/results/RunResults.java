@@ -0,0 +1,176 @@
+package com.daiichi.results;
+
+import com.daiichi.BenchmarkProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.boot.info.GitProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the histograms the harnesses record and writes them, together with the driver versions, JVM and GC
+ * settings, benchmark configuration and git commit of the run, to {@code benchmark.results.directory} once every
+ * harness has finished. The JSON file is the input of {@link ResultComparison}, the CSV next to it has one
+ * summary row per operation for spreadsheets. The {@link FlightRecording} of the run is dumped next to them, also
+ * for harnesses that record no histograms.
+ */
+@Slf4j
+@Component
+public class RunResults {
+    static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules()
+        .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS);
+    private static final String CSV_HEADER = "gitCommit,harness,backend,step,operation,count,meanMs,stdDevMs,p50Ms,p90Ms,p99Ms,p999Ms,maxMs,throughput";
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final BenchmarkProperties properties;
+    private final ObjectProvider<BuildProperties> buildProperties;
+    private final ObjectProvider<GitProperties> gitProperties;
+    private final FlightRecording flightRecording;
+    private final Instant startedAt = Instant.now();
+    private final List<RunResult.OperationResult> operations = new ArrayList<>();
+    private volatile Map<String, Long> startupMs = Map.of();
+
+    public RunResults(BenchmarkProperties properties, ObjectProvider<BuildProperties> buildProperties, ObjectProvider<GitProperties> gitProperties,
+                      FlightRecording flightRecording) {
+        this.properties = properties;
+        this.buildProperties = buildProperties;
+        this.gitProperties = gitProperties;
+        this.flightRecording = flightRecording;
+    }
+
+    /**
+     * Adds the steady-state histogram of one operation, for a single threaded loop pass the histogram's own
+     * throughput and no samples.
+     *
+     * @param throughputSamples ops/sec per sampling window, may be empty
+     */
+    public void record(String harness, String backend, String step, String operation, Histogram histogram,
+                       double throughput, List<Double> throughputSamples) {
+        RunResult.OperationResult result = new RunResult.OperationResult();
+        result.setHarness(harness);
+        result.setBackend(backend);
+        result.setStep(step);
+        result.setOperation(operation);
+        result.setCount(histogram.getTotalCount());
+        result.setMeanMs(histogram.getMean() / 1_000_000.0);
+        result.setStdDevMs(histogram.getStdDeviation() / 1_000_000.0);
+        result.setP50Ms(histogram.getValueAtPercentile(50) / 1_000_000.0);
+        result.setP90Ms(histogram.getValueAtPercentile(90) / 1_000_000.0);
+        result.setP99Ms(histogram.getValueAtPercentile(99) / 1_000_000.0);
+        result.setP999Ms(histogram.getValueAtPercentile(99.9) / 1_000_000.0);
+        result.setMaxMs(histogram.getMaxValue() / 1_000_000.0);
+        result.setThroughput(throughput);
+        result.setThroughputSamples(List.copyOf(throughputSamples));
+        result.setHistogram(RunResult.OperationResult.encode(histogram));
+        synchronized (operations) {
+            operations.add(result);
+        }
+    }
+
+    public void recordStartup(Map<String, Long> startupMs) {
+        this.startupMs = new LinkedHashMap<>(startupMs);
+    }
+
+    /**
+     * ops/sec of a loop that issued the recorded operations back to back on one thread.
+     */
+    public static double sequentialThroughput(Histogram histogram) {
+        return histogram.getTotalCount() == 0 ? 0 : 1_000_000_000.0 / histogram.getMean();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void write() throws IOException {
+        RunResult result = snapshot();
+        Path directory = Path.of(properties.getResults().getDirectory());
+        Files.createDirectories(directory);
+        String name = "run-%s-%s".formatted(FILE_TIMESTAMP.format(startedAt), result.getGitCommit());
+        flightRecording.dump(directory.resolve(name + ".jfr"));
+        if (result.getOperations().isEmpty()) {
+            return;
+        }
+        Path json = directory.resolve(name + ".json");
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(json.toFile(), result);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(directory.resolve(name + ".csv")))) {
+            writer.println(CSV_HEADER);
+            for (RunResult.OperationResult operation : result.getOperations()) {
+                writer.println("%s,%s,%s,%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.1f".formatted(result.getGitCommit(),
+                    operation.getHarness(), operation.getBackend(), operation.getStep(), operation.getOperation(),
+                    operation.getCount(), operation.getMeanMs(), operation.getStdDevMs(), operation.getP50Ms(),
+                    operation.getP90Ms(), operation.getP99Ms(), operation.getP999Ms(), operation.getMaxMs(),
+                    operation.getThroughput()));
+            }
+        }
+        log.info("Wrote results of {} operations to {}", result.getOperations().size(), json.toAbsolutePath());
+    }
+
+    private RunResult snapshot() {
+        RunResult result = new RunResult();
+        result.setStartedAt(startedAt.toString());
+        result.setFinishedAt(Instant.now().toString());
+        GitProperties git = gitProperties.getIfAvailable();
+        result.setGitCommit(git == null ? "unknown" : git.getShortCommitId());
+        result.setGitDirty(git != null && Boolean.parseBoolean(git.get("dirty")));
+        BuildProperties build = buildProperties.getIfAvailable();
+        if (build != null) {
+            build.forEach(entry -> {
+                if (entry.getKey().startsWith("driver.")) {
+                    result.getDrivers().put(entry.getKey().substring("driver.".length()), entry.getValue());
+                }
+            });
+        } else {
+            log.warn("No META-INF/build-info.properties on the classpath, build with Maven to record driver versions");
+        }
+
+        RunResult.Jvm jvm = result.getJvm();
+        jvm.setVersion(System.getProperty("java.vm.version"));
+        jvm.setVendor(System.getProperty("java.vm.vendor"));
+        jvm.setInputArguments(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        jvm.setGarbageCollectors(ManagementFactory.getGarbageCollectorMXBeans().stream().map(GarbageCollectorMXBean::getName).toList());
+        jvm.setMaxHeapBytes(Runtime.getRuntime().maxMemory());
+        jvm.setAvailableProcessors(Runtime.getRuntime().availableProcessors());
+
+        result.setConfiguration(withoutCredentials(MAPPER.valueToTree(properties)));
+        synchronized (operations) {
+            result.setOperations(List.copyOf(operations));
+        }
+        result.getStartupMs().putAll(startupMs);
+        return result;
+    }
+
+    private static JsonNode withoutCredentials(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (field.getKey().toLowerCase().contains("password")) {
+                    fields.remove();
+                } else {
+                    withoutCredentials(field.getValue());
+                }
+            }
+        }
+        return node;
+    }
+}
@@ -0,0 +1,175 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.StatusTransitions;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the plans of a step to completion the way executors would: every worker leases a batch of ready nodes with
+ * {@link DBWrapper#claimReady}, decides Completed or Error for each and reports the batch with
+ * {@link DBWrapper#reportStatus}. Error nodes are claimed again, so a plan only finishes once every node has
+ * Completed. Reports claimed nodes per second for every worker count, next to the latency of both calls.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.claim.enabled", havingValue = "true")
+class ClaimBenchmark {
+    // Pause of a worker whose claim came back empty, the nodes it waits for are still leased to other workers
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final DbWrapperProvider dbWrapperProvider;
+    private final WorkloadGenerator workloadGenerator;
+    private final StatusTransitions transitions;
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() {
+        BenchmarkProperties.Claim claim = properties.getClaim();
+        log.info("Starting claim benchmark with worker counts {}, {} nodes per claim", claim.getWorkerCounts(), claim.getBatchSize());
+        for (DBWrapper.DB db : properties.selected(claim.getBackends())) {
+            List<String> curve = new ArrayList<>();
+            for (int workers : claim.getWorkerCounts()) {
+                curve.add(runStep(db, workers));
+            }
+            log.info("{}: Claimed nodes/sec by worker count\n{}", db, String.join("\n", curve));
+            dbWrapperProvider.report(db);
+        }
+        log.info("Claim benchmark complete");
+    }
+
+    private String runStep(DBWrapper.DB db, int workers) {
+        BenchmarkProperties.Claim claim = properties.getClaim();
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(db);
+        String label = "%s x%d".formatted(db, workers);
+        List<ExecutionPlan> plans = workloadGenerator.plans("Claim %s-%d ".formatted(db, workers), claim.getPlans()).toList();
+        dbWrapper.createTrees(plans);
+        List<String> planIds = plans.stream().map(ExecutionPlan::getId).toList();
+        long nodes = plans.stream().mapToLong(ExecutionPlan::nodeCount).sum();
+
+        LatencyRecorder claimStats = new LatencyRecorder(label, "Claim", 0, 0);
+        LatencyRecorder reportStats = new LatencyRecorder(label, "Report", 0, 0);
+        Counters counters = new Counters();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        long start = System.nanoTime();
+        long deadline = start + claim.getDuration().toNanos();
+        try {
+            List<Future<?>> futures = IntStream.range(0, workers)
+                .<Future<?>>mapToObj(worker -> executor.submit(() ->
+                    work(dbWrapper, "%s-worker-%d".formatted(label, worker), planIds, nodes, deadline, claimStats, reportStats, counters)))
+                .toList();
+            await(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        double claimedPerSecond = counters.claimed.sum() / elapsedSeconds;
+        claimStats.report();
+        reportStats.report();
+        String step = "%d workers".formatted(workers);
+        runResults.record("ClaimBenchmark", db.name(), step, claimStats.getOperation(), claimStats.getHistogram(), claimedPerSecond, List.of());
+        runResults.record("ClaimBenchmark", db.name(), step, reportStats.getOperation(), reportStats.getHistogram(),
+            counters.reported.sum() / elapsedSeconds, List.of());
+        String row = "%s: %.1f claimed nodes/s, %d of %d nodes Completed in %.1f s, %d claims came back empty, %d reports lost their lease, %d nodes abandoned"
+            .formatted(label, claimedPerSecond, counters.completed.sum(), nodes, elapsedSeconds, counters.emptyClaims.sum(),
+                counters.lostLeases.sum(), counters.abandoned.sum());
+        log.info(row);
+        return row;
+    }
+
+    private void work(DBWrapper dbWrapper, String owner, List<String> planIds, long nodes, long deadline,
+                      LatencyRecorder claimStats, LatencyRecorder reportStats, Counters counters) {
+        BenchmarkProperties.Claim claim = properties.getClaim();
+        while (System.nanoTime() < deadline && counters.completed.sum() < nodes) {
+            List<String> claimPlans = pickPlans(planIds, claim.getPlansPerClaim());
+            long issued = System.nanoTime();
+            List<Node> claimed = dbWrapper.claimReady(claimPlans, claim.getBatchSize(), owner, claim.getLease());
+            claimStats.record(System.nanoTime() - issued);
+            if (claimed.isEmpty()) {
+                counters.emptyClaims.increment();
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            counters.claimed.add(claimed.size());
+
+            List<Node> finished = new ArrayList<>(claimed.size());
+            long completed = 0;
+            for (Node node : claimed) {
+                if (claim.getAbandonRate() > 0 && ThreadLocalRandom.current().nextDouble() < claim.getAbandonRate()) {
+                    counters.abandoned.increment();
+                    continue;
+                }
+                node.setStatus(transitions.nextCompletes(node.getPlanId()) ? Node.Status.Completed : Node.Status.Error);
+                completed += node.getStatus() == Node.Status.Completed ? 1 : 0;
+                finished.add(node);
+            }
+            if (finished.isEmpty()) {
+                continue;
+            }
+            issued = System.nanoTime();
+            int reported = dbWrapper.reportStatus(owner, finished);
+            reportStats.record(System.nanoTime() - issued);
+            counters.reported.add(reported);
+            counters.lostLeases.add(finished.size() - reported);
+            // A lost lease means another worker got the node, only count the reports that landed
+            counters.completed.add(reported == finished.size() ? completed : Math.min(completed, reported));
+        }
+    }
+
+    /**
+     * @return count distinct plans starting at a random one, all of them when there are fewer
+     */
+    private static List<String> pickPlans(List<String> planIds, int count) {
+        if (count >= planIds.size()) {
+            return planIds;
+        }
+        int first = ThreadLocalRandom.current().nextInt(planIds.size());
+        return IntStream.range(0, count).mapToObj(i -> planIds.get((first + i) % planIds.size())).toList();
+    }
+
+    private static void await(List<Future<?>> workers) {
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Claim benchmark interrupted", e);
+            } catch (ExecutionException e) {
+                log.error("Claim benchmark worker failed", e.getCause());
+            }
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder claimed = new LongAdder();
+        private final LongAdder reported = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder emptyClaims = new LongAdder();
+        private final LongAdder lostLeases = new LongAdder();
+        private final LongAdder abandoned = new LongAdder();
+    }
+}
@@ -0,0 +1,198 @@
+package com.daiichi.tests;
+
+import com.daiichi.ArangoDBAsyncWrapper;
+import com.daiichi.ArangoDBWrapper;
+import com.daiichi.AsyncDBWrapper;
+import com.daiichi.BenchmarkMetrics;
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.FrontierCachingDBWrapper;
+import com.daiichi.InMemoryAsyncWrapper;
+import com.daiichi.InMemoryGraphWrapper;
+import com.daiichi.NeptuneBAsyncWrapper;
+import com.daiichi.NeptuneBWrapper;
+import com.daiichi.Neo4jAsyncWrapper;
+import com.daiichi.Neo4jWrapper;
+import com.daiichi.OptimisticRetry;
+import com.daiichi.OrientDBAsyncWrapper;
+import com.daiichi.OrientDBWrapper;
+import com.daiichi.PipelinedDBWrapper;
+import com.daiichi.RecordingDBWrapper;
+import com.daiichi.StatusTransitions;
+import com.daiichi.workload.TraceWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class DbWrapperProvider implements DisposableBean {
+    private static final DateTimeFormatter TRACE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final InMemoryGraphWrapper inMemoryGraphWrapper;
+    // Only backends in benchmark.backends have wrapper beans, each built lazily when a harness first asks for it
+    private final ObjectProvider<ArangoDBWrapper> arangoDBWrapper;
+    private final ObjectProvider<OrientDBWrapper> orientDBWrapper;
+    private final ObjectProvider<NeptuneBWrapper> neptuneBWrapper;
+    private final ObjectProvider<Neo4jWrapper> neo4jWrapper;
+    private final InMemoryAsyncWrapper inMemoryAsyncWrapper;
+    private final ObjectProvider<ArangoDBAsyncWrapper> arangoDBAsyncWrapper;
+    private final ObjectProvider<OrientDBAsyncWrapper> orientDBAsyncWrapper;
+    private final ObjectProvider<NeptuneBAsyncWrapper> neptuneBAsyncWrapper;
+    private final ObjectProvider<Neo4jAsyncWrapper> neo4jAsyncWrapper;
+    private final BenchmarkProperties properties;
+    private final StatusTransitions transitions;
+    private final OptimisticRetry optimisticRetry;
+    private final BenchmarkMetrics metrics;
+    private final Map<DBWrapper.DB, FrontierCachingDBWrapper> cachingWrappers = new EnumMap<>(DBWrapper.DB.class);
+    private final Map<DBWrapper.DB, DBWrapper> instrumentedWrappers = new EnumMap<>(DBWrapper.DB.class);
+    private final Map<DBWrapper.DB, PipelinedDBWrapper> pipelinedWrappers = new EnumMap<>(DBWrapper.DB.class);
+    private final Map<DBWrapper.DB, RecordingDBWrapper> recordingWrappers = new EnumMap<>(DBWrapper.DB.class);
+    private final Instant startedAt = Instant.now();
+
+    DBWrapper getDbWrapper(DBWrapper.DB db) {
+        if (!properties.getTrace().isRecord()) {
+            return getCached(db);
+        }
+        // Recorded above the cache, the trace holds what the harness asked for rather than what reached the backend
+        synchronized (recordingWrappers) {
+            return recordingWrappers.computeIfAbsent(db, key -> new RecordingDBWrapper(getCached(key), openTrace(key)));
+        }
+    }
+
+    private DBWrapper getCached(DBWrapper.DB db) {
+        BenchmarkProperties.FrontierCache cache = properties.getFrontierCache();
+        if (!cache.isEnabled()) {
+            return getInstrumented(db);
+        }
+        synchronized (cachingWrappers) {
+            return cachingWrappers.computeIfAbsent(db, key ->
+                new FrontierCachingDBWrapper(getInstrumented(key), transitions, key.name(), cache.getMaxPlans(), cache.getFrontierSize()));
+        }
+    }
+
+    private TraceWriter openTrace(DBWrapper.DB db) {
+        BenchmarkProperties.Workload workload = properties.getWorkload();
+        Path file = Path.of(properties.getTrace().getDirectory(), "%s-%s.trace".formatted(db, TRACE_TIMESTAMP.format(startedAt)));
+        try {
+            TraceWriter trace = new TraceWriter(file, workload.getShape(), workload.getFanOut());
+            log.info("Recording {} operations to {}", db, file.toAbsolutePath());
+            return trace;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create trace " + file, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (recordingWrappers) {
+            recordingWrappers.forEach((db, recording) -> {
+                try {
+                    recording.close();
+                } catch (IOException e) {
+                    log.error("Could not close the trace of {}", db, e);
+                }
+            });
+        }
+    }
+
+    // Instrumented below the cache, so cache hits show up as missing backend calls rather than fast ones
+    private DBWrapper getInstrumented(DBWrapper.DB db) {
+        synchronized (instrumentedWrappers) {
+            return instrumentedWrappers.computeIfAbsent(db, key -> metrics.instrument(key, getBackend(key)));
+        }
+    }
+
+    /**
+     * @return the async API of the backend, limited to benchmark.async.in-flight-per-connection requests per connection
+     */
+    PipelinedDBWrapper getPipelinedDbWrapper(DBWrapper.DB db) {
+        synchronized (pipelinedWrappers) {
+            return pipelinedWrappers.computeIfAbsent(db, key ->
+                new PipelinedDBWrapper(getAsyncBackend(key), key.name(), properties.getAsync().getInFlightPerConnection()));
+        }
+    }
+
+    /**
+     * Logs the contention counters of the backend and its frontier cache metrics when caching is enabled.
+     */
+    void report(DBWrapper.DB db) {
+        optimisticRetry.report(db.name());
+        FrontierCachingDBWrapper cachingWrapper;
+        synchronized (cachingWrappers) {
+            cachingWrapper = cachingWrappers.get(db);
+        }
+        if (cachingWrapper != null) {
+            cachingWrapper.report();
+        }
+        PipelinedDBWrapper pipelinedWrapper;
+        synchronized (pipelinedWrappers) {
+            pipelinedWrapper = pipelinedWrappers.get(db);
+        }
+        if (pipelinedWrapper != null) {
+            pipelinedWrapper.report();
+        }
+    }
+
+    private DBWrapper getBackend(DBWrapper.DB db) {
+        switch (db) {
+            case IN_MEMORY -> {
+                return inMemoryGraphWrapper;
+            }
+            case ARGANO -> {
+                return selected(arangoDBWrapper, db);
+            }
+            case ORIENT -> {
+                return selected(orientDBWrapper, db);
+            }
+            case NEPTUNE -> {
+                return selected(neptuneBWrapper, db);
+            }
+            case NEO4J -> {
+                return selected(neo4jWrapper, db);
+            }
+        }
+        throw new RuntimeException("DB isn't supported");
+    }
+
+    private AsyncDBWrapper getAsyncBackend(DBWrapper.DB db) {
+        switch (db) {
+            case IN_MEMORY -> {
+                return inMemoryAsyncWrapper;
+            }
+            case ARGANO -> {
+                return selected(arangoDBAsyncWrapper, db);
+            }
+            case ORIENT -> {
+                return selected(orientDBAsyncWrapper, db);
+            }
+            case NEPTUNE -> {
+                return selected(neptuneBAsyncWrapper, db);
+            }
+            case NEO4J -> {
+                return selected(neo4jAsyncWrapper, db);
+            }
+        }
+        throw new RuntimeException("DB isn't supported");
+    }
+
+    private static <T> T selected(ObjectProvider<T> wrapper, DBWrapper.DB db) {
+        T selected = wrapper.getIfAvailable();
+        if (selected == null) {
+            throw new IllegalStateException("Backend %s isn't selected, add it to benchmark.backends".formatted(db));
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,82 @@
+package com.daiichi.tests;
+
+import com.daiichi.results.RunResults;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nanosecond latency histogram for one operation of one backend. The first {@code warmupOps} samples are
+ * recorded into a separate histogram so cold iterations don't leak into the steady-state percentiles.
+ */
+@Slf4j
+class LatencyRecorder {
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    @Getter
+    private final String backend;
+    @Getter
+    private final String operation;
+    private final long warmupOps;
+    private final long expectedIntervalNanos;
+    private final AtomicLong seen = new AtomicLong();
+    private final Histogram warmup = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    @Getter
+    private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+
+    /**
+     * @param targetRate ops/sec the operation is issued at, when positive every sample is corrected for
+     *                   coordinated omission against the expected interval between two operations
+     */
+    LatencyRecorder(String backend, String operation, long warmupOps, double targetRate) {
+        this.backend = backend;
+        this.operation = operation;
+        this.warmupOps = warmupOps;
+        this.expectedIntervalNanos = targetRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / targetRate) : 0;
+    }
+
+    void record(long latencyNanos) {
+        Histogram target = seen.getAndIncrement() < warmupOps ? warmup : histogram;
+        long value = Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS);
+        if (expectedIntervalNanos > 0) {
+            target.recordValueWithExpectedInterval(value, expectedIntervalNanos);
+        } else {
+            target.recordValue(value);
+        }
+    }
+
+    void time(Runnable operation) {
+        long start = System.nanoTime();
+        operation.run();
+        record(System.nanoTime() - start);
+    }
+
+    void report() {
+        log.info("{}: {} Stats, Count: {}, p50: {}, p90: {}, p99: {}, p99.9: {}, Max: {}, Mean: {} (ms, {} warmup ops excluded)",
+            backend, operation, histogram.getTotalCount(),
+            millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(90)),
+            millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)),
+            millis(histogram.getMaxValue()),
+            millis((long) histogram.getMean()),
+            warmup.getTotalCount());
+    }
+
+    /**
+     * Adds the steady-state histogram to the result file of a loop that ran the operation on one thread.
+     */
+    void publish(RunResults results, String harness, String step) {
+        results.record(harness, backend, step, operation, histogram, RunResults.sequentialThroughput(histogram), List.of());
+    }
+
+    private static String millis(long nanos) {
+        return "%.3f".formatted(nanos / 1_000_000.0);
+    }
+}
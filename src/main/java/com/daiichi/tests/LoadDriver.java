@@ -0,0 +1,240 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.PipelinedDBWrapper;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Drives createTree/fetchAndUpdate from N concurrent workers per backend and reports throughput and latency
+ * for every configured worker count, giving one saturation curve per backend.
+ * In CLOSED_LOOP mode every worker issues its next operation as soon as the previous one returns. In OPEN_LOOP
+ * mode operations follow a fixed arrival schedule and latency is measured from the scheduled start, so queueing
+ * delay on an overloaded backend shows up in the percentiles instead of lowering the offered load.
+ * With benchmark.async.enabled every update phase is repeated through the backend's {@link PipelinedDBWrapper}
+ * by the same workers, which keep submitting until the in-flight limit blocks them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.load.enabled", havingValue = "true")
+class LoadDriver {
+
+    private final DbWrapperProvider dbWrapperProvider;
+    private final WorkloadGenerator workloadGenerator;
+    private static final long THROUGHPUT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() {
+        BenchmarkProperties.Load load = properties.getLoad();
+        // The arrival interval is derived from the rate, a rate of 0 or below has no schedule to follow
+        if (load.getMode() == BenchmarkProperties.Mode.OPEN_LOOP && !(load.getTargetRate() > 0)) {
+            throw new IllegalStateException("benchmark.load.target-rate must be above 0 in OPEN_LOOP mode, was " + load.getTargetRate());
+        }
+        log.info("Starting load driver in {} mode with worker counts {}", load.getMode(), load.getWorkerCounts());
+        for (DBWrapper.DB db : properties.selected(load.getBackends())) {
+            List<String> curve = new ArrayList<>();
+            for (int workers : load.getWorkerCounts()) {
+                curve.add(runStep(db, workers));
+            }
+            log.info("{}: Saturation curve ({})\n{}", db, load.getMode(), String.join("\n", curve));
+        }
+        log.info("Load driver complete");
+    }
+
+    private String runStep(DBWrapper.DB db, int workers) {
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(db);
+        String label = "%s x%d".formatted(db, workers);
+
+        List<ExecutionPlan> plans = workloadGenerator.plans("Load %s-%d ".formatted(db, workers), properties.getPlanCount()).toList();
+        List<String> planIds = plans.stream().map(ExecutionPlan::getId).toList();
+
+        ExecutorService executor = newExecutor(workers);
+        try {
+            LatencyRecorder creationStats = new LatencyRecorder(label, "Creation", 0, 0);
+            AtomicInteger nextPlan = new AtomicInteger();
+            long creationStart = System.nanoTime();
+            runWorkers(executor, workers, () -> {
+                int i;
+                while ((i = nextPlan.getAndIncrement()) < plans.size()) {
+                    ExecutionPlan plan = plans.get(i);
+                    creationStats.time(() -> dbWrapper.createTree(plan));
+                }
+            });
+            double creationThroughput = throughput(plans.size(), System.nanoTime() - creationStart);
+
+            creationStats.report();
+            runResults.record("LoadDriver", db.name(), "x" + workers, creationStats.getOperation(), creationStats.getHistogram(),
+                creationThroughput, List.of());
+            StringBuilder row = new StringBuilder("workers: %d, creation: %.1f plans/s".formatted(workers, creationThroughput));
+            for (DBWrapper.UpdateMode mode : properties.getUpdateModes()) {
+                Function<String, CompletableFuture<?>> blocking = planId -> CompletableFuture.completedFuture(dbWrapper.fetchAndUpdate(planId, mode));
+                row.append(runUpdatePhase(executor, workers, db, "Update (%s)".formatted(mode), blocking, () -> { }, planIds));
+                if (properties.getAsync().isEnabled()) {
+                    // Same workers, each keeps submitting until the in-flight limit pushes back
+                    PipelinedDBWrapper pipelined = dbWrapperProvider.getPipelinedDbWrapper(db);
+                    Function<String, CompletableFuture<?>> async = planId -> pipelined.fetchAndUpdate(planId, mode);
+                    row.append(runUpdatePhase(executor, workers, db, "Update (%s, pipelined)".formatted(mode), async, pipelined::drain, planIds));
+                }
+            }
+            dbWrapperProvider.report(db);
+            return row.toString();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a warmup and a measured update phase, records the measured one in the result file.
+     *
+     * @return the phase's part of the saturation curve row
+     */
+    private String runUpdatePhase(ExecutorService executor, int workers, DBWrapper.DB db, String operation,
+                                  Function<String, CompletableFuture<?>> update, Runnable drain, List<String> planIds) {
+        BenchmarkProperties.Load load = properties.getLoad();
+        String label = "%s x%d".formatted(db, workers);
+        runUpdates(executor, workers, update, drain, planIds, load.getWarmup(), new LatencyRecorder(label, "Warmup", 0, 0));
+        LatencyRecorder updateStats = new LatencyRecorder(label, operation, 0, 0);
+        UpdatePhase phase = runUpdates(executor, workers, update, drain, planIds, load.getDuration(), updateStats);
+        updateStats.report();
+        runResults.record("LoadDriver", db.name(), "x" + workers, operation, updateStats.getHistogram(), phase.throughput(), phase.windows());
+        return ", %s: %.1f ops/s, %s".formatted(operation, phase.throughput(), percentiles(updateStats.getHistogram()));
+    }
+
+    /**
+     * Issues {@code update} from every worker until the duration is over. A blocking update returns a completed
+     * future, a pipelined one returns as soon as it's submitted and is timed until its future completes.
+     *
+     * @param drain waits for the updates still in flight when the workers stop
+     */
+    private UpdatePhase runUpdates(ExecutorService executor, int workers, Function<String, CompletableFuture<?>> update, Runnable drain,
+                                   List<String> planIds, Duration duration, LatencyRecorder recorder) {
+        BenchmarkProperties.Load load = properties.getLoad();
+        LongAdder ops = new LongAdder();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        AtomicLongArray windows = new AtomicLongArray((int) Math.max(1, duration.toNanos() / THROUGHPUT_WINDOW_NANOS));
+        if (load.getMode() == BenchmarkProperties.Mode.OPEN_LOOP) {
+            long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / load.getTargetRate());
+            AtomicLong sequence = new AtomicLong();
+            runWorkers(executor, workers, () -> {
+                long scheduled;
+                while ((scheduled = start + sequence.getAndIncrement() * intervalNanos) < deadline) {
+                    LockSupport.parkNanos(scheduled - System.nanoTime());
+                    long issued = scheduled;
+                    update.apply(randomPlan(planIds)).whenComplete((result, error) -> {
+                        long end = System.nanoTime();
+                        recorder.record(end - issued);
+                        ops.increment();
+                        countInWindow(windows, end - start);
+                    });
+                }
+            });
+        } else {
+            runWorkers(executor, workers, () -> {
+                while (System.nanoTime() < deadline) {
+                    long issued = System.nanoTime();
+                    update.apply(randomPlan(planIds)).whenComplete((result, error) -> {
+                        long end = System.nanoTime();
+                        recorder.record(end - issued);
+                        ops.increment();
+                        countInWindow(windows, end - start);
+                    });
+                }
+            });
+        }
+        drain.run();
+        double windowSeconds = THROUGHPUT_WINDOW_NANOS / 1_000_000_000.0;
+        List<Double> windowThroughput = IntStream.range(0, windows.length())
+            .mapToObj(i -> windows.get(i) / windowSeconds)
+            .toList();
+        return new UpdatePhase(throughput(ops.sum(), System.nanoTime() - start), windowThroughput);
+    }
+
+    // Operations finishing after the last full window, while the workers drain, aren't sampled
+    private static void countInWindow(AtomicLongArray windows, long elapsedNanos) {
+        int window = (int) (elapsedNanos / THROUGHPUT_WINDOW_NANOS);
+        if (window < windows.length()) {
+            windows.incrementAndGet(window);
+        }
+    }
+
+    private void runWorkers(ExecutorService executor, int workers, Runnable worker) {
+        List<Future<?>> futures = IntStream.range(0, workers)
+            .<Future<?>>mapToObj(i -> executor.submit(worker))
+            .toList();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Load driver interrupted", e);
+            } catch (ExecutionException e) {
+                log.error("Load driver worker failed", e.getCause());
+            }
+        }
+    }
+
+    private ExecutorService newExecutor(int workers) {
+        if (properties.getLoad().isVirtualThreads()) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads need Java 21+, falling back to {} platform threads", workers);
+            }
+        }
+        return Executors.newFixedThreadPool(workers);
+    }
+
+    private static String randomPlan(List<String> planIds) {
+        return planIds.get(ThreadLocalRandom.current().nextInt(planIds.size()));
+    }
+
+    private static double throughput(long ops, long elapsedNanos) {
+        return ops / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    /**
+     * @param throughput achieved update throughput in ops/sec
+     * @param windows    ops/sec in each one second window of the phase
+     */
+    private record UpdatePhase(double throughput, List<Double> windows) {
+    }
+
+    private static String percentiles(Histogram histogram) {
+        return "p50: %.3f, p99: %.3f, max: %.3f (ms)".formatted(
+            histogram.getValueAtPercentile(50) / 1_000_000.0,
+            histogram.getValueAtPercentile(99) / 1_000_000.0,
+            histogram.getMaxValue() / 1_000_000.0);
+    }
+}
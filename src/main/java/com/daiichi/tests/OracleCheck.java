@@ -0,0 +1,69 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.InMemoryGraphWrapper;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Replays the same plans and the same sequence of fetchAndUpdate calls against a remote backend and the
+ * {@link InMemoryGraphWrapper}, and counts how often the backend picked the node the reference says is next.
+ * The reference follows the status the backend actually wrote, so one divergence doesn't cascade into the rest.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.oracle.enabled", havingValue = "true")
+class OracleCheck {
+    private static final int LOGGED_MISMATCHES = 10;
+
+    private final DbWrapperProvider dbWrapperProvider;
+    private final InMemoryGraphWrapper oracle;
+    private final WorkloadGenerator workloadGenerator;
+    private final BenchmarkProperties properties;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() {
+        for (DBWrapper.DB db : properties.selected(properties.getOracle().getBackends())) {
+            check(db);
+        }
+        log.info("Oracle check complete");
+    }
+
+    private void check(DBWrapper.DB db) {
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(db);
+        List<ExecutionPlan> plans = workloadGenerator.plans("Oracle %s ".formatted(db), properties.getPlanCount()).toList();
+        dbWrapper.createTrees(plans);
+        oracle.createTrees(plans);
+
+        List<String> planIds = plans.stream().map(ExecutionPlan::getId).toList();
+        Random random = new Random(properties.getWorkload().getSeed());
+        int matches = 0;
+        int mismatches = 0;
+        for (int i = 0; i < properties.getOracle().getUpdates(); i++) {
+            String planId = planIds.get(random.nextInt(planIds.size()));
+            Optional<String> expected = oracle.nextEligible(planId);
+            Optional<Node> actual = dbWrapper.fetchAndUpdate(planId);
+            if (expected.equals(actual.map(Node::getId))) {
+                matches++;
+            } else if (++mismatches <= LOGGED_MISMATCHES) {
+                log.warn("{}: Plan {} expected node {} but {} was updated", db, planId,
+                    expected.orElse("none"), actual.map(Node::getId).orElse("none"));
+            }
+            actual.ifPresent(node -> oracle.setStatus(planId, node.getId(), node.getStatus()));
+        }
+        log.info("{}: Oracle check, Updates: {}, Matches: {}, Mismatches: {}", db, matches + mismatches, matches, mismatches);
+    }
+}
@@ -0,0 +1,136 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.StatusTransitions;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import com.daiichi.pojo.PlanProgress;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Reads plan progress from the per plan counters of {@link DBWrapper#getPlanProgress(List)} against counting the
+ * nodes with {@link DBWrapper#aggregatePlanProgress}, for one plan and for a batch of plans, as the plans grow.
+ * Before the reads every plan gets server side updates and one claim and report, and the counters of every plan
+ * are checked against the counted nodes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.progress.enabled", havingValue = "true")
+class ProgressBenchmark {
+    private final DbWrapperProvider dbWrapperProvider;
+    private final WorkloadGenerator workloadGenerator;
+    private final StatusTransitions transitions;
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() {
+        BenchmarkProperties.Progress progress = properties.getProgress();
+        log.info("Starting progress benchmark with plan sizes {}, {} plans per batched read", progress.getPlanSizes(), progress.getBatchSize());
+        for (DBWrapper.DB db : properties.selected(progress.getBackends())) {
+            List<String> curve = new ArrayList<>();
+            for (int planSize : progress.getPlanSizes()) {
+                curve.add(runStep(db, planSize));
+            }
+            log.info("{}: p50 ms of progress reads by plan size\n{}", db, String.join("\n", curve));
+            dbWrapperProvider.report(db);
+        }
+        log.info("Progress benchmark complete");
+    }
+
+    private String runStep(DBWrapper.DB db, int planSize) {
+        BenchmarkProperties.Progress progress = properties.getProgress();
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(db);
+        List<ExecutionPlan> plans = workloadGenerator
+            .plans("Progress %s-%d ".formatted(db, planSize), progress.getPlans(), ScalingSuite.fixedSize(properties.getWorkload(), planSize))
+            .toList();
+        dbWrapper.createTrees(plans);
+        List<String> planIds = plans.stream().map(ExecutionPlan::getId).toList();
+        advance(dbWrapper, planIds);
+        int mismatches = check(db, dbWrapper, planIds);
+
+        int batchSize = Math.min(progress.getBatchSize(), planIds.size());
+        String step = "%d nodes".formatted(planSize);
+        List<LatencyRecorder> reads = List.of(
+            time(db, "Counters (1 plan)", () -> dbWrapper.getPlanProgress(List.of(pick(planIds, 1).get(0)))),
+            time(db, "Aggregate (1 plan)", () -> dbWrapper.aggregatePlanProgress(List.of(pick(planIds, 1).get(0)))),
+            time(db, "Counters (%d plans)".formatted(batchSize), () -> dbWrapper.getPlanProgress(pick(planIds, batchSize))),
+            time(db, "Aggregate (%d plans)".formatted(batchSize), () -> dbWrapper.aggregatePlanProgress(pick(planIds, batchSize))));
+        reads.forEach(read -> {
+            read.report();
+            read.publish(runResults, "ProgressBenchmark", step);
+        });
+
+        String row = "%s %d nodes: %s, %d of %d plans with counters that don't match their nodes".formatted(db, planSize,
+            String.join(", ", reads.stream()
+                .map(read -> "%s %.3f".formatted(read.getOperation(), read.getHistogram().getValueAtPercentile(50) / 1_000_000.0))
+                .toList()),
+            mismatches, planIds.size());
+        log.info(row);
+        return row;
+    }
+
+    /**
+     * Moves nodes of every plan through each kind of status write, so the counters are checked after more than
+     * the creation.
+     */
+    private void advance(DBWrapper dbWrapper, List<String> planIds) {
+        for (String planId : planIds) {
+            for (int i = 0; i < properties.getProgress().getUpdatesPerPlan(); i++) {
+                dbWrapper.fetchAndUpdate(planId, DBWrapper.UpdateMode.SERVER);
+            }
+        }
+        String owner = "progress-" + ProcessHandle.current().pid();
+        List<Node> claimed = dbWrapper.claimReady(planIds, properties.getProgress().getBatchSize(), owner, properties.getClaim().getLease());
+        claimed.forEach(node -> node.setStatus(transitions.nextCompletes(node.getPlanId()) ? Node.Status.Completed : Node.Status.Error));
+        dbWrapper.reportStatus(owner, claimed);
+    }
+
+    /**
+     * @return number of plans whose counters differ from the nodes counted by status, each one is logged
+     */
+    private int check(DBWrapper.DB db, DBWrapper dbWrapper, List<String> planIds) {
+        Map<String, PlanProgress> counters = dbWrapper.getPlanProgress(planIds);
+        Map<String, PlanProgress> counted = dbWrapper.aggregatePlanProgress(planIds);
+        int mismatches = 0;
+        for (String planId : planIds) {
+            if (!Objects.equals(counters.get(planId), counted.get(planId))) {
+                log.warn("{}: counters of plan {} are {}, its nodes count {}", db, planId, counters.get(planId), counted.get(planId));
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private LatencyRecorder time(DBWrapper.DB db, String operation, Runnable read) {
+        LatencyRecorder stats = new LatencyRecorder(db.name(), operation, properties.getWarmupUpdates(), 0);
+        for (int i = 0; i < properties.getWarmupUpdates() + properties.getProgress().getReads(); i++) {
+            stats.time(read);
+        }
+        return stats;
+    }
+
+    /**
+     * @return count distinct plans starting at a random one
+     */
+    private static List<String> pick(List<String> planIds, int count) {
+        int first = ThreadLocalRandom.current().nextInt(planIds.size());
+        return IntStream.range(0, count).mapToObj(i -> planIds.get((first + i) % planIds.size())).toList();
+    }
+}
@@ -0,0 +1,125 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.SizeDistribution;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sweeps plan count and plan size per backend and writes one CSV row per step, so creation and update cost can
+ * be plotted against the amount of stored data. Plans are streamed from the {@link WorkloadGenerator}, only
+ * their ids are kept for the update phase. Every update mode gets its own row for the same plans.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.scaling.enabled", havingValue = "true")
+class ScalingSuite {
+
+    private static final String HEADER = "backend,planCount,planSize,nodes,updateMode,createMsPerPlan,createUsPerNode,updateP50Ms,updateP99Ms,updateMaxMs";
+
+    private final DbWrapperProvider dbWrapperProvider;
+    private final WorkloadGenerator workloadGenerator;
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() throws IOException {
+        BenchmarkProperties.Scaling scaling = properties.getScaling();
+        Path output = Path.of(scaling.getOutput());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output))) {
+            writer.println(HEADER);
+            for (DBWrapper.DB db : properties.selected(scaling.getBackends())) {
+                for (int planSize : scaling.getPlanSizes()) {
+                    for (int planCount : scaling.getPlanCounts()) {
+                        for (String row : runStep(db, planCount, planSize)) {
+                            log.info("Scaling: {}", row);
+                            writer.println(row);
+                        }
+                        writer.flush();
+                    }
+                }
+            }
+        }
+        log.info("Scaling suite complete, results in {}", output.toAbsolutePath());
+    }
+
+    private List<String> runStep(DBWrapper.DB db, int planCount, int planSize) {
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(db);
+        BenchmarkProperties.Workload workload = fixedSize(properties.getWorkload(), planSize);
+        Iterator<ExecutionPlan> plans = workloadGenerator
+            .plans("Scale %d-%d ".formatted(planCount, planSize), planCount, workload)
+            .iterator();
+
+        int plansPerCreate = Math.max(1, properties.getPlansPerCreate());
+        List<String> planIds = new ArrayList<>(planCount);
+        String step = "%dx%d".formatted(planCount, planSize);
+        LatencyRecorder creationStats = new LatencyRecorder(db.name(), "Creation", 0, 0);
+        long nodes = 0;
+        long creationNanos = 0;
+        while (plans.hasNext()) {
+            List<ExecutionPlan> batch = new ArrayList<>(plansPerCreate);
+            while (plans.hasNext() && batch.size() < plansPerCreate) {
+                ExecutionPlan plan = plans.next();
+                batch.add(plan);
+                planIds.add(plan.getId());
+                nodes += plan.nodeCount();
+            }
+            long start = System.nanoTime();
+            dbWrapper.createTrees(batch);
+            long elapsed = System.nanoTime() - start;
+            creationStats.record(elapsed);
+            creationNanos += elapsed;
+        }
+        creationStats.publish(runResults, "ScalingSuite", step);
+
+        List<String> rows = new ArrayList<>();
+        for (DBWrapper.UpdateMode mode : properties.getUpdateModes()) {
+            LatencyRecorder updateStats = new LatencyRecorder(db.name(), "Update (%s)".formatted(mode), properties.getWarmupUpdates(), 0);
+            for (int i = 0; i < properties.getWarmupUpdates() + properties.getScaling().getUpdatesPerStep(); i++) {
+                String planId = planIds.get(ThreadLocalRandom.current().nextInt(planIds.size()));
+                updateStats.time(() -> dbWrapper.fetchAndUpdate(planId, mode));
+            }
+
+            updateStats.publish(runResults, "ScalingSuite", step);
+            Histogram updates = updateStats.getHistogram();
+            rows.add("%s,%d,%d,%d,%s,%.3f,%.3f,%.3f,%.3f,%.3f".formatted(db, planCount, planSize, nodes, mode,
+                creationNanos / 1_000_000.0 / planCount,
+                creationNanos / 1_000.0 / Math.max(1, nodes),
+                updates.getValueAtPercentile(50) / 1_000_000.0,
+                updates.getValueAtPercentile(99) / 1_000_000.0,
+                updates.getMaxValue() / 1_000_000.0));
+        }
+        dbWrapperProvider.report(db);
+        return rows;
+    }
+
+    static BenchmarkProperties.Workload fixedSize(BenchmarkProperties.Workload workload, int planSize) {
+        BenchmarkProperties.Workload step = new BenchmarkProperties.Workload();
+        step.setSeed(workload.getSeed());
+        step.setShape(workload.getShape());
+        step.setFanOut(workload.getFanOut());
+        step.setDepth(workload.getDepth());
+        step.setSizeDistribution(SizeDistribution.FIXED);
+        step.setPlanSize(planSize);
+        return step;
+    }
+}
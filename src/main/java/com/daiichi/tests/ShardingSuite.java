@@ -0,0 +1,233 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkMetrics;
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.ShardFactory;
+import com.daiichi.ShardedDBWrapper;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Measures how a backend scales out when plans are spread over several instances by a {@link ShardedDBWrapper}.
+ * For every shard count from one up to the number of configured endpoints, plans and workers grow with the shard
+ * count and every shard's workers only touch the plans routed to it, all shards running at the same time. Each
+ * step writes a row per shard and an aggregate row whose scaling efficiency is its throughput over shard count
+ * times the single shard throughput, 1.0 being linear.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.sharding.enabled", havingValue = "true")
+class ShardingSuite {
+
+    private static final String HEADER = "backend,shards,shard,endpoint,plans,updateMode,throughput,p50Ms,p99Ms,maxMs,scalingEfficiency";
+    private static final String AGGREGATE = "all";
+
+    private final ShardFactory shardFactory;
+    private final WorkloadGenerator workloadGenerator;
+    private final BenchmarkProperties properties;
+    private final BenchmarkMetrics metrics;
+    private final RunResults runResults;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() throws IOException {
+        BenchmarkProperties.Sharding sharding = properties.getSharding();
+        Path output = Path.of(sharding.getOutput());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output))) {
+            writer.println(HEADER);
+            for (DBWrapper.DB db : properties.selected(sharding.getBackends())) {
+                List<String> endpoints = sharding.getEndpoints().getOrDefault(db, List.of());
+                if (endpoints.isEmpty()) {
+                    log.warn("Sharding: no endpoints configured for {}, skipped", db);
+                    continue;
+                }
+                // Single shard throughput per update mode, the reference of every later step's efficiency
+                Map<DBWrapper.UpdateMode, Double> baseline = new EnumMap<>(DBWrapper.UpdateMode.class);
+                for (int shardCount = 1; shardCount <= endpoints.size(); shardCount++) {
+                    for (String row : runStep(db, endpoints.subList(0, shardCount), baseline)) {
+                        log.info("Sharding: {}", row);
+                        writer.println(row);
+                    }
+                    writer.flush();
+                }
+            }
+        }
+        log.info("Sharding suite complete, results in {}", output.toAbsolutePath());
+    }
+
+    private List<String> runStep(DBWrapper.DB db, List<String> endpoints, Map<DBWrapper.UpdateMode, Double> baseline) {
+        BenchmarkProperties.Sharding sharding = properties.getSharding();
+        int shardCount = endpoints.size();
+        String step = "%d shards".formatted(shardCount);
+        try (ShardedDBWrapper router = shardFactory.open(db, endpoints)) {
+            DBWrapper dbWrapper = metrics.instrument(db, router);
+            List<ExecutionPlan> plans = workloadGenerator
+                .plans("Shard %s-%d ".formatted(db, shardCount), sharding.getPlansPerShard() * shardCount)
+                .toList();
+            List<List<ExecutionPlan>> plansByShard = IntStream.range(0, shardCount)
+                .<List<ExecutionPlan>>mapToObj(shard -> new ArrayList<>())
+                .toList();
+            plans.forEach(plan -> plansByShard.get(router.shardOf(plan.getId())).add(plan));
+            log.info("{} over {}: plans per shard {}", db, endpoints, plansByShard.stream().map(List::size).toList());
+
+            ExecutorService executor = Executors.newFixedThreadPool(sharding.getWorkersPerShard() * shardCount);
+            try {
+                LatencyRecorder creationStats = new LatencyRecorder(db.name(), "Creation", 0, 0);
+                List<AtomicInteger> nextPlan = IntStream.range(0, shardCount).mapToObj(shard -> new AtomicInteger()).toList();
+                long creationStart = System.nanoTime();
+                runShards(executor, plansByShard, shard -> {
+                    List<ExecutionPlan> shardPlans = plansByShard.get(shard);
+                    int i;
+                    while ((i = nextPlan.get(shard).getAndIncrement()) < shardPlans.size()) {
+                        ExecutionPlan plan = shardPlans.get(i);
+                        creationStats.time(() -> dbWrapper.createTree(plan));
+                    }
+                });
+                double creationThroughput = throughput(plans.size(), System.nanoTime() - creationStart);
+                creationStats.report();
+                runResults.record("ShardingSuite", db.name(), step, creationStats.getOperation(), creationStats.getHistogram(),
+                    creationThroughput, List.of());
+
+                List<List<String>> planIdsByShard = plansByShard.stream()
+                    .map(shardPlans -> shardPlans.stream().map(ExecutionPlan::getId).toList())
+                    .toList();
+                List<String> rows = new ArrayList<>();
+                for (DBWrapper.UpdateMode mode : properties.getUpdateModes()) {
+                    String operation = "Update (%s)".formatted(mode);
+                    runUpdates(executor, dbWrapper, planIdsByShard, mode, sharding.getWarmup(), operation);
+                    UpdatePhase phase = runUpdates(executor, dbWrapper, planIdsByShard, mode, sharding.getDuration(), operation);
+
+                    for (int shard = 0; shard < shardCount; shard++) {
+                        Histogram histogram = phase.shards().get(shard).getHistogram();
+                        double shardThroughput = phase.throughput(shard);
+                        runResults.record("ShardingSuite", db.name(), "%s, shard %d".formatted(step, shard), operation, histogram, shardThroughput, List.of());
+                        rows.add(row(db, shardCount, String.valueOf(shard), endpoints.get(shard), planIdsByShard.get(shard).size(), mode,
+                            shardThroughput, histogram, ""));
+                    }
+                    double aggregate = phase.throughput();
+                    if (shardCount == 1) {
+                        baseline.put(mode, aggregate);
+                    }
+                    Double single = baseline.get(mode);
+                    String efficiency = single == null || single == 0 ? "" : "%.3f".formatted(aggregate / (shardCount * single));
+                    phase.aggregate().report();
+                    runResults.record("ShardingSuite", db.name(), step, operation, phase.aggregate().getHistogram(), aggregate, List.of());
+                    rows.add(row(db, shardCount, AGGREGATE, String.join(" ", endpoints), plans.size(), mode,
+                        aggregate, phase.aggregate().getHistogram(), efficiency));
+                }
+                return rows;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Runs workersPerShard closed loop workers per shard until the duration is over, every worker updating random
+     * plans of its own shard.
+     */
+    private UpdatePhase runUpdates(ExecutorService executor, DBWrapper dbWrapper, List<List<String>> planIdsByShard,
+                                   DBWrapper.UpdateMode mode, Duration duration, String operation) {
+        int shardCount = planIdsByShard.size();
+        List<LatencyRecorder> shardStats = IntStream.range(0, shardCount)
+            .mapToObj(shard -> new LatencyRecorder("shard " + shard, operation, 0, 0))
+            .toList();
+        LatencyRecorder aggregate = new LatencyRecorder("%d shards".formatted(shardCount), operation, 0, 0);
+        List<LongAdder> ops = IntStream.range(0, shardCount).mapToObj(shard -> new LongAdder()).toList();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        runShards(executor, planIdsByShard, shard -> {
+            List<String> planIds = planIdsByShard.get(shard);
+            while (System.nanoTime() < deadline) {
+                String planId = planIds.get(ThreadLocalRandom.current().nextInt(planIds.size()));
+                long issued = System.nanoTime();
+                dbWrapper.fetchAndUpdate(planId, mode);
+                long latency = System.nanoTime() - issued;
+                shardStats.get(shard).record(latency);
+                aggregate.record(latency);
+                ops.get(shard).increment();
+            }
+        });
+        return new UpdatePhase(shardStats, aggregate, ops.stream().map(LongAdder::sum).toList(), System.nanoTime() - start);
+    }
+
+    /**
+     * Starts workersPerShard workers for every shard that got plans and waits for all of them.
+     */
+    private void runShards(ExecutorService executor, List<? extends List<?>> plansByShard, Consumer<Integer> worker) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int shard = 0; shard < plansByShard.size(); shard++) {
+            if (plansByShard.get(shard).isEmpty()) {
+                continue;
+            }
+            int workerShard = shard;
+            for (int i = 0; i < properties.getSharding().getWorkersPerShard(); i++) {
+                futures.add(executor.submit(() -> worker.accept(workerShard)));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Sharding suite interrupted", e);
+            } catch (ExecutionException e) {
+                log.error("Sharding suite worker failed", e.getCause());
+            }
+        }
+    }
+
+    private static String row(DBWrapper.DB db, int shardCount, String shard, String endpoint, int plans, DBWrapper.UpdateMode mode,
+                              double throughput, Histogram histogram, String efficiency) {
+        return "%s,%d,%s,%s,%d,%s,%.1f,%.3f,%.3f,%.3f,%s".formatted(db, shardCount, shard, endpoint, plans, mode, throughput,
+            histogram.getValueAtPercentile(50) / 1_000_000.0,
+            histogram.getValueAtPercentile(99) / 1_000_000.0,
+            histogram.getMaxValue() / 1_000_000.0,
+            efficiency);
+    }
+
+    private static double throughput(long ops, long elapsedNanos) {
+        return ops / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    /**
+     * @param shardOps updates completed by each shard's workers
+     */
+    private record UpdatePhase(List<LatencyRecorder> shards, LatencyRecorder aggregate, List<Long> shardOps, long elapsedNanos) {
+        double throughput(int shard) {
+            return ShardingSuite.throughput(shardOps.get(shard), elapsedNanos);
+        }
+
+        double throughput() {
+            return ShardingSuite.throughput(shardOps.stream().mapToLong(Long::longValue).sum(), elapsedNanos);
+        }
+    }
+}
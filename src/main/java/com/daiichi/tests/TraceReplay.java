@@ -0,0 +1,193 @@
+package com.daiichi.tests;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.DBWrapper;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.TraceEvent;
+import com.daiichi.workload.TraceReader;
+import com.daiichi.workload.WorkloadGenerator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Replays a recorded trace against every backend, so bursts, hot plans and plan sizes come from real traffic
+ * instead of the uniform loop of the other harnesses. A dispatcher decodes the memory-mapped trace, waits until
+ * each operation's recorded offset divided by the speed and hands it to the worker that owns the plan. The delay
+ * between that scheduled time and the worker actually issuing the operation is reported as Issue lag, it grows
+ * when the backend can't keep up with the recorded pace. Latencies are then measured from the scheduled time,
+ * like the open loop of the load driver. At speed 0 operations are issued as fast as the workers go and
+ * latencies are measured from the issue.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.replay.enabled", havingValue = "true")
+class TraceReplay {
+
+    private static final Scheduled END = new Scheduled(null, 0);
+
+    private final DbWrapperProvider dbWrapperProvider;
+    private final WorkloadGenerator workloadGenerator;
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void execute() throws IOException {
+        BenchmarkProperties.Replay replay = properties.getReplay();
+        if (replay.getFile() == null || replay.getFile().isBlank()) {
+            throw new IllegalStateException("benchmark.replay.file names no trace to replay");
+        }
+        Path file = Path.of(replay.getFile());
+        TraceReader.Summary summary;
+        try (TraceReader reader = TraceReader.open(file)) {
+            summary = reader.summarize();
+            log.info("Replaying {} recorded at {}: {} operations on {} plans over {} s, {} creates, {} client and {} server updates",
+                file, reader.getRecordedAt(), summary.operations(), summary.plans(), "%.1f".formatted(summary.durationNanos() / 1e9),
+                summary.creates(), summary.clientUpdates(), summary.serverUpdates());
+        }
+        for (DBWrapper.DB db : properties.selected(replay.getBackends())) {
+            replay(db, file, summary);
+        }
+        log.info("Trace replay complete");
+    }
+
+    private void replay(DBWrapper.DB db, Path file, TraceReader.Summary summary) throws IOException {
+        BenchmarkProperties.Replay replay = properties.getReplay();
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(db);
+        String prefix = "Replay %s ".formatted(db);
+        if (!summary.uncreatedPlanIds().isEmpty()) {
+            // Plans created before recording started, generated from the configured workload
+            log.info("{}: creating {} plans the trace only updates", db, summary.uncreatedPlanIds().size());
+            dbWrapper.createTrees(summary.uncreatedPlanIds().stream().map(planId -> workloadGenerator.plan(prefix + planId)).toList());
+        }
+
+        boolean paced = replay.getSpeed() > 0;
+        String step = paced ? "%sx".formatted(replay.getSpeed()) : "max";
+        Map<TraceEvent.Op, LatencyRecorder> stats = new EnumMap<>(TraceEvent.Op.class);
+        for (TraceEvent.Op op : TraceEvent.Op.values()) {
+            stats.put(op, new LatencyRecorder("%s %s".formatted(db, step), op.operation(), 0, 0));
+        }
+        LatencyRecorder lag = new LatencyRecorder("%s %s".formatted(db, step), "Issue lag", 0, 0);
+        List<BlockingQueue<Scheduled>> queues = IntStream.range(0, replay.getWorkers())
+            .<BlockingQueue<Scheduled>>mapToObj(worker -> new ArrayBlockingQueue<>(replay.getQueueDepth()))
+            .toList();
+
+        ExecutorService executor = Executors.newFixedThreadPool(queues.size());
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = queues.stream()
+                .<Future<?>>map(queue -> executor.submit(() -> work(queue, dbWrapper, prefix, paced, stats, lag)))
+                .toList();
+            dispatch(file, queues, start, replay.getSpeed());
+            await(workers);
+        } finally {
+            executor.shutdownNow();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        log.info("{}: replayed {} operations in {} s at {}, recorded {} s", db, summary.operations(), "%.1f".formatted(elapsedSeconds),
+            step, "%.1f".formatted(summary.durationNanos() / 1e9));
+        stats.forEach((op, recorder) -> {
+            if (recorder.getHistogram().getTotalCount() > 0) {
+                recorder.report();
+                runResults.record("TraceReplay", db.name(), step, recorder.getOperation(), recorder.getHistogram(),
+                    recorder.getHistogram().getTotalCount() / elapsedSeconds, List.of());
+            }
+        });
+        if (paced) {
+            lag.report();
+            runResults.record("TraceReplay", db.name(), step, lag.getOperation(), lag.getHistogram(), 0, List.of());
+        }
+        dbWrapperProvider.report(db);
+    }
+
+    /**
+     * Decodes the trace on the calling thread and queues every operation for the worker owning its plan, once
+     * its scheduled time has come. Blocks while that worker's queue is full.
+     */
+    private void dispatch(Path file, List<BlockingQueue<Scheduled>> queues, long start, double speed) throws IOException {
+        try (TraceReader reader = TraceReader.open(file)) {
+            while (reader.hasNext()) {
+                TraceEvent event = reader.next();
+                long scheduled = speed > 0 ? start + (long) (event.offsetNanos() / speed) : System.nanoTime();
+                long remaining;
+                while ((remaining = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                queues.get(event.planIndex() % queues.size()).put(new Scheduled(event, scheduled));
+            }
+            for (BlockingQueue<Scheduled> queue : queues) {
+                queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Trace replay interrupted", e);
+        }
+    }
+
+    private void work(BlockingQueue<Scheduled> queue, DBWrapper dbWrapper, String prefix, boolean paced,
+                      Map<TraceEvent.Op, LatencyRecorder> stats, LatencyRecorder lag) {
+        try {
+            Scheduled scheduled;
+            while ((scheduled = queue.take()) != END) {
+                TraceEvent event = scheduled.event();
+                String planId = prefix + event.planId();
+                long issued = System.nanoTime();
+                if (paced) {
+                    lag.record(Math.max(0, issued - scheduled.nanos()));
+                }
+                try {
+                    if (event.op() == TraceEvent.Op.CREATE) {
+                        ExecutionPlan plan = workloadGenerator.plan(planId, event.shape(), event.fanOut(), event.size());
+                        dbWrapper.createTree(plan);
+                    } else {
+                        dbWrapper.fetchAndUpdate(planId, event.op().updateMode());
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("{} of {} failed: {}", event.op(), planId, e.getMessage());
+                }
+                stats.get(event.op()).record(System.nanoTime() - (paced ? scheduled.nanos() : issued));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(List<Future<?>> workers) {
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Trace replay interrupted", e);
+            } catch (ExecutionException e) {
+                log.error("Trace replay worker failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @param nanos System.nanoTime the operation was due at
+     */
+    private record Scheduled(TraceEvent event, long nanos) {
+    }
+}
@@ -1,42 +1,39 @@
 package com.daiichi.tests;
 
-import com.daiichi.ArangoDBWrapper;
+import com.daiichi.BenchmarkProperties;
 import com.daiichi.DBWrapper;
-import com.daiichi.NeptuneBWrapper;
-import com.daiichi.OrientDBWrapper;
 import com.daiichi.pojo.ExecutionPlan;
-import com.daiichi.pojo.Node;
+import com.daiichi.results.RunResults;
+import com.daiichi.workload.WorkloadGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationStartedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-
-import static com.daiichi.pojo.Constants.TEST_GRAPH_COUNT;
-import static com.daiichi.pojo.Constants.TEST_GRAPH_DEPTH;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "benchmark.use-case-one.enabled", havingValue = "true", matchIfMissing = true)
 class UseCaseOne {
 
-    private final ArangoDBWrapper arangoDBWrapper;
-    private final OrientDBWrapper orientDBWrapper;
-    private final NeptuneBWrapper neptuneBWrapper;
+    private final DbWrapperProvider dbWrapperProvider;
+    private final WorkloadGenerator workloadGenerator;
+    private final BenchmarkProperties properties;
+    private final RunResults runResults;
 
     @EventListener(ApplicationStartedEvent.class)
     public void execute() {
         log.info("Starting Use Case One Benchmark");
-        runUseCaseForDb(DBWrapper.DB.ARGANO);
-        runUseCaseForDb(DBWrapper.DB.ORIENT);
-        runUseCaseForDb(DBWrapper.DB.NEPTUNE);
+        // In-process baseline, the remote rows below minus this one is what the network and storage engine cost
+        properties.selected(List.of(DBWrapper.DB.IN_MEMORY, DBWrapper.DB.ARGANO, DBWrapper.DB.ORIENT, DBWrapper.DB.NEPTUNE, DBWrapper.DB.NEO4J))
+            .forEach(this::runUseCaseForDb);
 
 //        OrientDb
 //        Count: 500, Min: 37, Max: 81, Average: 39.72
@@ -79,84 +76,48 @@ class UseCaseOne {
     }
 
     private void runUseCaseForDb(DBWrapper.DB dbType) {
-        DBWrapper dbWrapper = getDbWrapper(dbType);
+        DBWrapper dbWrapper = dbWrapperProvider.getDbWrapper(dbType);
 
         // Step 1: Create n graphs (trees) with depth 3 in both databases
-        Map<String, ExecutionPlan> graphs = IntStream.range(0, TEST_GRAPH_COUNT)
-            .mapToObj(this::createExecutionPlan)
-            .collect(Collectors.toMap(ExecutionPlan::getId, Function.identity()));
-
-        IntSummaryStatistics creationStats = graphs.values().stream().mapToInt(plan -> {
-            Instant startTime = Instant.now();
-            String treeId = plan.getId();
-            log.debug("Storing Plan: {}", treeId);
-            dbWrapper.createTree(plan);
-            return (int) Duration.between(startTime, Instant.now()).toMillis();
-        }).summaryStatistics();
+        List<ExecutionPlan> plans = workloadGenerator.plans("", properties.getPlanCount()).toList();
+
+        LatencyRecorder creationStats = new LatencyRecorder(dbType.name(), "Creation", properties.getWarmupCreations(), 0);
+        int plansPerCreate = Math.max(1, properties.getPlansPerCreate());
+        for (int from = 0; from < plans.size(); from += plansPerCreate) {
+            List<ExecutionPlan> batch = plans.subList(from, Math.min(from + plansPerCreate, plans.size()));
+            log.debug("Storing Plans: {}", batch.stream().map(ExecutionPlan::getId).toList());
+            creationStats.time(() -> dbWrapper.createTrees(batch));
+        }
 
         // Step 2: Fetch a random graph, update one node, and save
-        List<String> planIds = new ArrayList<>(graphs.keySet());
-        IntSummaryStatistics updateStats = IntStream.range(1, 501).map(i -> {
-            Instant startTime = Instant.now();
-            int randomIndex = new Random().nextInt(planIds.size());
-            String planId = planIds.get(randomIndex);
-            log.info("Run number: {}: Updating plan: {}", i, planId);
-            dbWrapper.fetchAndUpdate(planId);
-            return (int) Duration.between(startTime, Instant.now()).toMillis();
-        }).summaryStatistics();
-
-        log.info("{}: Creation Stats, Count: {}, Min: {}, Max: {}, Average: {}",
-            dbType, creationStats.getCount(), creationStats.getMin(), creationStats.getMax(), creationStats.getAverage());
-        log.info("{}: Update Stats, Count: {}, Min: {}, Max: {}, Average: {}",
-            dbType, updateStats.getCount(), updateStats.getMin(), updateStats.getMax(), updateStats.getAverage());
-    }
-
-    private ExecutionPlan createExecutionPlan(int graphId) {
-        List<Node> nodes = new ArrayList<>();
-        String planId = "Plan %s".formatted(graphId);
-        Node root = Node.builder()
-            .id(UUID.randomUUID().toString())
-            .planId(planId)
-            .data("Root Node for %s".formatted(planId))
-            .build();
-        nodes.add(root);
-
-        createExecutionPlan(nodes, root, 0);
-        log.info("Graph {} created with {} nodes", graphId, nodes.size());
-        return ExecutionPlan.builder()
-            .id(planId)
-            .graph(nodes)
-            .build();
+        List<String> planIds = plans.stream().map(ExecutionPlan::getId).toList();
+        List<LatencyRecorder> updateStats = properties.getUpdateModes().stream()
+            .map(mode -> runUpdates(dbType, dbWrapper, planIds, mode))
+            .toList();
+
+        creationStats.report();
+        updateStats.forEach(LatencyRecorder::report);
+        creationStats.publish(runResults, "UseCaseOne", "");
+        updateStats.forEach(stats -> stats.publish(runResults, "UseCaseOne", ""));
+        dbWrapperProvider.report(dbType);
     }
 
-    private void createExecutionPlan(List<Node> nodes, Node parent, int level) {
-        if (level >= TEST_GRAPH_DEPTH) return;
-
-        for (int i = 0; i < 3; i++) {
-            String planId = parent.getPlanId();
-            Node child = Node.builder()
-                .id(UUID.randomUUID().toString())
-                .planId(planId)
-                .data("Child %d-%d of %s".formatted(level + 1, i + 1, planId))
-                .parentId(parent.getId())
-                .build();
-            nodes.add(child);
-            createExecutionPlan(nodes, child, level + 1);
-        }
-    }
-
-    private DBWrapper getDbWrapper(DBWrapper.DB db) {
-        switch (db) {
-            case ARGANO -> {
-                return arangoDBWrapper;
-            }
-            case ORIENT -> {
-                return orientDBWrapper;
-            }
-            case NEPTUNE -> {
-                return neptuneBWrapper;
+    private LatencyRecorder runUpdates(DBWrapper.DB dbType, DBWrapper dbWrapper, List<String> planIds, DBWrapper.UpdateMode mode) {
+        double targetRate = properties.getTargetRate();
+        LatencyRecorder updateStats = new LatencyRecorder(dbType.name(), "Update (%s)".formatted(mode), properties.getWarmupUpdates(), targetRate);
+        long intervalNanos = targetRate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / targetRate) : 0;
+        long nextStart = System.nanoTime();
+        int totalUpdates = properties.getWarmupUpdates() + properties.getUpdateCount();
+        for (int i = 1; i <= totalUpdates; i++) {
+            if (intervalNanos > 0) {
+                LockSupport.parkNanos(nextStart - System.nanoTime());
+                nextStart += intervalNanos;
             }
+            int randomIndex = new Random().nextInt(planIds.size());
+            String planId = planIds.get(randomIndex);
+            log.info("Run number: {}: Updating plan: {}", i, planId);
+            updateStats.time(() -> dbWrapper.fetchAndUpdate(planId, mode));
         }
-        throw new RuntimeException("DB isn't supported");
+        return updateStats;
     }
 }
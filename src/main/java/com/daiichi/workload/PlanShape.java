@@ -0,0 +1,10 @@
+package com.daiichi.workload;
+
+public enum PlanShape {
+    // Complete fanOut-ary tree, node i depends on node (i - 1) / fanOut
+    TREE,
+    // Single dependency chain, node i depends on node i - 1
+    CHAIN,
+    // Layers of fanOut nodes below the root, every node depends on two neighbours of the previous layer
+    DIAMOND_DAG
+}
@@ -0,0 +1,8 @@
+package com.daiichi.workload;
+
+public enum SizeDistribution {
+    FIXED,
+    UNIFORM,
+    // Most plans close to minSize, a long tail up to maxSize
+    ZIPF
+}
@@ -0,0 +1,42 @@
+package com.daiichi.workload;
+
+import com.daiichi.DBWrapper;
+
+/**
+ * One operation of a recorded trace.
+ *
+ * @param offsetNanos time since the first operation of the trace
+ * @param planIndex   position of the plan in the order the trace first mentioned it
+ * @param shape       shape of the created plan, null for updates
+ * @param fanOut      fan out of the created plan, 0 for updates
+ * @param size        node count of the created plan, 0 for updates
+ */
+public record TraceEvent(Op op, long offsetNanos, int planIndex, String planId, PlanShape shape, int fanOut, int size) {
+
+    public enum Op {
+        CREATE("Creation"),
+        UPDATE_CLIENT("Update (CLIENT)"),
+        UPDATE_SERVER("Update (SERVER)");
+
+        private final String operation;
+
+        Op(String operation) {
+            this.operation = operation;
+        }
+
+        public static Op update(DBWrapper.UpdateMode mode) {
+            return mode == DBWrapper.UpdateMode.SERVER ? UPDATE_SERVER : UPDATE_CLIENT;
+        }
+
+        public DBWrapper.UpdateMode updateMode() {
+            return this == UPDATE_SERVER ? DBWrapper.UpdateMode.SERVER : DBWrapper.UpdateMode.CLIENT;
+        }
+
+        /**
+         * @return the operation name the harnesses use in the result file
+         */
+        public String operation() {
+            return operation;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.daiichi.workload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a {@link TraceWriter} file through a read-only memory mapping, so a trace of any length is decoded
+ * sequentially without being read onto the heap. Only the planIds are kept, to resolve later references.
+ * Not thread safe, the replay decodes on a single dispatcher thread.
+ */
+public class TraceReader implements Iterator<TraceEvent>, AutoCloseable {
+    private static final PlanShape[] SHAPES = PlanShape.values();
+    private static final TraceEvent.Op[] OPS = TraceEvent.Op.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Instant recordedAt;
+    private final List<String> planIds = new ArrayList<>();
+    private long offsetNanos;
+
+    // The channel is null for the second view summarize reads through, it closes nothing
+    private TraceReader(FileChannel channel, ByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        if (buffer.remaining() < TraceWriter.HEADER_BYTES || buffer.getInt() != TraceWriter.MAGIC) {
+            throw new IOException("Not a trace file");
+        }
+        byte version = buffer.get();
+        if (version != TraceWriter.VERSION) {
+            throw new IOException("Trace version %d isn't supported, expected %d".formatted(version, TraceWriter.VERSION));
+        }
+        this.recordedAt = Instant.ofEpochMilli(buffer.getLong());
+    }
+
+    public static TraceReader open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            // A single mapping addresses at most 2 GiB
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Trace %s is larger than 2 GiB, record it in several files".formatted(file));
+            }
+            return new TraceReader(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return buffer.hasRemaining();
+    }
+
+    @Override
+    public TraceEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TraceEvent.Op op = OPS[buffer.get()];
+        offsetNanos += readVarLong();
+        int planIndex = (int) readVarLong();
+        if (planIndex == planIds.size()) {
+            byte[] id = new byte[(int) readVarLong()];
+            buffer.get(id);
+            planIds.add(new String(id, StandardCharsets.UTF_8));
+        }
+        String planId = planIds.get(planIndex);
+        if (op != TraceEvent.Op.CREATE) {
+            return new TraceEvent(op, offsetNanos, planIndex, planId, null, 0, 0);
+        }
+        PlanShape shape = SHAPES[buffer.get()];
+        int fanOut = (int) readVarLong();
+        int size = (int) readVarLong();
+        return new TraceEvent(op, offsetNanos, planIndex, planId, shape, fanOut, size);
+    }
+
+    /**
+     * Reads the trace to its end from a second view of the mapping, this reader's position is left as it is.
+     */
+    public Summary summarize() throws IOException {
+        TraceReader scan = new TraceReader(null, buffer.duplicate().position(0));
+        long[] counts = new long[OPS.length];
+        BitSet created = new BitSet();
+        BitSet updated = new BitSet();
+        while (scan.hasNext()) {
+            TraceEvent event = scan.next();
+            counts[event.op().ordinal()]++;
+            if (event.op() == TraceEvent.Op.CREATE) {
+                created.set(event.planIndex());
+            } else {
+                updated.set(event.planIndex());
+            }
+        }
+        updated.andNot(created);
+        List<String> uncreatedPlanIds = updated.stream().mapToObj(scan.planIds::get).toList();
+        return new Summary(counts[TraceEvent.Op.CREATE.ordinal()], counts[TraceEvent.Op.UPDATE_CLIENT.ordinal()],
+            counts[TraceEvent.Op.UPDATE_SERVER.ordinal()], scan.planIds.size(), scan.offsetNanos, uncreatedPlanIds);
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Closing the channel doesn't unmap the file, the mapping is released once the buffer is garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param uncreatedPlanIds plans the trace updates but never creates, like those created before recording started
+     */
+    public record Summary(long creates, long clientUpdates, long serverUpdates, int plans, long durationNanos,
+                          List<String> uncreatedPlanIds) {
+        public long operations() {
+            return creates + clientUpdates + serverUpdates;
+        }
+    }
+}
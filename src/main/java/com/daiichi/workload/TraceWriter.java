@@ -0,0 +1,109 @@
+package com.daiichi.workload;
+
+import com.daiichi.DBWrapper;
+import com.daiichi.pojo.ExecutionPlan;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends operations to a binary trace file that {@link TraceReader} maps back into memory. After a header of
+ * magic, version and the wall clock time of the recording, every operation takes
+ * <pre>
+ *   op              byte, ordinal of TraceEvent.Op
+ *   delta           varlong, nanos since the previous operation
+ *   plan            varint, index of the plan in first mention order, a new index is followed by
+ *                   varint length and the UTF-8 bytes of the planId
+ *   shape, fanOut,  byte, varint, varint, only for CREATE
+ *   size
+ * </pre>
+ * so a trace of repeated updates costs a few bytes per operation. Plans are identified by shape and size rather
+ * than their nodes, the replay regenerates them with {@link WorkloadGenerator#plan(String, PlanShape, int, int)}.
+ * Safe for concurrent writers, operations are stored in the order they were written.
+ */
+public class TraceWriter implements Closeable {
+    static final int MAGIC = 0x47425452;
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = 4 + 1 + 8;
+
+    private final DataOutputStream out;
+    private final PlanShape shape;
+    private final int fanOut;
+    private final Map<String, Integer> planIndexes = new HashMap<>();
+    private long previousNanos = -1;
+
+    /**
+     * @param shape  shape recorded for created plans, the one of the workload that generated them
+     * @param fanOut fan out recorded for created plans
+     */
+    public TraceWriter(Path file, PlanShape shape, int fanOut) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        this.shape = shape;
+        this.fanOut = fanOut;
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(System.currentTimeMillis());
+    }
+
+    public synchronized void created(ExecutionPlan plan) {
+        try {
+            writeHeader(TraceEvent.Op.CREATE, plan.getId());
+            out.writeByte(shape.ordinal());
+            writeVarLong(fanOut);
+            writeVarLong(plan.nodeCount());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void updated(String planId, DBWrapper.UpdateMode mode) {
+        try {
+            writeHeader(TraceEvent.Op.update(mode), planId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The clock is read under the lock, so deltas of concurrent writers never go negative
+    private void writeHeader(TraceEvent.Op op, String planId) throws IOException {
+        long now = System.nanoTime();
+        out.writeByte(op.ordinal());
+        writeVarLong(previousNanos < 0 ? 0 : now - previousNanos);
+        previousNanos = now;
+        Integer index = planIndexes.get(planId);
+        if (index != null) {
+            writeVarLong(index);
+            return;
+        }
+        writeVarLong(planIndexes.size());
+        planIndexes.put(planId, planIndexes.size());
+        byte[] id = planId.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(id.length);
+        out.write(id);
+    }
+
+    // LEB128, 7 bits per byte with the high bit set on all but the last
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
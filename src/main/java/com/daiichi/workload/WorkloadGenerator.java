@@ -0,0 +1,158 @@
+package com.daiichi.workload;
+
+import com.daiichi.BenchmarkProperties;
+import com.daiichi.pojo.ExecutionPlan;
+import com.daiichi.pojo.Node;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.daiichi.pojo.Constants.EXECUTION_PLAN_NODE;
+import static com.daiichi.pojo.Constants.EXECUTION_PLAN_ROOT_NODE;
+
+/**
+ * Generates execution plans of a configurable shape and size. Plans and their nodes are produced lazily: a plan
+ * only holds its id, size and seed, and node i is derived from (seed, planId, i) whenever the plan is streamed,
+ * so the same seed always yields the same plans and arbitrarily large plans never sit on the heap.
+ */
+@Component
+@RequiredArgsConstructor
+public class WorkloadGenerator {
+
+    private static final int MAX_ZIPF_RANKS = 1_000_000;
+
+    private final BenchmarkProperties properties;
+
+    /**
+     * @return {@code count} plans with ids {@code idPrefix + "Plan " + i} shaped by the configured workload
+     */
+    public Stream<ExecutionPlan> plans(String idPrefix, int count) {
+        return plans(idPrefix, count, properties.getWorkload());
+    }
+
+    public Stream<ExecutionPlan> plans(String idPrefix, int count, BenchmarkProperties.Workload workload) {
+        ZipfSampler zipf = zipf(workload);
+        return IntStream.range(0, count)
+            .mapToObj(i -> plan(idPrefix + "Plan " + i, workload, zipf));
+    }
+
+    /**
+     * @return the plan the configured workload generates for {@code planId}
+     */
+    public ExecutionPlan plan(String planId) {
+        BenchmarkProperties.Workload workload = properties.getWorkload();
+        return plan(planId, workload, zipf(workload));
+    }
+
+    /**
+     * @return a plan of exactly {@code size} nodes in the given shape, with the nodes the configured seed derives for
+     * {@code planId}. Regenerates the plans of a recorded trace.
+     */
+    public ExecutionPlan plan(String planId, PlanShape shape, int fanOut, int size) {
+        BenchmarkProperties.Workload workload = new BenchmarkProperties.Workload();
+        workload.setSeed(properties.getWorkload().getSeed());
+        workload.setShape(shape);
+        workload.setFanOut(fanOut);
+        workload.setSizeDistribution(SizeDistribution.FIXED);
+        workload.setPlanSize(Math.max(1, size));
+        return plan(planId, workload, null);
+    }
+
+    private static ZipfSampler zipf(BenchmarkProperties.Workload workload) {
+        return workload.getSizeDistribution() == SizeDistribution.ZIPF
+            ? new ZipfSampler(Math.min(MAX_ZIPF_RANKS, Math.max(1, workload.getMaxSize() / Math.max(1, workload.getMinSize()))), workload.getZipfExponent())
+            : null;
+    }
+
+    private ExecutionPlan plan(String planId, BenchmarkProperties.Workload workload, ZipfSampler zipf) {
+        long planSeed = mix(workload.getSeed() ^ hash(planId));
+        int size = planSize(workload, zipf, new SplittableRandom(planSeed));
+        return ExecutionPlan.builder()
+            .id(planId)
+            .size(size)
+            .nodeSource(() -> IntStream.range(0, size).mapToObj(i -> node(planId, planSeed, i, workload)))
+            .build();
+    }
+
+    private Node node(String planId, long planSeed, int index, BenchmarkProperties.Workload workload) {
+        if (index == 0) {
+            return Node.builder()
+                .id(nodeId(planSeed, 0))
+                .planId(planId)
+                .data(EXECUTION_PLAN_ROOT_NODE.formatted(planId))
+                .build();
+        }
+        int fanOut = Math.max(1, workload.getFanOut());
+        Node.NodeBuilder node = Node.builder()
+            .id(nodeId(planSeed, index))
+            .planId(planId)
+            .data(EXECUTION_PLAN_NODE.formatted(index, planId));
+        switch (workload.getShape()) {
+            case TREE -> node.parentId(nodeId(planSeed, (index - 1) / fanOut));
+            case CHAIN -> node.parentId(nodeId(planSeed, index - 1));
+            case DIAMOND_DAG -> {
+                int layer = (index - 1) / fanOut;
+                int position = (index - 1) % fanOut;
+                if (layer == 0) {
+                    node.parentId(nodeId(planSeed, 0));
+                } else {
+                    int previousLayer = 1 + (layer - 1) * fanOut;
+                    node.parentId(nodeId(planSeed, previousLayer + position));
+                    if (fanOut > 1) {
+                        node.extraParentIds(List.of(nodeId(planSeed, previousLayer + (position + 1) % fanOut)));
+                    }
+                }
+            }
+        }
+        return node.build();
+    }
+
+    private static int planSize(BenchmarkProperties.Workload workload, ZipfSampler zipf, SplittableRandom random) {
+        return switch (workload.getSizeDistribution()) {
+            case FIXED -> workload.getPlanSize() > 0 ? workload.getPlanSize() : defaultSize(workload);
+            case UNIFORM -> random.nextInt(workload.getMinSize(), workload.getMaxSize() + 1);
+            case ZIPF -> (int) Math.min(workload.getMaxSize(), (long) workload.getMinSize() * zipf.sample(random));
+        };
+    }
+
+    private static int defaultSize(BenchmarkProperties.Workload workload) {
+        int fanOut = Math.max(1, workload.getFanOut());
+        return switch (workload.getShape()) {
+            case TREE -> {
+                long size = 0;
+                long level = 1;
+                for (int depth = 0; depth <= workload.getDepth(); depth++) {
+                    size += level;
+                    level *= fanOut;
+                }
+                yield (int) Math.min(Integer.MAX_VALUE, size);
+            }
+            case CHAIN -> workload.getDepth() + 1;
+            case DIAMOND_DAG -> 1 + workload.getDepth() * fanOut;
+        };
+    }
+
+    private static String nodeId(long planSeed, int index) {
+        return new UUID(mix(planSeed + 2L * index), mix(planSeed + 2L * index + 1)).toString();
+    }
+
+    private static long hash(String value) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return mix(hash);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}